@@ -0,0 +1,74 @@
+#!/bin/sh
+# Class data sharing archive for faster starts of the game.
+#
+#   ./appcds.sh train   Run main.StartupTraining (a simulated session, then a
+#                       launch up to the login screen) and dump the archive
+#                       from the classes it loaded. Needs a display, unless
+#                       given "headless", which skips the launch.
+#   ./appcds.sh run     Start the game with the archive.
+#
+# Class data sharing only reads classes from jars, so training packs the
+# compiled classes into a jar first, and both commands run the game from it.
+# The archive only matches the jar and JVM it was dumped with, so train
+# again after every build or JVM update; the JVM ignores a stale archive and
+# starts without it. Each launch logs its time to the first frame and whether
+# the archive was used (see StartupProfile).
+#
+# Application class data sharing needs Java 10 or later, or Oracle JDK 8 with
+# its commercial features. OpenJDK 8 has none: there, train exits with an
+# error and run starts the game without an archive.
+#
+# Environment:
+#   JAVA     java executable (default: java)
+#   CLASSES  folder of the compiled game, with its resources (default: bin)
+#   LIBS     jars the game needs besides the JVM, e.g. JavaFX on Java 11 and
+#            later, separated by colons (default: none)
+#   ARCHIVE  archive file (default: eachevery.jsa); the jar and the class
+#            list are written next to it
+
+JAVA=${JAVA:-java}
+CLASSES=${CLASSES:-bin}
+ARCHIVE=${ARCHIVE:-eachevery.jsa}
+JAR=${ARCHIVE%.jsa}.jar
+CLASS_LIST=${ARCHIVE%.jsa}.classlist
+CP=$JAR${LIBS:+:$LIBS}
+
+# Java 8 only archives application classes with the commercial AppCDS flag of
+# Oracle JDK 8, which OpenJDK 8 rejects; from Java 10 on, AppCDS is part of the
+# JVM. Whether the flag is accepted is tried rather than read from the vendor.
+VERSION=$("$JAVA" -version 2>&1 | sed -n 's/.*version "\([0-9]*\)\.\([0-9]*\).*/\1.\2/p')
+APPCDS=yes
+case "$VERSION" in
+    1.*)
+        UNLOCK="-XX:+UnlockCommercialFeatures -XX:+UseAppCDS"
+        "$JAVA" $UNLOCK -version >/dev/null 2>&1 || { UNLOCK=""; APPCDS=no; }
+        ;;
+    *) UNLOCK="" ;;
+esac
+
+case "$1" in
+    train)
+        shift
+        if [ "$APPCDS" = no ]; then
+            echo "$JAVA has no application class data sharing; use Oracle JDK 8 or Java 10 or later." >&2
+            exit 1
+        fi
+        "$(dirname "$JAVA")/jar" cf "$JAR" -C "$CLASSES" . 2>/dev/null || jar cf "$JAR" -C "$CLASSES" . || exit 1
+        "$JAVA" $UNLOCK -Xshare:off -XX:DumpLoadedClassList="$CLASS_LIST" -cp "$CP" \
+            main.StartupTraining "$@" || exit 1
+        "$JAVA" $UNLOCK -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" \
+            -XX:SharedArchiveFile="$ARCHIVE" -cp "$CP" || exit 1
+        echo "Dumped $(wc -l < "$CLASS_LIST") classes to $ARCHIVE."
+        ;;
+    run)
+        shift
+        if [ "$APPCDS" = no ]; then
+            exec "$JAVA" -cp "$CP" main.EachEveryMain "$@"
+        fi
+        exec "$JAVA" $UNLOCK -Xshare:auto -XX:SharedArchiveFile="$ARCHIVE" -cp "$CP" main.EachEveryMain "$@"
+        ;;
+    *)
+        echo "Usage: $0 train | run" >&2
+        exit 2
+        ;;
+esac
@@ -0,0 +1,261 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import config.Config;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import model.Coordinate.Shape;
+import model.DotSet;
+import model.OverlapKernel;
+
+/**
+ * Sweeps the parameters of the rejection-sampling dot placement to find where
+ * it becomes impractical.
+ *
+ * Classes Related To:
+ *  -DotSet.java
+ *      -The placement swept: set one is filled with random dots until none
+ *      overlaps, then set two the same way around it. Also timed itself at the
+ *      configured parameters, for comparison.
+ *  -OverlapKernel.java
+ *      -The overlap test both use.
+ *  -Config.java
+ *      -The configured min.diameter and max.diameter.
+ *  -Histogram.java, MetricsRegistry.java (metrics)
+ *      -Collect the attempts and times of every point.
+ *
+ * DotSet reads its diameters from the config and has its minimum distance
+ * fixed, and keeps drawing until every dot fits. So the sweep places the
+ * pairs with a copy of DotSet's loop that takes every parameter and gives up
+ * on a pair once one dot misses MAX_ATTEMPTS_PER_DOT times. Every combination of
+ * canvas, min.diameter, max.diameter, MIN_DISTANCE_BETWEEN_DOTS and dots per set
+ * is one point. The points run in parallel, one per processor, and each
+ * places the given number of pairs. A quarter of each set are squares.
+ *
+ * Per point it reports:
+ *  -the fraction of pairs placed within the budget,
+ *  -the mean and p99 attempts per dot,
+ *  -the mean and p99 milliseconds to place set one and the whole pair.
+ * A point whose first GIVE_UP_AFTER pairs all fail is not run further.
+ *
+ * At the configured min.diameter and max.diameter and the default distance,
+ * the sweep rows have source "sweep-configured", and the real DotSets are
+ * placed too, as DotsPair places them without joint placement, in rows with
+ * source "generator". These are only run where the sweep placed every pair,
+ * since DotSet never gives up. DotSet only counts attempts per set, so their
+ * p99 attempts per dot is over the means of the pairs.
+ *
+ * Prints one CSV line per point, in grid order.
+ *
+ * Usage: java bench.GeneratorSweep [pairsPerPoint [threads]]
+ */
+public class GeneratorSweep {
+
+    /** Dots canvases of 1280x720, 1920x1080 and 2560x1440 screens. */
+    static final int[][] CANVASES = {{896, 504}, {1344, 756}, {1792, 1008}};
+    static final int[] MIN_DIAMETERS = {10, 20, 30};
+    /** max.diameter - min.diameter. */
+    static final int[] DIAMETER_SPANS = {5, 10, 20};
+    static final int[] MIN_DISTANCES = {0, 3, 6, 12};
+    static final int[] DOTS_PER_SET = {8, 16, 32, 64, 128, 256};
+
+    static final double SQUARE_FRACTION = 0.25;
+    static final int MAX_ATTEMPTS_PER_DOT = 10000;
+    static final int GIVE_UP_AFTER = 5;
+    static final int DEFAULT_PAIRS_PER_POINT = 50;
+
+    /** One point of the grid. */
+    static class Point {
+        final int canvasWidth;
+        final int canvasHeight;
+        final int minDiameter;
+        final int maxDiameter;
+        final int minDistance;
+        final int dotsPerSet;
+
+        Point(int canvasWidth, int canvasHeight, int minDiameter, int maxDiameter, int minDistance,
+                int dotsPerSet) {
+            this.canvasWidth = canvasWidth;
+            this.canvasHeight = canvasHeight;
+            this.minDiameter = minDiameter;
+            this.maxDiameter = maxDiameter;
+            this.minDistance = minDistance;
+            this.dotsPerSet = dotsPerSet;
+        }
+
+        int numSquares() {
+            return (int) (this.dotsPerSet * SQUARE_FRACTION);
+        }
+
+        int numCircles() {
+            return this.dotsPerSet - this.numSquares();
+        }
+    }
+
+    /** Distributions measured at one point. */
+    static class Measurements {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final Histogram attemptsPerDot = this.registry.histogram("attempts", "Attempts per dot", 0.01);
+        final Histogram setMillis = this.registry.histogram("set.ms", "Time to place set one", 0.001);
+        final Histogram pairMillis = this.registry.histogram("pair.ms", "Time to place the pair", 0.001);
+        int numPairs;
+        int numPlaced;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pairsPerPoint = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PAIRS_PER_POINT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        new Config();
+        int configuredMin = Config.getPropertyInt("min.diameter");
+        int configuredMax = Config.getPropertyInt("max.diameter");
+
+        ArrayList<Point> points = new ArrayList<Point>();
+        for (int[] canvas : CANVASES) {
+            for (int minDiameter : MIN_DIAMETERS) {
+                for (int span : DIAMETER_SPANS) {
+                    for (int minDistance : MIN_DISTANCES) {
+                        for (int dots : DOTS_PER_SET) {
+                            points.add(new Point(canvas[0], canvas[1], minDiameter, minDiameter + span,
+                                    minDistance, dots));
+                        }
+                    }
+                }
+            }
+        }
+        int numSwept = points.size();
+        for (int[] canvas : CANVASES) {
+            for (int dots : DOTS_PER_SET) {
+                points.add(new Point(canvas[0], canvas[1], configuredMin, configuredMax,
+                        DotSet.MIN_DISTANCE_BETWEEN_DOTS, dots));
+            }
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<Measurements>> sweeps = new ArrayList<Future<Measurements>>();
+        for (int i = 0; i < points.size(); i++) {
+            final Point point = points.get(i);
+            final long seed = i;
+            sweeps.add(pool.submit(() -> sweep(point, pairsPerPoint, seed)));
+        }
+        ArrayList<Future<Measurements>> generators = new ArrayList<Future<Measurements>>();
+        for (int i = numSwept; i < points.size(); i++) {
+            final Point point = points.get(i);
+            final Future<Measurements> swept = sweeps.get(i);
+            generators.add(pool.submit(() -> swept.get().numPlaced == swept.get().numPairs
+                    ? timeGenerator(point, pairsPerPoint) : null));
+        }
+
+        System.out.println("source,canvasWidth,canvasHeight,minDiameter,maxDiameter,minDistance,dotsPerSet,"
+                + "pairs,successRate,meanAttemptsPerDot,p99AttemptsPerDot,meanSetMs,p99SetMs,meanPairMs,p99PairMs");
+        for (int i = 0; i < points.size(); i++) {
+            print(i < numSwept ? "sweep" : "sweep-configured", points.get(i), sweeps.get(i).get());
+        }
+        for (int i = 0; i < generators.size(); i++) {
+            Measurements measurements = generators.get(i).get();
+            if (measurements != null) {
+                print("generator", points.get(numSwept + i), measurements);
+            }
+        }
+        pool.shutdown();
+        System.err.printf(Locale.ROOT, "Swept %d points in %.1f s.%n", points.size(),
+                (System.nanoTime() - start) / 1000000000.0);
+    }
+
+    private static void print(String source, Point point, Measurements m) {
+        System.out.printf(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%d,%.3f,%.2f,%.0f,%.3f,%.3f,%.3f,%.3f%n", source,
+                point.canvasWidth, point.canvasHeight, point.minDiameter, point.maxDiameter, point.minDistance,
+                point.dotsPerSet, m.numPairs, m.numPairs == 0 ? 0 : (double) m.numPlaced / m.numPairs,
+                m.attemptsPerDot.getMean(), m.attemptsPerDot.getPercentile(99), m.setMillis.getMean(),
+                m.setMillis.getPercentile(99), m.pairMillis.getMean(), m.pairMillis.getPercentile(99));
+    }
+
+    /**
+     * Place pairs at one point with the copied loop.
+     * @param seed Seed of the positions and diameters, so runs can be compared.
+     */
+    static Measurements sweep(Point point, int pairs, long seed) {
+        Measurements m = new Measurements();
+        Random random = new Random(seed);
+        OverlapKernel one = new OverlapKernel(point.dotsPerSet, point.minDistance);
+        OverlapKernel two = new OverlapKernel(point.dotsPerSet, point.minDistance);
+        for (int pair = 0; pair < pairs; pair++) {
+            if (pair == GIVE_UP_AFTER && m.numPlaced == 0) {
+                break;
+            }
+            m.numPairs++;
+            one.clear();
+            two.clear();
+            long start = System.nanoTime();
+            boolean placed = fill(point, one, null, random, m);
+            long middle = System.nanoTime();
+            placed = placed && fill(point, two, one, random, m);
+            long end = System.nanoTime();
+            if (placed) {
+                m.numPlaced++;
+                m.setMillis.record((middle - start) / 1000000.0);
+                m.pairMillis.record((end - start) / 1000000.0);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * DotSet.fillDots(), with the parameters of the point and a budget per dot.
+     * @param other Kernel of the set to stay clear of, or null.
+     * @return false if a dot could not be placed within the budget.
+     */
+    private static boolean fill(Point point, OverlapKernel kernel, OverlapKernel other, Random random,
+            Measurements m) {
+        for (int i = 0; i < point.dotsPerSet; i++) {
+            Shape shape = i < point.numCircles() ? Shape.CIRCLE : Shape.SQUARE;
+            int attempts = 0;
+            while (true) {
+                int x = random.nextInt(point.canvasWidth - point.maxDiameter);
+                int y = random.nextInt(point.canvasHeight - point.maxDiameter);
+                int diameter = random.nextInt(point.maxDiameter - point.minDiameter) + point.minDiameter;
+                attempts++;
+                if (!kernel.overlaps(x, y, diameter, shape)
+                        && (other == null || !other.overlaps(x, y, diameter, shape))) {
+                    kernel.add(x, y, diameter, shape);
+                    break;
+                }
+                if (attempts == MAX_ATTEMPTS_PER_DOT) {
+                    m.attemptsPerDot.record(attempts);
+                    return false;
+                }
+            }
+            m.attemptsPerDot.record(attempts);
+        }
+        return true;
+    }
+
+    /**
+     * Place pairs at a configured point with the real DotSets.
+     */
+    static Measurements timeGenerator(Point point, int pairs) {
+        Measurements m = new Measurements();
+        Random random = new Random(pairs);
+        for (int pair = 0; pair < pairs; pair++) {
+            long start = System.nanoTime();
+            DotSet one = new DotSet(point.numCircles(), point.numSquares(), point.canvasWidth,
+                    point.canvasHeight, random);
+            long middle = System.nanoTime();
+            DotSet two = new DotSet(point.numCircles(), point.numSquares(), one, random);
+            long end = System.nanoTime();
+            m.numPairs++;
+            m.numPlaced++;
+            m.attemptsPerDot.record((one.getPlacementAttempts() + two.getPlacementAttempts())
+                    / (2.0 * point.dotsPerSet));
+            m.setMillis.record((middle - start) / 1000000.0);
+            m.pairMillis.record((end - start) / 1000000.0);
+        }
+        return m;
+    }
+}
@@ -0,0 +1,118 @@
+package bench;
+
+import java.util.Random;
+
+import model.OverlapKernel;
+
+/**
+ * Compares the OverlapKernel against the Math.hypot loop DotSet used before it.
+ *
+ * Classes Related To:
+ *  -OverlapKernel.java
+ *      -The kernel being measured.
+ *
+ * For each number of placed dots, random dots are placed with the kernel until
+ * the set is full, then both tests answer the same random queries. Each test is
+ * run for WARMUP_ROUNDS untimed rounds first so both are compiled by the JIT.
+ * Prints nanoseconds per query and the speedup; exits with 1 if the two tests
+ * ever disagree. The speedup depends on the JVM: Java 8 computes Math.hypot
+ * in StrictMath, which makes the old loop far slower there than on later JVMs.
+ *
+ * Usage: java bench.OverlapBenchmark [canvasWidth canvasHeight]
+ */
+public class OverlapBenchmark {
+
+    static final int[] DOT_COUNTS = {10, 50, 200, 1000};
+    static final int MIN_DIAMETER = 20;
+    static final int MAX_DIAMETER = 30;
+    static final int MIN_DISTANCE = 3;
+    static final int QUERIES = 200000;
+    static final int WARMUP_ROUNDS = 5;
+    static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int canvasWidth = args.length > 1 ? Integer.parseInt(args[0]) : 4000;
+        int canvasHeight = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        Random random = new Random(1);
+
+        System.out.println("dots,hypotNsPerQuery,kernelNsPerQuery,speedup");
+        for (int numDots : DOT_COUNTS) {
+            OverlapKernel kernel = new OverlapKernel(numDots, MIN_DISTANCE);
+            double[] xs = new double[numDots];
+            double[] ys = new double[numDots];
+            double[] ds = new double[numDots];
+            int placed = 0;
+            while (placed < numDots) {
+                int d = random.nextInt(MAX_DIAMETER - MIN_DIAMETER) + MIN_DIAMETER;
+                int x = random.nextInt(canvasWidth - MAX_DIAMETER);
+                int y = random.nextInt(canvasHeight - MAX_DIAMETER);
+                if (!kernel.overlaps(x, y, d)) {
+                    kernel.add(x, y, d);
+                    xs[placed] = x;
+                    ys[placed] = y;
+                    ds[placed] = d;
+                    placed++;
+                }
+            }
+
+            int[] qx = new int[QUERIES];
+            int[] qy = new int[QUERIES];
+            int[] qd = new int[QUERIES];
+            for (int q = 0; q < QUERIES; q++) {
+                qx[q] = random.nextInt(canvasWidth - MAX_DIAMETER);
+                qy[q] = random.nextInt(canvasHeight - MAX_DIAMETER);
+                qd[q] = random.nextInt(MAX_DIAMETER - MIN_DIAMETER) + MIN_DIAMETER;
+            }
+            for (int q = 0; q < QUERIES; q++) {
+                if (kernel.overlaps(qx[q], qy[q], qd[q]) != hypotOverlaps(xs, ys, ds, numDots, qx[q], qy[q], qd[q])) {
+                    System.err.println("Kernel and hypot test disagree at " + numDots + " dots.");
+                    System.exit(1);
+                }
+            }
+
+            long hypotNanos = 0;
+            long kernelNanos = 0;
+            int sink = 0;
+            for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    sink += hypotOverlaps(xs, ys, ds, numDots, qx[q], qy[q], qd[q]) ? 1 : 0;
+                }
+                long middle = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    sink += kernel.overlaps(qx[q], qy[q], qd[q]) ? 1 : 0;
+                }
+                long end = System.nanoTime();
+                if (round >= WARMUP_ROUNDS) {
+                    hypotNanos += middle - start;
+                    kernelNanos += end - middle;
+                }
+            }
+            double hypotPerQuery = (double) hypotNanos / ROUNDS / QUERIES;
+            double kernelPerQuery = (double) kernelNanos / ROUNDS / QUERIES;
+            System.out.printf("%d,%.2f,%.2f,%.2f%n", numDots, hypotPerQuery, kernelPerQuery,
+                    hypotPerQuery / kernelPerQuery);
+            if (sink == -1) {
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * The overlap test as DotSet.overLapsOther did it before the kernel.
+     */
+    static boolean hypotOverlaps(double[] xs, double[] ys, double[] ds, int n, int x, int y, double diameter) {
+        double radius = diameter / 2.0;
+        double centerX = x + radius;
+        double centerY = y + radius;
+        for (int i = 0; i < n; i++) {
+            double otherRadius = ds[i] / 2;
+            double dx = centerX - (xs[i] + otherRadius);
+            double dy = centerY - (ys[i] + otherRadius);
+            if (Math.hypot(dx, dy) < radius + otherRadius + MIN_DISTANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
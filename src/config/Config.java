@@ -1,38 +1,102 @@
 package config;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
- 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Class to interact with configuration properties file.
+ *
+ * The properties are read from defaultconfig.properties and then from the
+ * local config file named by config.local.file, whose values take precedence.
+ * Both are parsed once into an immutable Snapshot, and every getter reads the
+ * current snapshot with a single volatile read, so getters may be called from
+ * any thread and as often as needed.
+ *
+ * When the local file changes, ConfigWatcher parses it into a new snapshot and
+ * stages it; the staged snapshot only becomes current when applyPending() is
+ * called, which the controller does between blocks. A block therefore always
+ * runs with one configuration.
+ *
  * @author Tony Jiang (
  * 7-7-2015
  *
  */
 
 public class Config {
- 
-    /** Default properties to be loaded from defaultconfig.properties */
-    private static Properties defaultProperties;
+
     private final static String DEFAULT_CONFIG_FILE_NAME = "defaultconfig.properties";
-    
+
+    /** Key of the name of the local config file. */
+    static final String LOCAL_FILE_KEY = "config.local.file";
+
+    /** The configuration in use. */
+    private static volatile Snapshot current;
+
+    /** A newer configuration to be used from the next block on, or null. */
+    private static final AtomicReference<Snapshot> pending = new AtomicReference<Snapshot>();
+
+    /**
+     * Immutable set of properties, as parsed from the config files at one time.
+     */
+    public static final class Snapshot {
+        private final Map<String, String> properties;
+        private final long loadedMillis;
+
+        Snapshot(Map<String, String> properties) {
+            this.properties = Collections.unmodifiableMap(new HashMap<String, String>(properties));
+            this.loadedMillis = System.currentTimeMillis();
+        }
+
+        public boolean containsKey(String key) {
+            return this.properties.containsKey(key);
+        }
+
+        public String get(String key) {
+            return this.properties.get(key);
+        }
+
+        /**
+         * @return Time the config files were parsed.
+         */
+        public long getLoadedMillis() {
+            return this.loadedMillis;
+        }
+    }
+
     public Config() {
-        defaultLoad();
+        if (current == null) {
+            defaultLoad();
+        }
+    }
+
+    /**
+     * Creates and loads the default properties, once.
+     */
+    private static synchronized void defaultLoad() {
+        if (current == null) {
+            current = read();
+        }
     }
-    
+
     /**
-     * Creates and loads the default properties
+     * Parse the default config file and the local config file into a new snapshot.
      */
-    private void defaultLoad()
-    {
+    static Snapshot read() {
         // load the properties from the default config file
-        defaultProperties = new Properties();
+        Properties properties = new Properties();
         InputStream in;
         try {
-            in = getClass().getResourceAsStream(DEFAULT_CONFIG_FILE_NAME);
-            defaultProperties.load(in);
+            in = Config.class.getResourceAsStream(DEFAULT_CONFIG_FILE_NAME);
+            properties.load(in);
+            in.close();
         } catch (FileNotFoundException e) {
             System.err.println("Default config file "
                     + DEFAULT_CONFIG_FILE_NAME + " not found!!!");
@@ -41,33 +105,162 @@ public class Config {
             System.err
                     .println("IOException reading properties from default config file...");
         }
+        File localFile = localFile(properties.getProperty(LOCAL_FILE_KEY));
+        if (localFile != null && localFile.isFile()) {
+            Properties local = new Properties();
+            try {
+                in = new FileInputStream(localFile);
+                try {
+                    local.load(in);
+                } finally {
+                    in.close();
+                }
+                properties.putAll(local);
+            } catch (IOException e) {
+                System.err.println("IOException reading properties from local config file "
+                        + localFile + ": " + e);
+            }
+        }
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        return new Snapshot(values);
+    }
+
+    private static File localFile(String name) {
+        return name == null || name.trim().isEmpty() ? null : new File(name.trim());
+    }
+
+    /**
+     * @return The configuration in use.
+     */
+    public static Snapshot getSnapshot() {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            defaultLoad();
+            snapshot = current;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return The local config file, or null if there is none.
+     */
+    public static File getLocalFile() {
+        return localFile(getSnapshot().get(LOCAL_FILE_KEY));
+    }
+
+    /**
+     * Check that a snapshot can be read like the one in use: every property
+     * of the configuration in use must still be set, and every one that is an
+     * int or a boolean must still be one, so that no getter fails or silently
+     * reads 0, false or null once it is applied.
+     * @return A description of the first invalid property, or null if there is none.
+     */
+    static String validate(Snapshot snapshot) {
+        Snapshot reference = getSnapshot();
+        for (Map.Entry<String, String> property : reference.properties.entrySet()) {
+            String key = property.getKey();
+            String value = snapshot.get(key);
+            if (value == null) {
+                return key + " is missing";
+            }
+            if (isInt(property.getValue()) && !isInt(value)) {
+                return key + "=" + value + " is not an integer";
+            }
+            if (isBoolean(property.getValue()) && !isBoolean(value)) {
+                return key + "=" + value + " is not True or False";
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInt(String value) {
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isBoolean(String value) {
+        return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false");
+    }
+
+    /**
+     * Stage a snapshot to be used once applyPending() is called. Replaces any
+     * snapshot staged before.
+     */
+    static void stage(Snapshot snapshot) {
+        pending.set(snapshot);
+    }
+
+    /**
+     * Make the staged snapshot, if any, the configuration in use. Settings that
+     * are read once, e.g. in a constructor, keep their old values until read again.
+     * @return true if the configuration changed.
+     */
+    public static boolean applyPending() {
+        Snapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) {
+            return false;
+        }
+        current = snapshot;
+        return true;
     }
-    
+
     /**
      * Grab the property and convert the value to a boolean.
      * @param key The key desired
-     * @return The value as a boolean
+     * @return The value as a boolean, false if it is not set.
      */
-    public static Boolean getPropertyBoolean(String key) {
-        if (defaultProperties.containsKey(key)) {
-            return Boolean.valueOf(defaultProperties.getProperty(key));
+    public static boolean getPropertyBoolean(String key) {
+        Snapshot snapshot = getSnapshot();
+        if (snapshot.containsKey(key)) {
+            return Boolean.parseBoolean(snapshot.get(key).trim());
+        } else {
+            System.err.println("Property \""  + key + "\" not found.");
+            return false;
+        }
+    }
+
+    /**
+     * @param key The key desired
+     * @return true if the property is set.
+     */
+    public static boolean hasProperty(String key) {
+        return getSnapshot().containsKey(key);
+    }
+
+    /**
+     * Grab the property as it is written.
+     * @param key The key desired
+     * @return The value, or null if it is not set.
+     */
+    public static String getPropertyString(String key) {
+        Snapshot snapshot = getSnapshot();
+        if (snapshot.containsKey(key)) {
+            return snapshot.get(key).trim();
         } else {
             System.err.println("Property \""  + key + "\" not found.");
             return null;
         }
     }
-    
+
     /**
      * Grab the property and convert the value to an int.
      * @param key The key desired
      * @return The value as an int.
      */
     public static int getPropertyInt(String key) {
-        if (defaultProperties.containsKey(key)) {
-            return Integer.parseInt(defaultProperties.getProperty(key));
+        Snapshot snapshot = getSnapshot();
+        if (snapshot.containsKey(key)) {
+            return Integer.parseInt(snapshot.get(key));
         } else {
             System.err.println("Property \""  + key + "\" not found.");
             return 0;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Watches the local config file and stages a new Config snapshot whenever it
+ * is saved, so settings can be changed without a restart.
+ *
+ * Classes Related To:
+ *  -EachEveryMain.java
+ *      -Starts the watcher before the GUI is created.
+ *  -Config.java
+ *      -Holds the staged snapshot until the controller applies it between blocks.
+ *
+ * The folder of the local file is watched by a daemon thread with a
+ * WatchService. Editors often save in several steps, so once the file changes
+ * the thread waits config.watch.settle.ms for it to settle before parsing it.
+ * The file is parsed and validated on that thread, never on the FX thread;
+ * deleting it stages the defaults. A file with a value that cannot be read,
+ * e.g. a misspelled integer, is not staged and the previous configuration is
+ * kept.
+ */
+public final class ConfigWatcher {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    /** True if the local config file should be watched for changes. */
+    private static boolean CONFIG_WATCH_ON;
+
+    /** Time in milliseconds to wait for the file to settle after a change. */
+    private static int CONFIG_WATCH_SETTLE_MS;
+
+    private ConfigWatcher() {
+    }
+
+    private static void loadConfig() {
+        new Config();
+        CONFIG_WATCH_ON = Config.getPropertyBoolean("config.watch.on");
+        CONFIG_WATCH_SETTLE_MS = Config.getPropertyInt("config.watch.settle.ms");
+    }
+
+    /**
+     * Start watching the local config file if config.watch.on.
+     * @return The watcher thread, or null if none was started.
+     */
+    public static Thread start() {
+        loadConfig();
+        File file = Config.getLocalFile();
+        if (!CONFIG_WATCH_ON || file == null) {
+            return null;
+        }
+        final Path dir = file.getAbsoluteFile().getParentFile().toPath();
+        final Path name = file.toPath().getFileName();
+        final WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            logger.warning("Could not watch local config file " + file + ": " + e);
+            return null;
+        }
+        Thread watcher = new Thread(() -> watch(watchService, name), "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching local config file " + file.getAbsolutePath());
+        return watcher;
+    }
+
+    private static void watch(WatchService watchService, Path name) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = changed(key, name);
+                // Let the editor finish saving, and take in whatever it did meanwhile.
+                while (changed && (key = watchService.poll(CONFIG_WATCH_SETTLE_MS,
+                        TimeUnit.MILLISECONDS)) != null) {
+                    changed(key, name);
+                }
+                if (changed) {
+                    Config.Snapshot snapshot = Config.read();
+                    String error = Config.validate(snapshot);
+                    if (error != null) {
+                        logger.warning("Local config file changed but is not valid, so it is not applied: "
+                                + error);
+                    } else {
+                        Config.stage(snapshot);
+                        logger.info("Local config file changed; the change is applied from the next block on.");
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            return;
+        }
+    }
+
+    /**
+     * Take the events of a key and reset it.
+     * @return true if one of the events was about the file.
+     */
+    private static boolean changed(WatchKey key, Path name) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -1,31 +1,48 @@
 package controller;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.util.logging.Logger;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import jfr.CsvAppendEvent;
+import logging.AsyncLog;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
 import model.ControlType;
-import model.DotsPair;
-import model.Player;
+import model.MagnitudeMetrics;
 
 
 /**
  * Class for grabbing and exporting data to a CSV file.
  * 
  * Classes Related to:
- *  -DotsGameController.java
- *      -Grabs DotsPair and Player from the controller to record and export their data.
+ *  -TrialEventBus.java
+ *      -Subscribes to the trial events the controller publishes and exports
+ *      every RESPONSE event of the assessment (not practice).
  * 
  * @author Tony Jiang
  * 6-25-2015
  *
  */
-public class DataWriter {
+public class DataWriter implements TrialEventHandler {
 
     private static Logger logger = Logger.getLogger("mylog");
+    private static final AsyncLog log = AsyncLog.get("writer");
     
     public static final String DELIMITER = ",";
     public static final String SUBJECT_ID = "Subject ID";
@@ -47,36 +64,40 @@ public class DataWriter {
     public static final String DATE_TIME = "Date/Time";
     public static final String CONSECUTIVE_ROUND = "Consecutive Rounds";
     public static final String KEY_FOR_YES = "Key for \"Yes\" ";
+    public static final String TOTAL_AREA_ONE = "Total Area One";
+    public static final String TOTAL_AREA_TWO = "Total Area Two";
+    public static final String CONVEX_HULL_ONE = "Convex Hull Area One";
+    public static final String CONVEX_HULL_TWO = "Convex Hull Area Two";
+    public static final String DENSITY_ONE = "Density One";
+    public static final String DENSITY_TWO = "Density Two";
+    public static final String NEAREST_NEIGHBOR_ONE = "Mean Nearest Neighbor Distance One";
+    public static final String NEAREST_NEIGHBOR_TWO = "Mean Nearest Neighbor Distance Two";
+    public static final String PERIMETER_ONE = "Total Perimeter One";
+    public static final String PERIMETER_TWO = "Total Perimeter Two";
+    public static final String FIELD_AREA_ONE = "Field Area One";
+    public static final String FIELD_AREA_TWO = "Field Area Two";
+    public static final String RENDER_TIME = "Render Time (ms)";
     
-    /** The subject to grab data from. */
-    private Player player;
-    /** DotsPair to grab data from. */
-    private DotsPair dotsPair;
-    /** DotsGameController */
-    private DotsGameController dgc;
-    private String colorOne;
-    private String colorTwo;
+    /** Time taken to append and flush one row. */
+    private static final Histogram FLUSH_LATENCY = MetricsRegistry.getDefault().histogram(
+            "writer.flush.ms", "Time to append and flush one row to the CSV file in milliseconds", 0.001);
     
-    /**
-     * Constructor for data writer that takes in a controller
-     * and grabs the player and dots pair.
-     * @param dgc Controller to grab data from
-     */
-    public DataWriter(DotsGameController dgc) {
-        this.player = dgc.getThePlayer();
-        this.dotsPair = dgc.getCurrentDotsPair();
-        this.dgc = dgc;
-    }
+    /** Suffix of the name an old subject CSV is moved to. */
+    private static final DateTimeFormatter ROTATED_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
     
-    /**
-     * Regrab the current subject and dots pair from the controller.
-     * @param dgc Controller to grab data from
-     */
-    public void grabData(DotsGameController dgc) {
-        this.player = dgc.getThePlayer();
-        this.dotsPair = dgc.getCurrentDotsPair();
-        this.colorOne = dgc.getColorOne();
-        this.colorTwo = dgc.getColorTwo();
+    /** The response being exported. */
+    private TrialEvent event;
+    
+    /** CSV file whose header has been checked against the columns written. */
+    private File checkedFile;
+    
+    @Override
+    public void onEvent(TrialEvent event) {
+        if (event.phase == TrialEvent.Phase.RESPONSE && event.sessionState == CurrentState.GAMEPLAY) {
+            this.event = event;
+            this.writeToCSV();
+            this.event = null;
+        }
     }
     
     /**
@@ -88,13 +109,12 @@ public class DataWriter {
      */
     public void writeToCSV() {
         
+        CsvAppendEvent csvAppendEvent = new CsvAppendEvent();
+        csvAppendEvent.begin();
+        long start = System.nanoTime();
         PrintWriter writer = null;
-        String subjectId = this.player.getSubjectID();
+        String subjectId = this.event.subjectId;
         try {
-            /** Grab path to project */
-            String path = new File(".").getAbsolutePath();
-            path = path.substring(0, path.length() - 1);
-            
             /** Create results folder if doesn't exist */
             File resultsDir = new File("results_dots");
             resultsDir.mkdir();
@@ -104,10 +124,13 @@ public class DataWriter {
             subjectDir.mkdir();    
             
             /** Create new csv file for subject if doesn't exist */
-            File file = new File(path + "\\results_dots\\" + subjectId 
-                    + "\\results_" + subjectId + ".csv");   
-            logger.info(file.getPath());
+            File file = resultsFile(subjectId);
+            log.info("Appending", "file", file.getPath());
             String text = "";
+            if (!file.equals(this.checkedFile)) {
+                this.rotateIfOtherColumns(file);
+                this.checkedFile = file;
+            }
             /** Write data to new file or append to old file */
             if (file.createNewFile()) {
                 text += this.generateColumnNames();
@@ -117,6 +140,7 @@ public class DataWriter {
                         new BufferedWriter(
                             new FileWriter(file, true)));
             writer.write(text);
+            csvAppendEvent.characters = text.length();
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -125,6 +149,111 @@ public class DataWriter {
             writer.flush();
             writer.close();
         } 
+        FLUSH_LATENCY.record((System.nanoTime() - start) / 1000000.0);
+        csvAppendEvent.trialIndex = this.event.trialIndex;
+        csvAppendEvent.block = this.event.block;
+        csvAppendEvent.commit();
+    }
+    
+    /**
+     * @param subjectId The subject.
+     * @return The CSV file the subject's results are appended to.
+     */
+    static File resultsFile(String subjectId) {
+        /** Grab path to project */
+        String path = new File(".").getAbsolutePath();
+        path = path.substring(0, path.length() - 1);
+        return new File(path + "\\results_dots\\" + subjectId 
+                + "\\results_" + subjectId + ".csv");
+    }
+    
+    /**
+     * Count the rows of a subject's CSV file answered within a span of time,
+     * by their Date/Time column.
+     * @param subjectId The subject.
+     * @param fromMillis Start of the span, as System.currentTimeMillis().
+     * @param toMillis End of the span, inclusive.
+     * @return The number of rows, 0 if the subject has no CSV file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static int countRows(String subjectId, long fromMillis, long toMillis) throws IOException {
+        return readRows(subjectId, fromMillis, toMillis).size();
+    }
+    
+    /**
+     * Read the rows of a subject's CSV file answered within a span of time,
+     * by their Date/Time column.
+     * @param subjectId The subject.
+     * @param fromMillis Start of the span, as System.currentTimeMillis().
+     * @param toMillis End of the span, inclusive.
+     * @return Every row, in order, as its values by column name. Empty if the
+     * subject has no CSV file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static List<Map<String, String>> readRows(String subjectId, long fromMillis, long toMillis) 
+            throws IOException {
+        ArrayList<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+        File file = resultsFile(subjectId);
+        if (!file.exists()) {
+            return rows;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String header = reader.readLine();
+            String[] columnNames = header == null ? new String[0] : header.split(DELIMITER);
+            int dateTimeColumn = Arrays.asList(columnNames).indexOf(DATE_TIME);
+            if (dateTimeColumn < 0) {
+                return rows;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split(DELIMITER);
+                if (columns.length != columnNames.length || !columns[0].equals(subjectId)) {
+                    continue;
+                }
+                long millis;
+                try {
+                    millis = LocalDateTime.parse(columns[dateTimeColumn])
+                            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    continue;
+                }
+                if (millis >= fromMillis && millis <= toMillis) {
+                    LinkedHashMap<String, String> row = new LinkedHashMap<String, String>();
+                    for (int i = 0; i < columns.length; i++) {
+                        row.put(columnNames[i], columns[i]);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Move a subject's CSV file aside if its header is not that of the columns
+     * written now, e.g. one written before columns were added, so that the rows
+     * of every file match its header. The old file is kept next to the new one
+     * as results_<subject>_<yyyyMMdd-HHmmss>.csv.
+     */
+    private void rotateIfOtherColumns(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        String header;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            header = reader.readLine();
+        }
+        if (header != null && (header + "\n").equals(this.generateColumnNames())) {
+            return;
+        }
+        String path = file.getPath();
+        File rotated = new File(path.substring(0, path.length() - ".csv".length()) + "_"
+                + LocalDateTime.now().format(ROTATED_SUFFIX) + ".csv");
+        if (file.renameTo(rotated)) {
+            log.info("Columns changed, moved old results", "file", path, "to", rotated.getPath());
+        } else {
+            logger.warning("Results " + path + " have other columns but could not be moved.");
+        }
     }
     
     /**
@@ -150,10 +279,34 @@ public class DataWriter {
                 + RESPONSE_TIME + DELIMITER
                 + DATE_TIME + DELIMITER
                 + CONSECUTIVE_ROUND + DELIMITER
-                + KEY_FOR_YES + "\n";
+                + KEY_FOR_YES + DELIMITER
+                + TOTAL_AREA_ONE + DELIMITER
+                + TOTAL_AREA_TWO + DELIMITER
+                + CONVEX_HULL_ONE + DELIMITER
+                + CONVEX_HULL_TWO + DELIMITER
+                + DENSITY_ONE + DELIMITER
+                + DENSITY_TWO + DELIMITER
+                + NEAREST_NEIGHBOR_ONE + DELIMITER
+                + NEAREST_NEIGHBOR_TWO + DELIMITER
+                + PERIMETER_ONE + DELIMITER
+                + PERIMETER_TWO + DELIMITER
+                + FIELD_AREA_ONE + DELIMITER
+                + FIELD_AREA_TWO + DELIMITER
+                + RENDER_TIME + "\n";
         return text;
     }
 
+    /**
+     * Generate the CSV text data of a response without writing it.
+     * @return String CSV text data
+     */
+    String generateTrialText(TrialEvent event) {
+        this.event = event;
+        String text = this.generateTrialText();
+        this.event = null;
+        return text;
+    }
+    
     /**
      * Generate the CSV text data for the round (one pair).
      * @return String CSV text data
@@ -178,6 +331,8 @@ public class DataWriter {
         String dateTime = this.generateDateTimeText();
         String consecutiveRounds = this.generateConsecutiveRoundsText();
         String keyForYes = this.generateKeyForYesText();
+        String metrics = this.generateMetricsText();
+        String renderTime = this.generateRenderTimeText();
         
         String trialText = subjectID + DELIMITER
                 + subjectAge + DELIMITER
@@ -197,36 +352,38 @@ public class DataWriter {
                 + responseTime + DELIMITER
                 + dateTime + DELIMITER
                 + consecutiveRounds + DELIMITER
-                + keyForYes + "\n";
+                + keyForYes + DELIMITER
+                + metrics + DELIMITER
+                + renderTime + "\n";
         
         return trialText;
     }
     
     private String generateSubjectIdText() {
-        return this.player.getSubjectID();
+        return this.event.subjectId;
     }
     
     private String generateSubjectAgeText() {
         return Integer.toString(
-                this.player.getSubjectAge());
+                this.event.subjectAge);
     }
     
     private String generateSubjectGenderText() {
-        return this.player.getSubjectGender().toString();
+        return this.event.subjectGender.toString();
     }
     
     private String generateLeftChoiceText() {
         return Integer.toString(
-                this.dotsPair.getDotSetOne().getPositions().size());
+                this.event.dotsPair.getDotSetOne().getPositions().size());
     }
     
     private String generateRightChoiceText() {
         return Integer.toString(
-                this.dotsPair.getDotSetTwo().getPositions().size());
+                this.event.dotsPair.getDotSetTwo().getPositions().size());
     }
     
     private String generateWhichSideCorrectText() {
-        if (this.dgc.isYesCorrect()) {
+        if (this.event.yesCorrect) {
             return "YES";
         } else {
             return "NO";
@@ -234,7 +391,7 @@ public class DataWriter {
     }
     
     private String generateWhichSidePickedText(String whichSideCorrect) {
-        if (this.player.isRight()) {
+        if (this.event.correct) {
             return whichSideCorrect;
         } else {
             if (whichSideCorrect.equals("YES")) {
@@ -246,7 +403,7 @@ public class DataWriter {
     }
     
     private String generateCorrectText() {
-        if (this.player.isRight()) {
+        if (this.event.correct) {
             return "yes";
         } else {
             return "no";
@@ -254,25 +411,25 @@ public class DataWriter {
     }
     
     private String generateBlockText() {
-        return Integer.toString(this.dgc.getLastBlock());
+        return Integer.toString(this.event.block);
     }
     
     
     private String generateControlTypeText() {
-        if (this.dotsPair.getControlType() == ControlType.EQUAL_AREAS) {
+        if (this.event.dotsPair.getControlType() == ControlType.EQUAL_AREAS) {
             return "Equal Areas";
-        } else if (this.dotsPair.getControlType() == ControlType.INVERSE_AREAS) {
+        } else if (this.event.dotsPair.getControlType() == ControlType.INVERSE_AREAS) {
             return "Inverse Areas";
-        } else if (this.dotsPair.getControlType() == ControlType.RADIUS_AVERAGE_EQUAL) {
+        } else if (this.event.dotsPair.getControlType() == ControlType.RADIUS_AVERAGE_EQUAL) {
             return "Equal Average Radii";
-        } else if (this.dotsPair.getControlType() == ControlType.NONE) {
+        } else if (this.event.dotsPair.getControlType() == ControlType.NONE) {
             return "None";
         } 
         return "-";
     }
     
     private String generateNumDotsRatioText() {
-        double ratio = ((double) this.dotsPair.getDotSetOne().getTotalNumDots()) / this.dotsPair.getDotSetTwo().getTotalNumDots();
+        double ratio = ((double) this.event.dotsPair.getDotSetOne().getTotalNumDots()) / this.event.dotsPair.getDotSetTwo().getTotalNumDots();
         if (ratio < 1) {
             ratio = 1 / ratio;
         }
@@ -281,14 +438,14 @@ public class DataWriter {
     
     private String generatePercentageText() {
         double percentage = 
-                ((double) this.dotsPair.getDotSetOne().getTotalNumDots() / 
-                        (this.dotsPair.getDotSetOne().getTotalNumDots() 
-                                + this.dotsPair.getDotSetTwo().getTotalNumDots()));
+                ((double) this.event.dotsPair.getDotSetOne().getTotalNumDots() / 
+                        (this.event.dotsPair.getDotSetOne().getTotalNumDots() 
+                                + this.event.dotsPair.getDotSetTwo().getTotalNumDots()));
         return Double.toString(percentage);
     }
     
     private String generateAreaRatioText() {
-        double ratio = ((double) this.dotsPair.getDotSetOne().getTotalArea() / this.dotsPair.getDotSetTwo().getTotalArea());
+        double ratio = ((double) this.event.dotsPair.getDotSetOne().getTotalArea() / this.event.dotsPair.getDotSetTwo().getTotalArea());
         if (ratio < 1) {
             ratio = 1 / ratio;
         }
@@ -296,28 +453,54 @@ public class DataWriter {
     }
     
     private String generateColorOneText() {
-        return this.colorOne;
+        return this.event.colorOne;
     }
     
     private String generateColorTwoText() {
-        return this.colorTwo;
+        return this.event.colorTwo;
     }
     
     private String generateResponseTimeText() {
-        return String.valueOf(this.player.getRT() / 1000000000.0);
+        return String.valueOf(this.event.responseTimeNanos / 1000000000.0);
     }
     
     private String generateDateTimeText() {
-        return LocalDateTime.now().toString();
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(this.event.wallClockMillis), 
+                ZoneId.systemDefault()).toString();
     }
     
     private String generateConsecutiveRoundsText() {
         return Integer.toString(
-                this.player.getNumRounds());
+                this.event.numRounds);
+    }
+    
+    /**
+     * Magnitude metrics of both dot sets, computed when the pair was generated.
+     * @return The metric columns, one and two interleaved.
+     */
+    private String generateMetricsText() {
+        MagnitudeMetrics one = this.event.dotsPair.getMetricsOne();
+        MagnitudeMetrics two = this.event.dotsPair.getMetricsTwo();
+        return one.getTotalArea() + DELIMITER
+                + two.getTotalArea() + DELIMITER
+                + one.getConvexHullArea() + DELIMITER
+                + two.getConvexHullArea() + DELIMITER
+                + one.getDensity() + DELIMITER
+                + two.getDensity() + DELIMITER
+                + one.getMeanNearestNeighborDistance() + DELIMITER
+                + two.getMeanNearestNeighborDistance() + DELIMITER
+                + one.getTotalPerimeter() + DELIMITER
+                + two.getTotalPerimeter() + DELIMITER
+                + one.getFieldArea() + DELIMITER
+                + two.getFieldArea();
+    }
+    
+    private String generateRenderTimeText() {
+        return String.valueOf(this.event.renderNanos / 1000000.0);
     }
     
     private String generateKeyForYesText() {
-        if (this.dgc.isFforTrue()) {
+        if (this.event.fForTrue) {
             return "F";
         } else {
             return "J";
@@ -1,18 +1,32 @@
 package controller;
 
-import java.net.URL;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.logging.Logger;
 
 import config.Config;
+import jfr.FlashEvent;
+import jfr.KeyPressEvent;
+import jfr.MaskEvent;
+import jfr.PairGenerationEvent;
+import jfr.PaintEvent;
+import jfr.ResponseEvent;
+import jfr.TrialLifecycleEvent;
+import logging.AsyncLog;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Meter;
+import metrics.MetricsRegistry;
 import model.ColorPair;
-import model.Coordinate.Shape;
-import model.DotSet;
 import model.DotsPair;
 import model.DotsPairGenerator;
 import model.GameLogic;
 import model.Player;
+import model.ScheduleCompiler;
+import replay.ScheduledSession;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.concurrent.Task;
 import javafx.concurrent.WorkerStateEvent;
@@ -23,7 +37,9 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.media.AudioClip;
 import javafx.scene.paint.Color;
+import view.DotsRenderer;
 import view.GameGUI;
+import view.ResourceRegistry;
 
 /**
  * 
@@ -47,8 +63,26 @@ import view.GameGUI;
  *      -Updates Player information as the game progresses and responds.
  *  -GameLogic.java (model)
  *      -Calls on GameLogic to evaluate the correctness of a response from the subject.
- *  -DataWriter.java
- *      -Passes information (Player and DotsPair) to DataWriter to be exported.
+ *  -TrialEventBus.java
+ *      -Publishes a TrialEvent at every phase of a trial. DataWriter, TrialStatistics
+ *      and TimingAudit subscribe to them.
+ *  -SessionJournal.java
+ *      -Journals where the session is after every response, and on startup offers
+ *      to resume a session that was interrupted.
+ *  -MetricsRegistry.java (metrics)
+ *      -Records the rate and accuracy of trials, response times, render times and
+ *      flash jitter, and the backlog of the data writer.
+ *  -TrialLifecycleEvent.java (jfr)
+ *      -Commits a Flight Recorder event for generating, painting, flashing and masking
+ *      every pair and for every key press and response.
+ *  
+ * In kiosk mode (kiosk.mode.on), a finished or quit session goes back to the
+ * login screen instead of exiting, so that subjects can follow one another in
+ * the same JVM: see endSession().
+ * 
+ * Every controller keeps its own settings, event bus, journal file and metrics
+ * (named with its metricsScope), so that controllers in the same program do
+ * not share the state of their sessions.
  *      
  * @author Tony Jiang
  * 6-25-2015
@@ -58,9 +92,11 @@ public class DotsGameController implements GameController {
     
     /** Logger */
     private static Logger logger = Logger.getLogger("mylog");
+    /** Log of the progress of trials, which never blocks the FX or timing threads. */
+    private static final AsyncLog log = AsyncLog.get("trial");
     
     /** Color of the canvas. In this assessment, should be same color as background. */
-    final static Color CANVAS_COLOR = Color.web("#707070");
+    public final static Color CANVAS_COLOR = Color.web("#707070");
             
     /** Time in milliseconds for the player to get ready after pressing start */
     final static int GET_READY_TIME = 2000;
@@ -68,14 +104,72 @@ public class DotsGameController implements GameController {
     /** Time in milliseconds to show mask */
     final static int MASK_TIME = 100;
            
+    /** Number of trial events kept for subscribers that fall behind. */
+    final static int EVENT_BUS_CAPACITY = 1024;
+    
+    /** Time in milliseconds subscribers get to finish when the program exits before they are logged as slow. */
+    final static int EVENT_BUS_CLOSE_TIMEOUT = 2000;
+    
+    /** Names of the threads every session starts, which must have stopped once it ends. */
+    final static List<String> SESSION_THREADS = Arrays.asList("trial-data-writer", "trial-statistics",
+            "trial-timing-audit", "stimulus-bank-prefill", "session-journal-sync");
+    
     /** Time between rounds in milliseconds. */
-    static int TIME_BETWEEN_ROUNDS;
+    private int timeBetweenRounds;
     
     /** Time in milliseconds that the DotSets flash */
-    static int FLASH_TIME;
+    private int flashTime;
+    
+    /** True if the whole session should be compiled up front. */
+    private boolean precompiledScheduleOn;
+    
+    /** Time in milliseconds painting the dots may take before a warning is logged. */
+    private int frameBudgetMs;
+    
+    /** True if the session should be journaled so it can be resumed. Needs precompiledScheduleOn. */
+    private boolean sessionJournalOn;
     
+    /** Number of throwaway pairs placed, painted and written while the subject gets ready. */
+    private int warmupRounds;
+    
+    /** True if finished and quit sessions go back to the login screen instead of exiting. */
+    private boolean kioskModeOn;
+    
+    /** Carries the trial events to the subscribers. */
+    private TrialEventBus eventBus;
     /** DataWriter to export data to CSV. */
     private DataWriter dataWriter;
+    /** Live accuracy and response time. */
+    private TrialStatistics statistics;
+    /** Audit of the flash timing. */
+    private TimingAudit timingAudit;
+    /** Closes the event bus and the journal when the JVM exits. */
+    private Thread shutdownHook;
+    /** Timer tasks of the current trial that may not have finished. */
+    private final ArrayList<Task<Void>> timers = new ArrayList<Task<Void>>();
+    /** True from the login of a subject until the end of the session. */
+    private boolean sessionOpen;
+    /** True while the subject is asked whether to resume an interrupted session. */
+    private boolean resumeOffered;
+    /** Journal of the session, or null if it is not journaled. */
+    private volatile SessionJournal journal;
+    /** Seed the schedule and every pair of the session are derived from. */
+    private long sessionSeed;
+    /** Number of trials answered in this session, practice included. */
+    private int trialIndex;
+    /** System.nanoTime() when the dots of the current trial were painted. */
+    private long onsetNanos;
+    
+    /** Metrics of the sessions of this controller, kept in the default registry under metricsScope. */
+    private final Meter trialsMeter;
+    private final Counter correctCounter;
+    private final Histogram responseTimes;
+    private final Histogram renderTimes;
+    private final Histogram frameJitter;
+    
+    /** Flight Recorder events of the current trial that span several steps. */
+    private FlashEvent flashEvent;
+    private MaskEvent maskEvent;
     
     /** DotsPairGenerator to generate an DotsPair */
     private DotsPairGenerator dpg;
@@ -85,6 +179,8 @@ public class DotsGameController implements GameController {
     private Scene theScene;
     /** Canvas Graphics Context */
     private GraphicsContext graphicsContextCanvas;
+    /** Paints and clears the dots on the canvas. */
+    private DotsRenderer dotsRenderer;
     
     /** Colors to use in each block */
     private ArrayList<ColorPair> colorPairs;
@@ -108,30 +204,8 @@ public class DotsGameController implements GameController {
     /** The current DotsPair being evaluated by the subject. */
     private DotsPair currentDotsPair;
         
-    /** Used to measure response time. */
-    private static long responseTimeMetric;
-    
-    /** Current state of the overall game. */
-    public static CurrentState state;
-    
-    /** Describes the current state of gameplay */
-    private static GameState gameState;
-    private enum GameState {
-        /** User is being shown the dots. */
-        DISPLAYING_DOTS,
-
-        /** Displaying mask */
-        MASK,
-        
-        /** Question is being shown. Waiting for response from user. Recording reponse time. */
-        WAITING_FOR_RESPONSE,
-        
-        /** Waiting for the player to press space to continue */
-        PRESS_SPACE_TO_CONTINUE,
-        
-        /** Between blocks. (Not active gameplay) */
-        CHANGING_BLOCKS,
-    }
+    /** State of this session, shared with the timer threads. Replaced for every session. */
+    private SessionState session = new SessionState();
     
     /**
      * Lock for locking threads.
@@ -142,40 +216,169 @@ public class DotsGameController implements GameController {
         
     /** Alternate reference to "this" to be used in inner methods */
     private DotsGameController gameController;
-        
-    private static boolean feedback_given;
     
     private Random randomGenerator = new Random();
     
+    /** Shows the exit pop up on ESC, on every screen. */
+    private final EventHandler<KeyEvent> exitHandler = new EventHandler<KeyEvent>() {
+        @Override
+        public void handle(KeyEvent keyEvent) {
+            if (keyEvent.getCode() == KeyCode.ESCAPE && session.getState() != CurrentState.FINISHED) {
+                theView.showExitPopup();
+                theView.getExitPopup().getContent().get(0).toFront();
+                keyEvent.consume();
+            }
+        }
+    };
+    
+    /** Shows the next pair on SPACE, on the game screen. */
+    private final EventHandler<KeyEvent> spaceHandler = new EventHandler<KeyEvent>() {
+        @Override
+        public void handle(KeyEvent key) {
+            if (key.getCode() == KeyCode.SPACE
+                    && session.transition(GameState.PRESS_SPACE_TO_CONTINUE, GameState.DISPLAYING_DOTS)) {
+                theView.getPressSpaceText().setText("");
+                setOptions();
+            }
+        }
+    };
+    
     /** 
      * Constructor for the controller. There is only meant
      * to be one instance of the controller. Attaches listener
      * for when user provides response during trials. On a response,
      * prepare the next round and record the data.
+     * 
+     * Only what the login screen needs is set up here; the rest waits
+     * for initialize(), so that the login screen is shown sooner.
      * @param view The graphical user interface.
      */
     public DotsGameController(GameGUI view) {
-        
-        loadConfig();
-        
+        this(view, "");
+    }
+    
+    /**
+     * Constructor for one of several controllers in the same program.
+     * @param view The graphical user interface.
+     * @param metricsScope Start of the names of the metrics of this controller's
+     * sessions, e.g. "station2.", so that they are not counted with those of the
+     * other controllers. Empty for the only controller.
+     */
+    public DotsGameController(GameGUI view, String metricsScope) {
         this.gameController = this;
-        this.dpg = new DotsPairGenerator();
         this.currentDotsPair = null;
         this.theView = view;
         this.theScene = view.getScene();
         this.thePlayer = new Player();
-        this.dataWriter = new DataWriter(this);
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        this.trialsMeter = registry.meter(metricsScope + "trials", "Trials answered");
+        this.correctCounter = registry.counter(metricsScope + "trials.correct", "Trials answered correctly");
+        this.responseTimes = registry.histogram(metricsScope + "response.time.ms", 
+                "Response time in milliseconds", 0.1);
+        this.renderTimes = registry.histogram(metricsScope + "frame.render.ms", 
+                "Time to issue the commands painting the dots in milliseconds", 0.001);
+        this.frameJitter = registry.histogram(metricsScope + "frame.jitter.ms", 
+                "Difference in milliseconds between the time the dots were shown and "
+                + "flash.time, for trials not answered while they were shown", 0.01);
+        registry.gauge(metricsScope + "writer.queue.depth", 
+                "Trial events published but not yet handled by the data writer", 
+                () -> this.eventBus == null ? 0 : this.eventBus.getBacklog("trial-data-writer"));
+    }
+    
+    /**
+     * Load the configuration, start the event bus with the data writer, and draw
+     * the colors and schedule of the session. Called once the login screen is
+     * shown, and again when the subject logs in, when it does nothing.
+     */
+    public void initialize() {
+        if (this.dpg != null) {
+            return;
+        }
+        loadConfig();
+        this.dpg = new DotsPairGenerator();
+        this.startEventBus();
         this.initializeColors();
+        if (this.sessionJournalOn && !this.precompiledScheduleOn) {
+            logger.warning("session.journal.on needs precompiled.schedule.on; the session is not journaled.");
+            this.sessionJournalOn = false;
+        }
+        if (this.precompiledScheduleOn) {
+            this.useSessionSeed(randomGenerator.nextLong());
+        } else {
+            this.updateDotColors();
+            this.setFandJ();
+        }
+    }
+    
+    /**
+     * Compile the schedule of the session from a seed. The same seed gives the
+     * same schedule, colors, F/J and, when journaled, the same pairs.
+     * @param seed The session seed.
+     */
+    private void useSessionSeed(long seed) {
+        this.sessionSeed = seed;
+        this.dpg.useSchedule(ScheduleCompiler.compile(new Random(seed), 
+                NUM_PRACTICE_ROUNDS, NUM_QUESTIONS_PER_BLOCK, NUM_COLOR_PAIRS));
         this.updateDotColors();
         this.setFandJ();
     }
     
+    /**
+     * Create the event bus and subscribe the data writer, statistics and timing audit.
+     * The subscribers handle every event that was published before the program
+     * exits, or before the session ends in kiosk mode.
+     */
+    private void startEventBus() {
+        this.eventBus = new TrialEventBus(EVENT_BUS_CAPACITY);
+        this.dataWriter = new DataWriter();
+        this.statistics = new TrialStatistics();
+        this.timingAudit = new TimingAudit(this.flashTime, this.frameBudgetMs);
+        this.eventBus.subscribe("trial-data-writer", this.dataWriter);
+        this.eventBus.subscribe("trial-statistics", this.statistics);
+        this.eventBus.subscribe("trial-timing-audit", this.timingAudit);
+        TrialEventBus bus = this.eventBus;
+        this.shutdownHook = new Thread(() -> {
+            bus.close(EVENT_BUS_CLOSE_TIMEOUT);
+            SessionJournal sessionJournal = this.journal;
+            if (sessionJournal != null) {
+                sessionJournal.close();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+    }
+    
+    /**
+     * Publish a snapshot of the session for a phase transition of the current trial.
+     * Called on the FX thread only.
+     * @param phase The transition.
+     */
+    private void publish(TrialEvent.Phase phase) {
+        TrialEvent event = this.eventBus.claim();
+        event.phase = phase;
+        event.timestampNanos = System.nanoTime();
+        event.wallClockMillis = System.currentTimeMillis();
+        event.sessionState = session.getState();
+        event.trialIndex = this.trialIndex;
+        event.block = dpg.getBlockMode();
+        event.dotsPair = this.currentDotsPair;
+        event.colorOne = this.colorOne;
+        event.colorTwo = this.colorTwo;
+        event.fForTrue = this.FforTrue;
+        event.answered = session.isFeedbackGiven();
+        event.subjectId = thePlayer.getSubjectID();
+        event.subjectAge = thePlayer.getSubjectAge();
+        event.subjectGender = thePlayer.getSubjectGender();
+        event.numRounds = thePlayer.getNumRounds();
+        event.numCorrect = thePlayer.getNumCorrect();
+        event.yesCorrect = this.yesCorrect;
+        event.correct = thePlayer.isRight();
+        event.responseTimeNanos = thePlayer.getRT();
+        event.renderNanos = this.getLastRenderNanos();
+        this.eventBus.publish();
+    }
+    
     private void initializeColors() {
-        this.colorPairs = new ArrayList<ColorPair>();
-        this.colorPairs.add(new ColorPair(Color.BLUE, Color.YELLOW, "Blue", "Yellow"));
-        this.colorPairs.add(new ColorPair(Color.web("#33CC33"), Color.RED, "Green", "Red"));
-        this.colorPairs.add(new ColorPair(Color.PURPLE, Color.ORANGE, "Purple", "Orange"));
-        this.colorPairs.add(new ColorPair(Color.CYAN, Color.BROWN, "Cyan", "Brown"));
+        this.colorPairs = ColorPair.standardPairs();
     }
 
     /** 
@@ -183,20 +386,56 @@ public class DotsGameController implements GameController {
      */
     private void loadConfig() {
         new Config();
-        FLASH_TIME = Config.getPropertyInt("flash.time");
-        TIME_BETWEEN_ROUNDS = Config.getPropertyInt("time.between.rounds");
+        this.precompiledScheduleOn = Config.getPropertyBoolean("precompiled.schedule.on");
+        this.sessionJournalOn = Config.getPropertyBoolean("session.journal.on");
+        this.kioskModeOn = Config.getPropertyBoolean("kiosk.mode.on");
+        this.loadTimingConfig();
+    }
+    
+    /**
+     * Load the timing settings, which may change between blocks.
+     */
+    private void loadTimingConfig() {
+        this.flashTime = Config.getPropertyInt("flash.time");
+        this.timeBetweenRounds = Config.getPropertyInt("time.between.rounds");
+        this.frameBudgetMs = Config.getPropertyInt("frame.budget.ms");
+        this.warmupRounds = Config.getPropertyInt("warmup.rounds");
+    }
+    
+    /**
+     * If the local config file changed during the block, switch to the new
+     * configuration now, before the next block starts. Dot sets and pairs read
+     * their settings as they are placed, so they follow on their own.
+     * 
+     * The journal does not record the configuration, and a resumed or replayed
+     * session must place the same pairs, so while a session is journaled the
+     * change waits for the next subject to log in.
+     */
+    private void applyConfigChanges() {
+        if (this.journal != null) {
+            return;
+        }
+        if (!Config.applyPending()) {
+            return;
+        }
+        this.loadTimingConfig();
+        this.timingAudit.setExpected(this.flashTime, this.frameBudgetMs);
+        this.dpg.reloadConfig();
+        log.info("Applied config changes", "flashTime", this.flashTime, "timeBetweenRounds", this.timeBetweenRounds);
     }
     
     /**
      * Determine which of F and J is for "Yes"/"No".
      */
     private void setFandJ() {
-        if (randomGenerator.nextBoolean()) {
+        if (dpg.hasSchedule()) {
+            this.FforTrue = dpg.isScheduledFforTrue();
+        } else if (randomGenerator.nextBoolean()) {
             this.FforTrue = true;
-            System.out.println("F for true");
+            log.info("F for true");
         } else {
             this.FforTrue = false;
-            System.out.println("J for true");
+            log.info("J for true");
         }
     }
     
@@ -218,15 +457,8 @@ public class DotsGameController implements GameController {
                 }
             }
         });
-        this.theScene.addEventHandler(KeyEvent.KEY_PRESSED, new EventHandler<KeyEvent>() {
-            public void handle(final KeyEvent keyEvent) {
-                if (keyEvent.getCode() == KeyCode.ESCAPE) {
-                    theView.showExitPopup();
-                    theView.getExitPopup().getContent().get(0).toFront();
-                    keyEvent.consume();
-                }
-            }
-        });
+        this.theScene.removeEventHandler(KeyEvent.KEY_PRESSED, this.exitHandler);
+        this.theScene.addEventHandler(KeyEvent.KEY_PRESSED, this.exitHandler);
     }
     
     /**
@@ -235,6 +467,10 @@ public class DotsGameController implements GameController {
      * Records user inputted data and sets instructions screen.
      */
     private void onClickStartButton() {
+        if (this.resumeOffered) {
+            return;
+        }
+        this.initialize();
         theView.getFeedback().setVisible(false);
         theView.getFeedbackAge().setVisible(false);
         theView.getFeedbackGender().setVisible(false);
@@ -262,10 +498,183 @@ public class DotsGameController implements GameController {
             theView.getFeedbackAge().setVisible(true);
             return;
         }
+        this.applyConfigChanges();
+        if (this.sessionJournalOn) {
+            this.journal = SessionJournal.begin(SessionJournal.newActiveFile(), this.sessionSeed, 
+                    thePlayer, this.FforTrue, dpg.getCanvasWidth(), dpg.getCanvasHeight());
+        }
+        this.sessionOpen = true;
         theView.setInstructionsScreen(); 
         this.setKeyGuides();
     }
     
+    /**
+     * If a session was interrupted, offer to resume the most recent one. Called on
+     * startup, once the login screen is shown and the controller is initialized.
+     * No one can log in until the offer is answered.
+     */
+    public void offerResume() {
+        if (!this.sessionJournalOn) {
+            return;
+        }
+        long start = System.nanoTime();
+        SessionJournal.Contents recovery = SessionJournal.recoverInterrupted();
+        if (recovery == null) {
+            return;
+        }
+        log.info("Found interrupted session", "subject", recovery.subjectId, 
+                "trial", recovery.getTrialIndex(), "ms", (System.nanoTime() - start) / 1000000.0);
+        this.resumeOffered = true;
+        theView.showResumePopup(recovery.subjectId, recovery.getTrialIndex() + 1, 
+                () -> {
+                    this.resumeOffered = false;
+                    this.resumeSession(recovery);
+                },
+                () -> {
+                    this.resumeOffered = false;
+                    SessionJournal.archive(recovery.file, "interrupted_" + recovery.subjectId);
+                });
+    }
+    
+    /**
+     * Restore the player, schedule and block of an interrupted session and
+     * continue it at the trial it was interrupted at. A session interrupted
+     * right after the last trial of practice or of a block continues at the
+     * screen that follows it.
+     */
+    private void resumeSession(SessionJournal.Contents recovery) {
+        long start = System.nanoTime();
+        this.thePlayer = new Player(recovery.subjectId, recovery.subjectGender, 
+                new SimpleIntegerProperty(recovery.subjectAge));
+        this.useSessionSeed(recovery.seed);
+        this.FforTrue = recovery.fForTrue;
+        SessionJournal.Checkpoint checkpoint = recovery.getCheckpoint();
+        if (checkpoint == null) {
+            session.setState(CurrentState.INTRODUCTION);
+        } else {
+            this.trialIndex = checkpoint.trialIndex;
+            this.numRoundsIntoBlock = checkpoint.numRoundsIntoBlock;
+            thePlayer.setNumRounds(checkpoint.numRounds);
+            thePlayer.setNumCorrect(checkpoint.numCorrect);
+            dpg.restore(checkpoint.blockIndex, checkpoint.schedulePosition);
+            this.updateDotColors();
+            session.setState(checkpoint.state);
+        }
+        this.exportMissingTrials(recovery);
+        this.journal = SessionJournal.resume(recovery);
+        this.sessionOpen = true;
+        log.info("Resumed session", "subject", recovery.subjectId, 
+                "trial", this.trialIndex + 1, "ms", (System.nanoTime() - start) / 1000000.0);
+        
+        boolean practiceDone = session.getState() == CurrentState.PRACTICE 
+                && thePlayer.getNumRounds() >= NUM_PRACTICE_ROUNDS;
+        if (practiceDone || this.numRoundsIntoBlock >= NUM_QUESTIONS_PER_BLOCK) {
+            this.checkIfBlockDone();
+            this.checkIfDone();
+        } else {
+            theView.setInstructionsScreen();
+            this.setKeyGuides();
+        }
+    }
+    
+    /**
+     * Write the assessment trials of an interrupted session that are in its
+     * journal but not in the subject's CSV file: those answered before the
+     * interruption that the data writer had not yet written. The writer writes
+     * the trials in order, so these are the last ones journaled. Their pairs are
+     * rebuilt from the session seed as SessionReplay does; a trial whose pair
+     * does not come out as the one shown is not written, and is logged as missing.
+     */
+    private void exportMissingTrials(SessionJournal.Contents recovery) {
+        ArrayList<SessionJournal.Trial> assessed = new ArrayList<SessionJournal.Trial>();
+        for (SessionJournal.Trial trial : recovery.trials) {
+            if (trial.outcome != null && trial.checkpoint.state == CurrentState.GAMEPLAY) {
+                assessed.add(trial);
+            }
+        }
+        if (assessed.isEmpty()) {
+            return;
+        }
+        int numWritten;
+        try {
+            numWritten = DataWriter.countRows(recovery.subjectId, recovery.startedMillis,
+                    assessed.get(assessed.size() - 1).outcome.wallClockMillis);
+        } catch (IOException e) {
+            logger.warning("Results of subject " + recovery.subjectId 
+                    + " could not be checked against the journal: " + e);
+            return;
+        }
+        int numMissing = assessed.size() - numWritten;
+        if (numMissing <= 0) {
+            return;
+        }
+        if (recovery.canvasWidth <= 0 || recovery.canvasHeight <= 0) {
+            logger.warning(numMissing + " trials of subject " + recovery.subjectId 
+                    + " are journaled but missing from the results, and cannot be rebuilt.");
+            return;
+        }
+        SessionJournal.Trial firstMissing = assessed.get(numWritten);
+        ScheduledSession replayed = new ScheduledSession(recovery.seed, 
+                recovery.canvasWidth, recovery.canvasHeight);
+        DataWriter writer = new DataWriter();
+        int numExported = 0;
+        boolean missing = false;
+        try {
+            for (SessionJournal.Trial trial : recovery.trials) {
+                if (trial.outcome == null || replayed.isDone()) {
+                    break;
+                }
+                ColorPair colorPair = this.colorPairs.get(replayed.getColorPairIndex());
+                DotsPair pair = replayed.nextPair();
+                replayed.recordResponse(trial.outcome.correct);
+                missing |= trial == firstMissing;
+                if (missing && trial.checkpoint.state == CurrentState.GAMEPLAY
+                        && pair.fingerprint() == trial.outcome.pairFingerprint) {
+                    writer.onEvent(this.rebuildResponse(recovery, trial, pair, colorPair));
+                    numExported++;
+                }
+                replayed.endTrial();
+            }
+        } finally {
+            replayed.getGenerator().close();
+        }
+        log.info("Exported journaled trials missing from the results", "subject", recovery.subjectId, 
+                "missing", numMissing, "exported", numExported);
+        if (numExported < numMissing) {
+            logger.warning((numMissing - numExported) + " trials of subject " + recovery.subjectId 
+                    + " are journaled but missing from the results, and did not rebuild the same.");
+        }
+    }
+    
+    /**
+     * The RESPONSE event of a journaled assessment trial, as it was published.
+     * The date and time are those the trial was journaled at.
+     */
+    private TrialEvent rebuildResponse(SessionJournal.Contents recovery, SessionJournal.Trial trial, 
+            DotsPair pair, ColorPair colorPair) {
+        TrialEvent event = new TrialEvent();
+        event.phase = TrialEvent.Phase.RESPONSE;
+        event.wallClockMillis = trial.outcome.wallClockMillis;
+        event.sessionState = trial.checkpoint.state;
+        event.trialIndex = trial.checkpoint.trialIndex - 1;
+        event.block = trial.outcome.blockMode;
+        event.dotsPair = pair;
+        event.colorOne = colorPair.getColorOneName();
+        event.colorTwo = colorPair.getColorTwoName();
+        event.fForTrue = recovery.fForTrue;
+        event.answered = true;
+        event.subjectId = recovery.subjectId;
+        event.subjectAge = recovery.subjectAge;
+        event.subjectGender = recovery.subjectGender;
+        event.numRounds = trial.checkpoint.numRounds;
+        event.numCorrect = trial.checkpoint.numCorrect;
+        event.yesCorrect = trial.outcome.yesCorrect;
+        event.correct = trial.outcome.correct;
+        event.responseTimeNanos = trial.outcome.responseTimeNanos;
+        event.renderNanos = trial.outcome.renderNanos;
+        return event;
+    }
+    
     /** 
      * Set event listener on the Next button. 
      */
@@ -289,7 +698,11 @@ public class DotsGameController implements GameController {
      */
     private void onClickNextInstructions() {
         theView.setGameScreen(); 
-        state = CurrentState.PRACTICE;
+        if (session.getState() == CurrentState.INTRODUCTION) {
+            session.setState(CurrentState.PRACTICE);
+        } else if (session.getState() == CurrentState.GAMEPLAY) {
+            theView.getPractice().setVisible(false);
+        }
     }
     
     /**
@@ -302,8 +715,8 @@ public class DotsGameController implements GameController {
         this.theView.getStartAssessment().setOnAction( e-> {
             theView.setGameScreen();
             theView.getPractice().setVisible(false);
-            state = CurrentState.GAMEPLAY;
-            gameState = GameState.CHANGING_BLOCKS;
+            session.setState(CurrentState.GAMEPLAY);
+            session.setGameState(GameState.CHANGING_BLOCKS);
             if (isPractice == CurrentState.PRACTICE) {
                 this.resetPlayer();
             }
@@ -329,27 +742,28 @@ public class DotsGameController implements GameController {
         this.theScene.setOnKeyPressed(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent event) {
-                if ((event.getCode() == KeyCode.F 
-                        || event.getCode() == KeyCode.J) 
-                        && !feedback_given
+                if (event.getCode() != KeyCode.F && event.getCode() != KeyCode.J) {
+                    return;
+                }
+                KeyPressEvent keyPressEvent = new KeyPressEvent();
+                GameState gameState = session.getGameState();
+                if (!session.isFeedbackGiven()
                         && (gameState == GameState.WAITING_FOR_RESPONSE 
                         || gameState == GameState.MASK 
                         || gameState == GameState.DISPLAYING_DOTS)) {
+                    keyPressEvent.accepted = true;
                     gameController.handlePressForJ(event);
                 }
-            }
-        });
-        this.theScene.addEventHandler(KeyEvent.KEY_PRESSED, new EventHandler<KeyEvent>() {
-            @Override
-            public void handle(KeyEvent key) {
-                if (key.getCode() == KeyCode.SPACE
-                        && gameState == GameState.PRESS_SPACE_TO_CONTINUE) {
-                    theView.getPressSpaceText().setText("");
-                    setOptions();
-                    gameState = GameState.DISPLAYING_DOTS;
+                if (keyPressEvent.shouldCommit()) {
+                    tag(keyPressEvent);
+                    keyPressEvent.key = event.getCode().getName();
+                    keyPressEvent.gameState = String.valueOf(gameState);
+                    keyPressEvent.commit();
                 }
             }
         });
+        this.theScene.removeEventHandler(KeyEvent.KEY_PRESSED, this.spaceHandler);
+        this.theScene.addEventHandler(KeyEvent.KEY_PRESSED, this.spaceHandler);
     }  
     
     /**
@@ -358,28 +772,21 @@ public class DotsGameController implements GameController {
      * @param event
      */
     private void handlePressForJ(KeyEvent event) {
-        feedback_given = true;
+        if (!session.giveFeedback()) {
+            return;
+        }
         this.responseAndUpdate(event);
-        if (gameState == GameState.WAITING_FOR_RESPONSE) {
+        if (session.getGameState() == GameState.WAITING_FOR_RESPONSE) {
             this.prepareNextRound(); 
-        } else if (gameState == GameState.DISPLAYING_DOTS) {
+        } else if (session.getGameState() == GameState.DISPLAYING_DOTS) {
             this.clearRound();
-        } else if (gameState == GameState.MASK) {
+        } else if (session.getGameState() == GameState.MASK) {
             theView.getMask().setVisible(false);
+            this.endMask();
             showPressSpaceToContinue();
         }
         this.checkIfBlockDone();
         this.checkIfDone();
-        this.exportDataToCSV();
-    }
-    
-    /** 
-     * Export data to CSV file.
-     */
-    private void exportDataToCSV() {
-        if (state == CurrentState.GAMEPLAY) {
-            dataWriter.writeToCSV();    
-        }
     }
     
     /**
@@ -391,15 +798,31 @@ public class DotsGameController implements GameController {
      */
     public void responseAndUpdate (
             KeyEvent e) {
-        if (state != CurrentState.PRACTICE) {
+        if (session.getState() != CurrentState.PRACTICE) {
             this.numRoundsIntoBlock++;
         }
+        ResponseEvent responseEvent = new ResponseEvent();
+        responseEvent.begin();
         DotsPair dp = this.currentDotsPair;
         this.setYesCorrect(GameLogic.checkWhichSideCorrect(dp, dpg.getBlockMode()));
         boolean correct = GameLogic.checkAnswerCorrect(e, this.yesCorrect, this.FforTrue);
+        this.dpg.recordResponse(correct);
         this.updatePlayer(correct);   
+        this.publish(TrialEvent.Phase.RESPONSE);
+        this.trialsMeter.mark();
+        if (correct) {
+            this.correctCounter.increment();
+        }
+        this.responseTimes.record(thePlayer.getRT() / 1000000.0);
+        if (responseEvent.shouldCommit()) {
+            this.tag(responseEvent);
+            responseEvent.correct = correct;
+            responseEvent.responseTime = (long) thePlayer.getRT();
+            responseEvent.commit();
+        }
+        this.trialIndex++;
+        this.journalTrial(e.getCode() == KeyCode.F, correct);
         this.feedbackSound(correct);
-        this.dataWriter.grabData(this);
     }
     
     /** Update the player appropriately.
@@ -419,21 +842,35 @@ public class DotsGameController implements GameController {
         currentPlayer.incrementNumRounds();
     }
     
+    /**
+     * Append where the session is now and how the trial went to the journal,
+     * if there is one.
+     * @param pressedF True if the subject pressed F, false if J.
+     * @param correct True if the response was correct.
+     */
+    private void journalTrial(boolean pressedF, boolean correct) {
+        if (this.journal != null) {
+            this.journal.appendTrial(new SessionJournal.Checkpoint(this.trialIndex, session.getState(),
+                    dpg.getBlockIndex(), this.numRoundsIntoBlock, dpg.getSchedulePosition(),
+                    thePlayer.getNumRounds(), thePlayer.getNumCorrect()),
+                    new SessionJournal.Outcome(dpg.getBlockMode(), pressedF, this.yesCorrect, correct,
+                    (long) thePlayer.getRT(), this.getLastRenderNanos(), this.currentDotsPair.fingerprint(),
+                    System.currentTimeMillis()));
+        }
+    }
+    
     /** If user inputs correct answer play positive feedback sound,
      * if not then play negative feedback sound.
-     * @param feedbackSoundFileUrl the File Url of the Sound to be played.
+     * The clips are decoded by the ResourceRegistry before the first block.
      * @param correct whether the subject answered correctly or not.
      */
     private void feedbackSound(boolean correct) {
-        URL feedbackSoundFileUrl;
-        if (correct) {
-            feedbackSoundFileUrl = 
-                    getClass().getResource("/res/sounds/Ping.aiff");
-        } else {
-            feedbackSoundFileUrl = 
-                    getClass().getResource("/res/sounds/Basso.aiff");
+        AudioClip feedbackSound = ResourceRegistry.get().getSound(
+                correct ? ResourceRegistry.CORRECT_SOUND : ResourceRegistry.INCORRECT_SOUND);
+        if (feedbackSound != null) {
+            feedbackSound.play();
         }
-        new AudioClip(feedbackSoundFileUrl.toString()).play();
+        this.publish(TrialEvent.Phase.FEEDBACK);
     }
     
     /**
@@ -454,16 +891,34 @@ public class DotsGameController implements GameController {
      * Prepare the first round by making a load bar to 
      * let the subject prepare for the first question.
      * 
-     * Also sets up the canvases on which the dots will be painted.
+     * While the bar fills, a WarmUp runs the placing, painting and writing of
+     * throwaway pairs so that the first trials of the block do not run cold.
+     * Once a warm-up has run all of its rounds, later blocks skip it.
+     * The bar shows the lesser of the time passed and the warm-up done; the
+     * countdown lasts GET_READY_TIME at least, and longer only if the warm-up
+     * is slower than that.
+     * 
+     * Also sets up the renderer of the canvas on which the dots will be painted,
+     * which is kept for as long as the game screen keeps its canvas.
      */
     public void prepareFirstRound() {
+        WarmUp warmUp = new WarmUp(WarmUp.isWarm() ? 0 : this.warmupRounds, 
+                dpg.getCanvasWidth(), dpg.getCanvasHeight());
         Task<Void> sleeper = new Task<Void>() {   
             @Override
             protected Void call() throws Exception {
-                for (int i = 0; i < GET_READY_TIME; i++) {
-                    this.updateProgress(i, GET_READY_TIME); 
-                    Thread.sleep(1);
+                long start = System.nanoTime();
+                double timePassed = 0;
+                while ((timePassed < 1 || !warmUp.isDone()) && !this.isCancelled()) {
+                    if (warmUp.isDone()) {
+                        Thread.sleep(1);
+                    } else {
+                        warmUp.round();
+                    }
+                    timePassed = Math.min(1, (System.nanoTime() - start) / (GET_READY_TIME * 1000000.0));
+                    this.updateProgress(Math.min(timePassed, warmUp.getProgress()), 1);
                 }
+                warmUp.report();
                 return null;
             }
         };
@@ -471,15 +926,18 @@ public class DotsGameController implements GameController {
         sleeper.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
             @Override
             public void handle(WorkerStateEvent e) {
-                gameState = GameState.DISPLAYING_DOTS;
-                graphicsContextCanvas = theView.getDotsCanvas().getGraphicsContext2D();
+                session.setGameState(GameState.DISPLAYING_DOTS);
+                GraphicsContext graphicsContext = theView.getDotsCanvas().getGraphicsContext2D();
+                if (dotsRenderer == null || graphicsContext != graphicsContextCanvas) {
+                    graphicsContextCanvas = graphicsContext;
+                    dotsRenderer = new DotsRenderer(graphicsContextCanvas, CANVAS_COLOR);
+                }
                 setOptions();
-                responseTimeMetric = System.nanoTime();
+                session.startResponseTimer();
                 theView.getGetReadyBox().setVisible(false);
             }
         });
-        Thread sleeperThread = new Thread(sleeper);
-        sleeperThread.start();
+        this.startTimer(sleeper);
     }
     
     /**
@@ -497,18 +955,22 @@ public class DotsGameController implements GameController {
         if (this.numRoundsIntoBlock >= NUM_QUESTIONS_PER_BLOCK) {
             this.numRoundsIntoBlock = 0;
             this.dpg.changeBlock();
+            this.applyConfigChanges();
             this.updateDotColors();
             theView.setBlockCompleteScreen(dpg.getBlockMode(), colorOne, colorTwo);
-            gameState = GameState.CHANGING_BLOCKS;
+            session.setGameState(GameState.CHANGING_BLOCKS);
         }
     }
     
     /**
-     * Get a new random pair of dot colors for the next block.
+     * Get a new random pair of dot colors for the next block,
+     * or the scheduled pair if the session was precompiled.
      */
     private void updateDotColors() {
         ColorPair selectedPair = null;
-        if (!this.colorPairs.isEmpty()) {
+        if (dpg.hasSchedule()) {
+            selectedPair = this.colorPairs.get(dpg.getScheduledColorPairIndex());
+        } else if (!this.colorPairs.isEmpty()) {
             selectedPair = this.colorPairs.remove(randomGenerator.nextInt(colorPairs.size()));
         }
         dotsColorOne = selectedPair.getColorOne();
@@ -520,10 +982,10 @@ public class DotsGameController implements GameController {
      * Check if subject has completed practice or assessment.
      */
     private void checkIfDone() {
-        System.out.println(thePlayer.getNumRounds());
+        log.info("Rounds", "numRounds", thePlayer.getNumRounds());
         if (thePlayer.getNumRounds() >= NUM_ROUNDS) {
             this.finishGame();
-        } else if (state == CurrentState.PRACTICE && thePlayer.getNumRounds() >= NUM_PRACTICE_ROUNDS) {
+        } else if (session.getState() == CurrentState.PRACTICE && thePlayer.getNumRounds() >= NUM_PRACTICE_ROUNDS) {
             this.finishPractice();
         }
     } 
@@ -533,16 +995,99 @@ public class DotsGameController implements GameController {
      * then change the scene to the finish screen.
      */
     private void finishGame() {
+        if (this.journal != null) {
+            this.journal.finish(thePlayer.getSubjectID());
+            this.journal = null;
+        }
+        session.setState(CurrentState.FINISHED);
         theView.setFinishScreen(thePlayer.getNumCorrect());
         theView.getScene().setOnKeyPressed(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent event) {
                 if (event.getCode() == KeyCode.ESCAPE) {
-                    System.exit(0);
+                    quit();
                 }
             }
         });
     }
+    
+    /**
+     * Quit, once the exit pop up is confirmed or ESC is pressed on the finish
+     * screen. In kiosk mode, a session that is open ends and the login screen
+     * is shown; otherwise, and on the login screen, the program exits.
+     */
+    public void quit() {
+        if (this.kioskModeOn && this.sessionOpen) {
+            this.endSession();
+        } else {
+            System.exit(0);
+        }
+    }
+    
+    /**
+     * End the session and show the login screen for the next subject, in the
+     * same JVM, so that it keeps its loaded classes, compiled code and
+     * resources. Called on the FX thread.
+     * 
+     * The timers of the current trial are cancelled, the event bus writes out
+     * what is left and stops its threads, and its shutdown hook is removed.
+     * The pair generator stops filling its stimulus bank and closes the bank's
+     * file. Any of the SESSION_THREADS still running after that is logged.
+     * The journal of a session that was quit is closed but kept, and offered
+     * to be resumed like after a crash. Then the player, the state of the
+     * session, the pair generator and the colors are replaced by new ones,
+     * initialize() starts a new event bus, and the handlers of the login
+     * screen replace those of the game. Metrics keep counting across sessions.
+     */
+    private void endSession() {
+        long start = System.nanoTime();
+        for (Task<Void> timer : this.timers) {
+            timer.cancel();
+        }
+        this.timers.clear();
+        if (this.journal != null) {
+            this.journal.close();
+            this.journal = null;
+        }
+        this.eventBus.close(EVENT_BUS_CLOSE_TIMEOUT);
+        Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+        this.dpg.close();
+        checkSessionThreadsStopped();
+        this.theScene.removeEventHandler(KeyEvent.KEY_PRESSED, this.spaceHandler);
+        theView.getExitPopup().hide();
+        String subjectId = thePlayer.getSubjectID();
+        
+        this.sessionOpen = false;
+        this.session = new SessionState();
+        this.thePlayer = new Player();
+        this.dpg = null;
+        this.currentDotsPair = null;
+        this.flashEvent = null;
+        this.maskEvent = null;
+        this.trialIndex = 0;
+        this.numRoundsIntoBlock = 0;
+        this.lastBlock = 0;
+        this.yesCorrect = false;
+        this.initialize();
+        theView.setLoginScreen();
+        log.info("Session ended", "subject", subjectId, "ms", (System.nanoTime() - start) / 1000000.0);
+        this.offerResume();
+    }
+    
+    /**
+     * Log a warning if a thread of the SESSION_THREADS is still running.
+     */
+    private static void checkSessionThreadsStopped() {
+        ArrayList<String> running = new ArrayList<String>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && SESSION_THREADS.contains(thread.getName())) {
+                running.add(thread.getName());
+            }
+        }
+        if (!running.isEmpty()) {
+            log.warning("Threads of the ended session are still running", "threads", running);
+        }
+    }
   
     /**
      * If subject has completed the total number of rounds specified,
@@ -551,8 +1096,9 @@ public class DotsGameController implements GameController {
     private void finishPractice() {
         theView.setPracticeCompleteScreen(dpg.getBlockMode(), colorOne, colorTwo);
         theView.getScene().setOnKeyPressed(null);
-        state = CurrentState.PRACTICE_FINISHED;
+        session.setState(CurrentState.PRACTICE_FINISHED);
         this.dpg.clearRatios();
+        this.applyConfigChanges();
     }
     
     /**
@@ -560,8 +1106,17 @@ public class DotsGameController implements GameController {
      */
     public void clearRound() {
         theView.getDotsCanvas().setOpacity(0);
-        graphicsContextCanvas.setFill(CANVAS_COLOR);
-        graphicsContextCanvas.fillRect(0, 0, theView.getDotsCanvas().getWidth(),theView.getDotsCanvas().getHeight());
+        dotsRenderer.clear();
+        if (!session.isFeedbackGiven()) {
+            this.frameJitter.record(Math.abs((System.nanoTime() - this.onsetNanos) / 1000000.0 - this.flashTime));
+        }
+        if (this.flashEvent != null) {
+            this.tag(this.flashEvent);
+            this.flashEvent.answered = session.isFeedbackGiven();
+            this.flashEvent.commit();
+            this.flashEvent = null;
+        }
+        this.publish(TrialEvent.Phase.OFFSET);
         
         this.showMask();
     }
@@ -596,16 +1151,19 @@ public class DotsGameController implements GameController {
      *  2.) If user has answered - tell user to press space to continue
      */
     private void showMask() {
-        DotsGameController.gameState = GameState.MASK;
+        session.setGameState(GameState.MASK);
         theView.getMask().setVisible(true);
+        this.maskEvent = new MaskEvent();
+        this.maskEvent.begin();
+        this.publish(TrialEvent.Phase.MASK);
         Task<Void> sleeper = new Task<Void>() {
             @Override
             protected Void call() throws Exception {
                 int i = 0;
-                logger.info(gameState.toString());
-                while (i < MASK_TIME) {
+                log.info("Mask", "gameState", session.getGameState());
+                while (i < MASK_TIME && !this.isCancelled()) {
                     synchronized (lock) {
-                        if (gameState == GameState.MASK) {
+                        if (session.getGameState() == GameState.MASK) {
                             this.updateProgress(i, MASK_TIME); 
                             Thread.sleep(1);
                             i++;
@@ -618,9 +1176,10 @@ public class DotsGameController implements GameController {
         sleeper.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
             @Override
             public void handle(WorkerStateEvent e) {
-                DotsGameController.gameState = GameState.WAITING_FOR_RESPONSE; 
+                session.setGameState(GameState.WAITING_FOR_RESPONSE); 
                 theView.getMask().setVisible(false); 
-                if (!feedback_given) {
+                endMask();
+                if (!session.isFeedbackGiven()) {
                     setTheQuestion();
                 } else {
                     showPressSpaceToContinue();
@@ -628,15 +1187,33 @@ public class DotsGameController implements GameController {
                 
             }
         });
-        Thread sleeperThread = new Thread(sleeper);
-        sleeperThread.start();
+        this.startTimer(sleeper);
+    }
+    
+    /**
+     * Commit the Flight Recorder event of the mask, once it is hidden.
+     */
+    private void endMask() {
+        if (this.maskEvent != null) {
+            this.tag(this.maskEvent);
+            this.maskEvent.commit();
+            this.maskEvent = null;
+        }
+    }
+    
+    /**
+     * Set the trial and block of a Flight Recorder event to the current ones.
+     */
+    private void tag(TrialLifecycleEvent event) {
+        event.trialIndex = this.trialIndex;
+        event.block = dpg.getBlockMode();
     }
     
     /**
      * Clear the question and tell the user to press space to continue.
      */
     private void showPressSpaceToContinue() {
-        gameState = GameState.PRESS_SPACE_TO_CONTINUE;
+        session.setGameState(GameState.PRESS_SPACE_TO_CONTINUE);
         theView.getQuestion().setText("");
         theView.getPressSpaceText().setText("Press space to continue");
     }
@@ -645,19 +1222,39 @@ public class DotsGameController implements GameController {
      * Set and show the next round's choices.
      */
     public void setOptions() {
+        long start = System.nanoTime();
         this.prepareNextPair();
+        double generateTime = (System.nanoTime() - start) / 1000000.0;
         this.paintDots();
-        responseTimeMetric = System.nanoTime();
+        this.onsetNanos = System.nanoTime();
+        log.info("Onset", "trial", this.trialIndex, "roundsIntoBlock", this.numRoundsIntoBlock,
+                "generateMs", generateTime, "renderMs", dotsRenderer.getLastPaintNanos() / 1000000.0);
+        this.flashEvent = new FlashEvent();
+        this.flashEvent.begin();
+        session.startRound();
+        this.publish(TrialEvent.Phase.ONSET);
         this.hideDots();
-        feedback_given = false;
     }
     
     /**
      * Prepare the next pair.
      */
     private void prepareNextPair() {
+        PairGenerationEvent pairGenerationEvent = new PairGenerationEvent();
+        pairGenerationEvent.begin();
+        if (this.journal != null) {
+            dpg.seedNextPair(SessionJournal.pairSeed(this.sessionSeed, this.trialIndex));
+        }
         dpg.getNewModePair();
         this.currentDotsPair = dpg.getDotsPair();
+        if (pairGenerationEvent.shouldCommit()) {
+            this.tag(pairGenerationEvent);
+            pairGenerationEvent.placementAttempts = this.currentDotsPair.getPlacementAttempts();
+            pairGenerationEvent.numDots = this.currentDotsPair.getDotSetOne().getTotalNumDots()
+                    + this.currentDotsPair.getDotSetTwo().getTotalNumDots();
+            pairGenerationEvent.controlType = String.valueOf(this.currentDotsPair.getControlType());
+            pairGenerationEvent.commit();
+        }
     }
     
     /**
@@ -667,30 +1264,39 @@ public class DotsGameController implements GameController {
         theView.getQuestion().setText("");
         theView.getDotsCanvas().setOpacity(1.0);
         
-        DotSet dotSetOne = this.currentDotsPair.getDotSetOne();
-        DotSet dotSetTwo = this.currentDotsPair.getDotSetTwo();
-        graphicsContextCanvas.setFill(dotsColorOne);
-        this.paintDotSet(dotSetOne, graphicsContextCanvas);
-        graphicsContextCanvas.setFill(dotsColorTwo);
-        this.paintDotSet(dotSetTwo, graphicsContextCanvas);
+        PaintEvent paintEvent = new PaintEvent();
+        paintEvent.begin();
+        dotsRenderer.paint(this.currentDotsPair, dotsColorOne, dotsColorTwo);
+        if (paintEvent.shouldCommit()) {
+            this.tag(paintEvent);
+            paintEvent.numDots = this.currentDotsPair.getDotSetOne().getTotalNumDots()
+                    + this.currentDotsPair.getDotSetTwo().getTotalNumDots();
+            paintEvent.commit();
+        }
+        double renderTime = dotsRenderer.getLastPaintNanos() / 1000000.0;
+        this.renderTimes.record(renderTime);
+        if (renderTime > this.frameBudgetMs) {
+            log.warning("Render time exceeds frame budget", "ms", renderTime, "budgetMs", this.frameBudgetMs);
+        }
     }
     
     /**
-     * Hide the dot sets after some time (FLASH_TIME) has passed.
+     * Hide the dot sets after some time (flashTime) has passed.
      */
     private void hideDots() { 
+        final int flashTime = this.flashTime;
         Task<Void> sleeper = new Task<Void>() {
             @Override
             protected java.lang.Void call() throws Exception {
                 int i = 0;
                  
-                while (i < FLASH_TIME) {
+                while (i < flashTime) {
                     synchronized (lock) {
-                        this.updateProgress(i, FLASH_TIME);
+                        this.updateProgress(i, flashTime);
                         Thread.sleep(1);
                         i++;
                         /** Quit and exit once F or J pressed */
-                        if (feedback_given == true) {
+                        if (session.isFeedbackGiven()) {
                             return null;
                         }
                     }
@@ -702,47 +1308,53 @@ public class DotsGameController implements GameController {
         sleeper.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
             @Override
             public void handle(WorkerStateEvent event) {
-                if (gameState == GameState.DISPLAYING_DOTS && feedback_given == false) {
+                if (session.getGameState() == GameState.DISPLAYING_DOTS && !session.isFeedbackGiven()) {
                     gameController.clearRound();    
                 }
             }
         });
-        new Thread(sleeper).start();
+        this.startTimer(sleeper);
     }
-
+    
     /**
-     * Paint the dots for a given dotset.
-     * @param dotSet - the dotSet to be painted.
-     * @param graphicsContext
+     * Run a timer task of the current trial on its own thread, and keep it
+     * until it is done so that endSession() can cancel it.
      */
-    private void paintDotSet(DotSet dotSet, GraphicsContext graphicsContext) {
-        for (int i = 0; i < dotSet.getTotalNumDots(); i++) {
-            
-            int x = dotSet.getPositions().get(i).x;
-            int y = dotSet.getPositions().get(i).y;
-
-            if (dotSet.getPositions().get(i).shape == Shape.CIRCLE) {
-                graphicsContext.fillOval(x, y, 
-                        dotSet.getDiameters().get(i), 
-                        dotSet.getDiameters().get(i));
-            } else if (dotSet.getPositions().get(i).shape == Shape.SQUARE) {
-                graphicsContext.fillRect(x, y, 
-                        dotSet.getDiameters().get(i), 
-                        dotSet.getDiameters().get(i));
-            }
-        }
+    private void startTimer(Task<Void> timer) {
+        this.timers.removeIf(Task::isDone);
+        this.timers.add(timer);
+        new Thread(timer).start();
     }
 
     /** 
      * Record the response time of the subject. 
-     * responseTimeMetric should be set whenever the dots are shown.
+     * The session's response timer should be started whenever the dots are shown.
      */
     public void recordResponseTime() {
-        long responseTime = System.nanoTime() - responseTimeMetric;
+        long responseTime = session.getElapsedResponseNanos();
         thePlayer.setResponseTime(responseTime);
-        logger.info("Response time: " + responseTime / 1000000000.0);
+        log.info("Response", "seconds", responseTime / 1000000000.0);
+    }
+    
+    /**
+     * @return The state of this session.
+     */
+    public SessionState getSession() {
+        return session;
+    }
+
+    public TrialEventBus getEventBus() {
+        return eventBus;
+    }
+    
+    public TrialStatistics getStatistics() {
+        return statistics;
     }
     
+    public TimingAudit getTimingAudit() {
+        return timingAudit;
+    }
+
     public Player getThePlayer() {
         return thePlayer;
     }
@@ -751,6 +1363,13 @@ public class DotsGameController implements GameController {
         this.thePlayer = thePlayer;
     }
 
+    /**
+     * @return Nanoseconds spent painting the current pair, or 0 before the first pair.
+     */
+    public long getLastRenderNanos() {
+        return dotsRenderer == null ? 0 : dotsRenderer.getLastPaintNanos();
+    }
+
     public DotsPair getCurrentDotsPair() {
         return currentDotsPair;
     }
@@ -17,6 +17,9 @@ public interface GameController {
     
     /** Number of practice rounds. */
     public static final int NUM_PRACTICE_ROUNDS = 4;
+    
+    /** Number of dot color pairs a session draws its blocks' colors from. */
+    public static final int NUM_COLOR_PAIRS = 4;
     /** Number of rounds for each difficulty setting. */
     
     public static final int ROUNDS_PER_DIFFICULTY = NUM_ROUNDS / 3;
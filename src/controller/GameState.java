@@ -0,0 +1,26 @@
+package controller;
+
+/**
+ * Enum describing the current state of gameplay within a round.
+ * 
+ * Classes Related To:
+ *  -SessionState.java
+ *      -Holds the GameState of a session.
+ * 
+ */
+public enum GameState {
+    /** User is being shown the dots. */
+    DISPLAYING_DOTS,
+
+    /** Displaying mask */
+    MASK,
+    
+    /** Question is being shown. Waiting for response from user. Recording reponse time. */
+    WAITING_FOR_RESPONSE,
+    
+    /** Waiting for the player to press space to continue */
+    PRESS_SPACE_TO_CONTINUE,
+    
+    /** Between blocks. (Not active gameplay) */
+    CHANGING_BLOCKS,
+}
@@ -0,0 +1,565 @@
+package controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import config.Config;
+import model.Player;
+
+/**
+ * Append-only journal of a session, from which an interrupted session can be
+ * resumed at the trial it was interrupted at.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java
+ *      -Begins the journal at login, appends a Checkpoint after every response,
+ *      and on startup offers to resume a session whose journal was not finished.
+ *  -DotsPairGenerator.java
+ *      -Restored to the checkpoint's block and schedule position. Every pair is
+ *      placed from pairSeed() of the session seed and the trial index, so
+ *      the session seed and the trial index are the whole random state.
+ *  -SessionReplay.java
+ *      -Reads finished journals with read() and replays them from the seed and
+ *      the recorded Outcomes.
+ *
+ * The journal is one file of records, each framed as
+ *  [int length][byte type][payload][int CRC32 of type and payload].
+ * The first record is the SESSION record with the seed, the subject and the
+ * canvas size, then a TRIAL record with the Checkpoint and Outcome follows for
+ * every response, and an END record once the session is complete. Reading stops at the first record that is cut short or fails its
+ * CRC, so a record torn by a crash is dropped together with whatever follows it.
+ *
+ * Records are written to the file as soon as they are appended, so a crash of
+ * the program loses nothing. They are only forced to the disk once
+ * journal.sync.batch trials are unforced or journal.sync.interval.ms has passed,
+ * by a thread of the journal, so the FX thread never waits for the disk and a
+ * power loss loses at most one batch. The SESSION and END records are forced
+ * right away.
+ *
+ * Every session journals to its own file from newActiveFile(), so sessions
+ * running in the same program never share a journal. findInterrupted() lists
+ * the active journals no session of the program has open.
+ */
+public class SessionJournal {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    /** Folder the journals are kept in. */
+    public static final String JOURNAL_DIR = "journal";
+
+    /**
+     * Start of the name of the journal of a session that is running or was
+     * interrupted. Renamed once the session is finished or discarded.
+     */
+    static final String ACTIVE_PREFIX = "session";
+
+    /** Numbers the active journals created by this program. */
+    private static final AtomicInteger NUM_CREATED = new AtomicInteger();
+
+    /** Active journals open in this program, which are not interrupted. */
+    private static final Set<File> OPEN = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    static final int MAGIC = 0x44544a31;
+
+    static final byte SESSION = 1;
+    static final byte TRIAL = 2;
+    static final byte END = 3;
+
+    /** Number of trials appended before the journal is forced to disk. */
+    private final int syncBatch;
+
+    /** Time in milliseconds after which appended trials are forced to disk. */
+    private final int syncIntervalMs;
+
+    private final File file;
+    private final FileChannel channel;
+    private final Thread syncThread;
+
+    /** Number of records written but not yet forced. Guarded by this. */
+    private int unsynced;
+    private boolean closed;
+
+    /**
+     * Where a session was after a response.
+     */
+    public static class Checkpoint {
+        /** Number of trials answered in the session, practice included. */
+        public final int trialIndex;
+        public final CurrentState state;
+        public final int blockIndex;
+        public final int numRoundsIntoBlock;
+        public final int schedulePosition;
+        public final int numRounds;
+        public final int numCorrect;
+
+        public Checkpoint(int trialIndex, CurrentState state, int blockIndex, int numRoundsIntoBlock,
+                int schedulePosition, int numRounds, int numCorrect) {
+            this.trialIndex = trialIndex;
+            this.state = state;
+            this.blockIndex = blockIndex;
+            this.numRoundsIntoBlock = numRoundsIntoBlock;
+            this.schedulePosition = schedulePosition;
+            this.numRounds = numRounds;
+            this.numCorrect = numCorrect;
+        }
+    }
+
+    /**
+     * What happened in a trial: the pair shown, the key pressed and its timing.
+     */
+    public static class Outcome {
+        public final int blockMode;
+        public final boolean pressedF;
+        public final boolean yesCorrect;
+        public final boolean correct;
+        public final long responseTimeNanos;
+        /** Time the FX thread spent painting the pair. */
+        public final long renderNanos;
+        /** DotsPair.fingerprint() of the pair shown. */
+        public final long pairFingerprint;
+        public final long wallClockMillis;
+
+        public Outcome(int blockMode, boolean pressedF, boolean yesCorrect, boolean correct,
+                long responseTimeNanos, long renderNanos, long pairFingerprint, long wallClockMillis) {
+            this.blockMode = blockMode;
+            this.pressedF = pressedF;
+            this.yesCorrect = yesCorrect;
+            this.correct = correct;
+            this.responseTimeNanos = responseTimeNanos;
+            this.renderNanos = renderNanos;
+            this.pairFingerprint = pairFingerprint;
+            this.wallClockMillis = wallClockMillis;
+        }
+    }
+
+    /**
+     * One TRIAL record.
+     */
+    public static class Trial {
+        public final Checkpoint checkpoint;
+        /** The outcome, or null if the record was written without one. */
+        public final Outcome outcome;
+
+        Trial(Checkpoint checkpoint, Outcome outcome) {
+            this.checkpoint = checkpoint;
+            this.outcome = outcome;
+        }
+    }
+
+    /**
+     * What a journal says about its session, up to its last intact record.
+     */
+    public static class Contents {
+        public final File file;
+        public final long seed;
+        public final String subjectId;
+        public final int subjectAge;
+        public final Player.Gender subjectGender;
+        public final boolean fForTrue;
+        /** Size of the dots canvas, or 0 if it was not recorded. */
+        public final int canvasWidth;
+        public final int canvasHeight;
+        public final long startedMillis;
+        /** Every intact TRIAL record, in order. */
+        public final List<Trial> trials;
+        /** True if the session was complete. */
+        public final boolean finished;
+        /** Length of the file up to the end of the last intact record. */
+        final long validLength;
+
+        Contents(File file, long seed, String subjectId, int subjectAge, Player.Gender subjectGender,
+                boolean fForTrue, int canvasWidth, int canvasHeight, long startedMillis,
+                List<Trial> trials, boolean finished, long validLength) {
+            this.file = file;
+            this.seed = seed;
+            this.subjectId = subjectId;
+            this.subjectAge = subjectAge;
+            this.subjectGender = subjectGender;
+            this.fForTrue = fForTrue;
+            this.canvasWidth = canvasWidth;
+            this.canvasHeight = canvasHeight;
+            this.startedMillis = startedMillis;
+            this.trials = Collections.unmodifiableList(trials);
+            this.finished = finished;
+            this.validLength = validLength;
+        }
+
+        /**
+         * @return The last checkpoint, or null if no trial was answered.
+         */
+        public Checkpoint getCheckpoint() {
+            return this.trials.isEmpty() ? null : this.trials.get(this.trials.size() - 1).checkpoint;
+        }
+
+        /**
+         * @return Number of trials answered before the interruption.
+         */
+        public int getTrialIndex() {
+            Checkpoint checkpoint = this.getCheckpoint();
+            return checkpoint == null ? 0 : checkpoint.trialIndex;
+        }
+    }
+
+    private SessionJournal(File file, FileChannel channel) {
+        new Config();
+        this.syncBatch = Math.max(1, Config.getPropertyInt("journal.sync.batch"));
+        this.syncIntervalMs = Config.getPropertyInt("journal.sync.interval.ms");
+        this.file = file;
+        this.channel = channel;
+        OPEN.add(file.getAbsoluteFile());
+        this.syncThread = new Thread(this::syncLoop, "session-journal-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    /**
+     * @return A file for the journal of a new session, named after no other.
+     */
+    public static File newActiveFile() {
+        return new File(JOURNAL_DIR, ACTIVE_PREFIX + "_" + System.currentTimeMillis() + "_"
+                + NUM_CREATED.incrementAndGet() + ".journal");
+    }
+
+    /**
+     * Active journals that no session of this program has open: those of
+     * sessions that were interrupted, unless they were finished.
+     * @return The journals, most recently modified first.
+     */
+    public static List<File> findInterrupted() {
+        File[] files = new File(JOURNAL_DIR).listFiles(
+                (dir, name) -> name.startsWith(ACTIVE_PREFIX) && name.endsWith(".journal"));
+        ArrayList<File> interrupted = new ArrayList<File>();
+        if (files == null) {
+            return interrupted;
+        }
+        for (File file : files) {
+            if (!OPEN.contains(file.getAbsoluteFile())) {
+                interrupted.add(file);
+            }
+        }
+        interrupted.sort((a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        return interrupted;
+    }
+
+    /**
+     * Seed of the pair of a trial, mixed from the session seed so that
+     * neighbouring trials get unrelated seeds.
+     * @param trial Index of the trial in the session, practice included.
+     */
+    public static long pairSeed(long sessionSeed, int trial) {
+        long z = sessionSeed + (trial + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Start the journal of a new session in a file that does not exist yet, so
+     * that no other journal is ever replaced.
+     * @param seed Seed of the session.
+     * @param canvasWidth Width of the dots canvas the pairs are placed in.
+     * @param canvasHeight Height of the dots canvas.
+     * @return The journal, or null if it could not be created.
+     */
+    public static SessionJournal begin(File file, long seed, Player player, boolean fForTrue,
+            int canvasWidth, int canvasHeight) {
+        try {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+            SessionJournal journal = new SessionJournal(file, channel);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeLong(seed);
+            out.writeUTF(player.getSubjectID());
+            out.writeInt(player.getSubjectAge());
+            out.writeUTF(player.getSubjectGender().name());
+            out.writeBoolean(fForTrue);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(canvasWidth);
+            out.writeInt(canvasHeight);
+            journal.write(SESSION, bytes.toByteArray());
+            journal.channel.force(false);
+            return journal;
+        } catch (IOException e) {
+            logger.severe("Could not start session journal " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Continue the journal of an interrupted session after its last intact record.
+     * @return The journal, or null if it could not be opened.
+     */
+    public static SessionJournal resume(Contents recovery) {
+        try {
+            FileChannel channel = FileChannel.open(recovery.file.toPath(), StandardOpenOption.WRITE);
+            channel.truncate(recovery.validLength);
+            channel.position(recovery.validLength);
+            return new SessionJournal(recovery.file, channel);
+        } catch (IOException e) {
+            logger.severe("Could not resume session journal " + recovery.file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Read the most recently modified interrupted journal that can be resumed.
+     * @return The session it describes, or null if there is none.
+     */
+    public static Contents recoverInterrupted() {
+        for (File file : findInterrupted()) {
+            Contents recovery = recover(file);
+            if (recovery != null) {
+                return recovery;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read an unfinished journal.
+     * @return The session it describes, or null if there is no journal, it has
+     * no intact SESSION record, or the session was finished.
+     */
+    public static Contents recover(File file) {
+        Contents contents = read(file);
+        return contents == null || contents.finished ? null : contents;
+    }
+
+    /**
+     * Read a journal, finished or not.
+     * @return The session it describes, or null if there is no journal or it
+     * has no intact SESSION record.
+     */
+    public static Contents read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            logger.warning("Could not read session journal " + file + ": " + e);
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        CRC32 crc = new CRC32();
+        Contents session = null;
+        ArrayList<Trial> trials = new ArrayList<Trial>();
+        boolean finished = false;
+        long validLength = 0;
+        while (buffer.remaining() >= 4 && !finished) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length < 1 || buffer.remaining() < length + 4) {
+                break;
+            }
+            crc.reset();
+            crc.update(data, buffer.position(), length);
+            int recordStart = buffer.position();
+            buffer.position(recordStart + length);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                break;
+            }
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, recordStart, length));
+                byte type = in.readByte();
+                if (session == null) {
+                    if (type != SESSION || in.readInt() != MAGIC) {
+                        return null;
+                    }
+                    long seed = in.readLong();
+                    String subjectId = in.readUTF();
+                    int subjectAge = in.readInt();
+                    Player.Gender subjectGender = Player.Gender.valueOf(in.readUTF());
+                    boolean fForTrue = in.readBoolean();
+                    long startedMillis = in.readLong();
+                    int canvasWidth = 0;
+                    int canvasHeight = 0;
+                    if (in.available() > 0) {
+                        canvasWidth = in.readInt();
+                        canvasHeight = in.readInt();
+                    }
+                    session = new Contents(file, seed, subjectId, subjectAge, subjectGender, fForTrue,
+                            canvasWidth, canvasHeight, startedMillis, trials, false, 0);
+                } else if (type == TRIAL) {
+                    Checkpoint checkpoint = new Checkpoint(in.readInt(), CurrentState.valueOf(in.readUTF()),
+                            in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                    Outcome outcome = null;
+                    if (in.available() > 0) {
+                        outcome = new Outcome(in.readInt(), in.readBoolean(), in.readBoolean(), in.readBoolean(),
+                                in.readLong(), in.readLong(), in.readLong(), in.readLong());
+                    }
+                    trials.add(new Trial(checkpoint, outcome));
+                } else if (type == END) {
+                    finished = true;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warning("Session journal " + file + " is damaged at byte " + start + ": " + e);
+                break;
+            }
+            validLength = buffer.position();
+        }
+        if (session == null) {
+            return null;
+        }
+        return new Contents(file, session.seed, session.subjectId, session.subjectAge, session.subjectGender,
+                session.fForTrue, session.canvasWidth, session.canvasHeight, session.startedMillis,
+                trials, finished, validLength);
+    }
+
+    /**
+     * Move a journal out of the way, keeping it for reference.
+     * @param prefix Start of the new name.
+     */
+    public static void archive(File file, String prefix) {
+        File archived = new File(file.getAbsoluteFile().getParentFile(),
+                prefix + "_" + System.currentTimeMillis() + ".journal");
+        if (file.isFile() && !file.renameTo(archived)) {
+            logger.warning("Could not move session journal " + file + " to " + archived);
+        }
+    }
+
+    /**
+     * Append the checkpoint and outcome after a response. Returns as soon as it
+     * is written; it is forced to disk with its batch.
+     */
+    public void appendTrial(Checkpoint checkpoint, Outcome outcome) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(checkpoint.trialIndex);
+            out.writeUTF(checkpoint.state.name());
+            out.writeInt(checkpoint.blockIndex);
+            out.writeInt(checkpoint.numRoundsIntoBlock);
+            out.writeInt(checkpoint.schedulePosition);
+            out.writeInt(checkpoint.numRounds);
+            out.writeInt(checkpoint.numCorrect);
+            out.writeInt(outcome.blockMode);
+            out.writeBoolean(outcome.pressedF);
+            out.writeBoolean(outcome.yesCorrect);
+            out.writeBoolean(outcome.correct);
+            out.writeLong(outcome.responseTimeNanos);
+            out.writeLong(outcome.renderNanos);
+            out.writeLong(outcome.pairFingerprint);
+            out.writeLong(outcome.wallClockMillis);
+            this.write(TRIAL, bytes.toByteArray());
+        } catch (IOException e) {
+            logger.severe("Could not append to session journal " + this.file + ": " + e);
+            return;
+        }
+        synchronized (this) {
+            this.unsynced++;
+            /* The first unforced record starts the interval; a full batch ends it early. */
+            if (this.unsynced == 1 || this.unsynced >= this.syncBatch) {
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Mark the session as complete, close the journal and archive it under the subject's ID.
+     */
+    public void finish(String subjectId) {
+        try {
+            this.write(END, new byte[0]);
+        } catch (IOException e) {
+            logger.severe("Could not finish session journal " + this.file + ": " + e);
+        }
+        this.close();
+        archive(this.file, subjectId);
+    }
+
+    /**
+     * Force what was appended to disk and close the journal. The session can
+     * still be resumed from it.
+     */
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.notifyAll();
+        }
+        try {
+            this.syncThread.join();
+            this.channel.force(false);
+            this.channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.severe("Could not close session journal " + this.file + ": " + e);
+        }
+        OPEN.remove(this.file.getAbsoluteFile());
+    }
+
+    /**
+     * Frame one record and write it at the end of the file.
+     */
+    private void write(byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(4 + 1 + payload.length + 4);
+        record.putInt(1 + payload.length);
+        record.put(type);
+        record.put(payload);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            this.channel.write(record);
+        }
+    }
+
+    /**
+     * Force the file whenever a batch is full or the oldest unforced record is
+     * syncIntervalMs old.
+     */
+    private void syncLoop() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!this.closed && this.unsynced == 0) {
+                        this.wait();
+                    }
+                    long deadline = System.currentTimeMillis() + this.syncIntervalMs;
+                    long remaining = this.syncIntervalMs;
+                    while (!this.closed && this.unsynced < this.syncBatch && remaining > 0) {
+                        this.wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (this.closed) {
+                    return;
+                }
+                this.unsynced = 0;
+            }
+            try {
+                this.channel.force(false);
+            } catch (IOException e) {
+                logger.severe("Could not force session journal " + this.file + " to disk: " + e);
+            }
+        }
+    }
+}
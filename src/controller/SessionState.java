@@ -0,0 +1,98 @@
+package controller;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The mutable state of one session: where the session is overall, where the
+ * current round is, whether the current round was answered and when its dots
+ * were shown.
+ * 
+ * Classes Related To:
+ *  -DotsGameController.java
+ *      -Owns one SessionState per session instead of static fields, so several
+ *      sessions can run in the same JVM.
+ *  -CurrentState.java, GameState.java
+ *      -The overall and round states.
+ * 
+ * The FX thread and the timer tasks of the controller both read and change this
+ * state, so every field is volatile or atomic and is safely published to every
+ * thread as soon as it is set. The transitions that must happen at most once per
+ * round are compare-and-set:
+ *  -transition() moves the round state only from an expected state.
+ *  -giveFeedback() succeeds for the first response of a round only.
+ */
+public class SessionState {
+    
+    /** Where the session is overall. */
+    private volatile CurrentState state = CurrentState.INTRODUCTION;
+    
+    /** Where the current round is. Null before the first round. */
+    private final AtomicReference<GameState> gameState = new AtomicReference<GameState>();
+    
+    /** True once the current round has been answered. */
+    private final AtomicBoolean feedbackGiven = new AtomicBoolean();
+    
+    /** System.nanoTime() when the dots of the current round were shown. */
+    private volatile long responseStartNanos;
+    
+    public CurrentState getState() {
+        return this.state;
+    }
+    
+    public void setState(CurrentState state) {
+        this.state = state;
+    }
+    
+    public GameState getGameState() {
+        return this.gameState.get();
+    }
+    
+    public void setGameState(GameState gameState) {
+        this.gameState.set(gameState);
+    }
+    
+    /**
+     * Move the round to a new state if it is in the expected one.
+     * @param from The expected state.
+     * @param to The new state.
+     * @return true if the round was in the expected state and was moved.
+     */
+    public boolean transition(GameState from, GameState to) {
+        return this.gameState.compareAndSet(from, to);
+    }
+    
+    public boolean isFeedbackGiven() {
+        return this.feedbackGiven.get();
+    }
+    
+    /**
+     * Mark the current round as answered.
+     * @return true if it had not been answered yet.
+     */
+    public boolean giveFeedback() {
+        return this.feedbackGiven.compareAndSet(false, true);
+    }
+    
+    /**
+     * Start a new round: not answered, dots shown now.
+     */
+    public void startRound() {
+        this.responseStartNanos = System.nanoTime();
+        this.feedbackGiven.set(false);
+    }
+    
+    /**
+     * Restart the response time measurement without starting a new round.
+     */
+    public void startResponseTimer() {
+        this.responseStartNanos = System.nanoTime();
+    }
+    
+    /**
+     * @return Nanoseconds since the dots of the current round were shown.
+     */
+    public long getElapsedResponseNanos() {
+        return System.nanoTime() - this.responseStartNanos;
+    }
+}
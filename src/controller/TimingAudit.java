@@ -0,0 +1,116 @@
+package controller;
+
+import java.util.logging.Logger;
+
+/**
+ * Audits the timing of the dots: how long they were actually shown compared to
+ * the flash time, and how long it took to show the mask after them.
+ * 
+ * Classes Related To:
+ *  -TrialEventBus.java
+ *      -Subscribes to the ONSET, OFFSET and MASK events.
+ * 
+ * Only trials whose dots were cleared by the timer are audited; a response
+ * during the dots clears them early on purpose. A warning is logged for every
+ * trial whose flash is off by more than the tolerance. The getters may be
+ * called from any thread.
+ */
+public class TimingAudit implements TrialEventHandler {
+    
+    private static Logger logger = Logger.getLogger("mylog");
+    
+    /** Expected time the dots are shown, in nanoseconds. */
+    private long expectedFlashNanos;
+    /** Deviation from the expected flash time above which a warning is logged, in nanoseconds. */
+    private long toleranceNanos;
+    
+    private long onsetNanos = -1;
+    private long offsetNanos = -1;
+    
+    private int numAudited;
+    private int numOutOfTolerance;
+    private double totalJitterNanos;
+    private long maxJitterNanos;
+    private long maxMaskDelayNanos;
+    
+    /**
+     * @param expectedFlashMillis Time the dots should be shown, in milliseconds.
+     * @param toleranceMillis Deviation above which a warning is logged, in milliseconds.
+     */
+    public TimingAudit(int expectedFlashMillis, int toleranceMillis) {
+        this.setExpected(expectedFlashMillis, toleranceMillis);
+    }
+    
+    /**
+     * Audit the following trials against a new flash time, e.g. after the config changed.
+     * @param expectedFlashMillis Time the dots should be shown, in milliseconds.
+     * @param toleranceMillis Deviation above which a warning is logged, in milliseconds.
+     */
+    public synchronized void setExpected(int expectedFlashMillis, int toleranceMillis) {
+        this.expectedFlashNanos = expectedFlashMillis * 1000000L;
+        this.toleranceNanos = toleranceMillis * 1000000L;
+    }
+    
+    @Override
+    public synchronized void onEvent(TrialEvent event) {
+        switch (event.phase) {
+        case ONSET:
+            this.onsetNanos = event.timestampNanos;
+            this.offsetNanos = -1;
+            break;
+        case OFFSET:
+            if (this.onsetNanos >= 0 && !event.answered) {
+                this.offsetNanos = event.timestampNanos;
+                this.audit(this.offsetNanos - this.onsetNanos);
+            }
+            this.onsetNanos = -1;
+            break;
+        case MASK:
+            if (this.offsetNanos >= 0) {
+                this.maxMaskDelayNanos = Math.max(this.maxMaskDelayNanos, event.timestampNanos - this.offsetNanos);
+                this.offsetNanos = -1;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+    
+    private void audit(long flashNanos) {
+        long jitter = Math.abs(flashNanos - this.expectedFlashNanos);
+        this.numAudited++;
+        this.totalJitterNanos += jitter;
+        this.maxJitterNanos = Math.max(this.maxJitterNanos, jitter);
+        if (jitter > this.toleranceNanos) {
+            this.numOutOfTolerance++;
+            logger.warning("Dots shown for " + flashNanos / 1000000.0 + " ms instead of " 
+                    + this.expectedFlashNanos / 1000000.0 + " ms");
+        }
+    }
+    
+    public synchronized int getNumAudited() {
+        return this.numAudited;
+    }
+    
+    public synchronized int getNumOutOfTolerance() {
+        return this.numOutOfTolerance;
+    }
+    
+    /**
+     * @return Mean absolute deviation of the flash time in milliseconds.
+     */
+    public synchronized double getMeanJitterMillis() {
+        return this.numAudited == 0 ? 0 : this.totalJitterNanos / this.numAudited / 1000000.0;
+    }
+    
+    public synchronized double getMaxJitterMillis() {
+        return this.maxJitterNanos / 1000000.0;
+    }
+    
+    /**
+     * @return Longest time from clearing the dots to showing the mask, in milliseconds.
+     */
+    public synchronized double getMaxMaskDelayMillis() {
+        return this.maxMaskDelayNanos / 1000000.0;
+    }
+}
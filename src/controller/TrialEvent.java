@@ -0,0 +1,69 @@
+package controller;
+
+import model.DotsPair;
+import model.Player;
+
+/**
+ * One phase transition of a trial, as published on the TrialEventBus.
+ * 
+ * Classes Related To:
+ *  -TrialEventBus.java
+ *      -Preallocates one TrialEvent per slot of its ring and reuses it, so
+ *      publishing allocates nothing.
+ *  -DotsGameController.java
+ *      -Fills an event with a snapshot of the session at every transition.
+ * 
+ * The fields are public and mutable because the same objects are refilled for
+ * every event. A handler is given the slot itself, which is not refilled until
+ * every handler has returned from it; handlers must not modify it, and must copy
+ * out whatever they keep.
+ */
+public class TrialEvent {
+    
+    /** The phase transitions of a trial, in order. */
+    public enum Phase {
+        /** The dots were painted. */
+        ONSET,
+        /** The dots were cleared. */
+        OFFSET,
+        /** The mask was shown. */
+        MASK,
+        /** The subject pressed F or J. */
+        RESPONSE,
+        /** The feedback sound was started. */
+        FEEDBACK,
+    }
+    
+    /** Position of this event in the stream, from 0. */
+    public long sequence;
+    public Phase phase;
+    /** System.nanoTime() at the transition. */
+    public long timestampNanos;
+    /** System.currentTimeMillis() at the transition. */
+    public long wallClockMillis;
+    
+    public CurrentState sessionState;
+    /** Number of trials answered before this one in the session, practice included. */
+    public int trialIndex;
+    public int block;
+    public DotsPair dotsPair;
+    public String colorOne;
+    public String colorTwo;
+    public boolean fForTrue;
+    /** True if the trial has been answered. */
+    public boolean answered;
+    
+    public String subjectId;
+    public int subjectAge;
+    public Player.Gender subjectGender;
+    public int numRounds;
+    public int numCorrect;
+    
+    /** Filled in from RESPONSE on. */
+    public boolean yesCorrect;
+    public boolean correct;
+    public double responseTimeNanos;
+    
+    /** Nanoseconds spent painting the dots. */
+    public long renderNanos;
+}
@@ -0,0 +1,217 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Single-producer, multi-consumer ring buffer of TrialEvents.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java
+ *      -The producer. Publishes at every phase transition of a trial from the FX thread.
+ *  -DataWriter.java, TrialStatistics.java, TimingAudit.java
+ *      -Subscribers.
+ *  -TrialEvent.java
+ *      -The preallocated slots.
+ *
+ * The producer fills the slot after the last published one and then publishes
+ * it by advancing the cursor. There are no locks: the cursor and the sequence
+ * of every subscriber are the only shared state, and each has a single writer.
+ * Every subscriber has its own thread that follows the cursor, hands every
+ * published slot to its handler and then advances its own sequence.
+ *
+ * Before the producer refills a slot, claim() waits until every subscriber has
+ * handled the event the slot held. No event is ever overwritten unread, so no
+ * subscriber loses one and a handler never sees a slot being refilled. The
+ * producer never allocates, and only waits if a subscriber falls a whole ring
+ * behind, which is logged. close() waits for every subscriber to handle all
+ * that was published. Subscribers never wait for each other.
+ *
+ * Usage (producer):
+ *  TrialEvent event = bus.claim();
+ *  event.phase = ...;
+ *  bus.publish();
+ */
+public class TrialEventBus {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    /** Nanoseconds a subscriber, or the producer waiting for one, sleeps before looking again. */
+    static final long IDLE_PARK_NANOS = 1000000;
+
+    private final TrialEvent[] slots;
+    private final int mask;
+
+    /** Sequence of the last published event. */
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    /** Sequence of the last claimed event. Producer thread only. */
+    private long claimed = -1;
+
+    private final ArrayList<Subscriber> subscribers = new ArrayList<Subscriber>();
+
+    /** The subscribers, as read by the producer without taking the lock of the bus. */
+    private volatile Subscriber[] gating = new Subscriber[0];
+
+    private volatile boolean closed;
+
+    /**
+     * @param capacity Number of slots. Rounded up to a power of two.
+     */
+    public TrialEventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new TrialEvent[size];
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new TrialEvent();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Claim the next slot to fill, once every subscriber has handled the event
+     * it held. Only the producer thread may call this, and must call publish()
+     * before claiming again.
+     * @return The slot, still holding an old event.
+     */
+    public TrialEvent claim() {
+        long next = this.claimed + 1;
+        long wrapped = next - this.slots.length;
+        if (wrapped >= 0) {
+            this.awaitSubscribers(wrapped);
+        }
+        this.claimed = next;
+        TrialEvent event = this.slots[(int) next & this.mask];
+        event.sequence = next;
+        return event;
+    }
+
+    /**
+     * Publish the claimed slot to every subscriber.
+     */
+    public void publish() {
+        this.cursor.set(this.claimed);
+    }
+
+    /**
+     * Wait until every running subscriber has handled the event of the sequence.
+     */
+    private void awaitSubscribers(long sequence) {
+        long start = 0;
+        for (Subscriber subscriber : this.gating) {
+            while (subscriber.next <= sequence && subscriber.thread.isAlive()) {
+                if (start == 0) {
+                    start = System.nanoTime();
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        if (start != 0) {
+            logger.warning("Trial events were held back " + (System.nanoTime() - start) / 1000000.0
+                    + " ms for a subscriber a whole ring behind.");
+        }
+    }
+
+    /**
+     * Start a thread that calls the handler for every event published from now on.
+     * @param name Name of the thread.
+     * @param handler The subscriber.
+     */
+    public synchronized void subscribe(String name, TrialEventHandler handler) {
+        Subscriber subscriber = new Subscriber(handler, this.cursor.get() + 1);
+        Thread thread = new Thread(subscriber, name);
+        thread.setDaemon(true);
+        subscriber.thread = thread;
+        this.subscribers.add(subscriber);
+        this.gating = this.subscribers.toArray(new Subscriber[0]);
+        thread.start();
+    }
+
+    /**
+     * Let every subscriber handle everything that has been published, then stop
+     * their threads. A subscriber that is not done within the timeout is logged
+     * and waited for, so that nothing published is lost.
+     * @param timeoutMillis Time to wait for each subscriber before logging it.
+     */
+    public synchronized void close(long timeoutMillis) {
+        this.closed = true;
+        for (Subscriber subscriber : this.subscribers) {
+            LockSupport.unpark(subscriber.thread);
+            try {
+                subscriber.thread.join(timeoutMillis);
+                if (subscriber.thread.isAlive()) {
+                    logger.warning("Waiting for trial event handler " + subscriber.thread.getName()
+                            + " to handle " + (this.cursor.get() + 1 - subscriber.next) + " more events.");
+                    subscriber.thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        this.subscribers.clear();
+        this.gating = new Subscriber[0];
+    }
+
+    /**
+     * @return Sequence of the last published event, -1 if none.
+     */
+    public long getCursor() {
+        return this.cursor.get();
+    }
+
+    /**
+     * @param name Name the subscriber was subscribed with.
+     * @return Number of published events the subscriber has not handled yet,
+     * 0 if there is no such subscriber.
+     */
+    public synchronized long getBacklog(String name) {
+        for (Subscriber subscriber : this.subscribers) {
+            if (subscriber.thread.getName().equals(name)) {
+                return Math.max(0, this.cursor.get() + 1 - subscriber.next);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * One subscriber's thread, following the cursor.
+     */
+    private class Subscriber implements Runnable {
+
+        private final TrialEventHandler handler;
+        /** Sequence of the next event to handle. Read by the producer and getBacklog(). */
+        private volatile long next;
+        private Thread thread;
+
+        Subscriber(TrialEventHandler handler, long next) {
+            this.handler = handler;
+            this.next = next;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                boolean stopping = closed;
+                long available = cursor.get();
+                if (this.next > available) {
+                    if (stopping) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                while (this.next <= available) {
+                    try {
+                        this.handler.onEvent(slots[(int) this.next & mask]);
+                    } catch (RuntimeException e) {
+                        logger.warning("Trial event handler " + Thread.currentThread().getName()
+                                + " failed: " + e);
+                    }
+                    this.next++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package controller;
+
+/**
+ * A subscriber of the TrialEventBus.
+ * 
+ * Classes Related To:
+ *  -TrialEventBus.java
+ *      -Calls the handler on its own thread for every event, in order.
+ */
+public interface TrialEventHandler {
+    
+    /**
+     * Handle one event. The event is only valid until this returns.
+     * @param event The event.
+     */
+    void onEvent(TrialEvent event);
+}
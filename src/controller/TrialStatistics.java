@@ -0,0 +1,60 @@
+package controller;
+
+import logging.AsyncLog;
+
+/**
+ * Live accuracy and response time statistics of a session, per block.
+ * 
+ * Classes Related To:
+ *  -TrialEventBus.java
+ *      -Subscribes to the RESPONSE events.
+ * 
+ * Logs the running accuracy and mean response time of the block after every
+ * response. Practice trials are not counted. The getters may be called from
+ * any thread.
+ */
+public class TrialStatistics implements TrialEventHandler {
+    
+    private static final AsyncLog log = AsyncLog.get("statistics");
+    
+    /** Blocks are numbered from 0; one extra slot for out of range blocks. */
+    static final int MAX_BLOCKS = 8;
+    
+    private final int[] numResponses = new int[MAX_BLOCKS];
+    private final int[] numCorrect = new int[MAX_BLOCKS];
+    private final double[] totalResponseTimeNanos = new double[MAX_BLOCKS];
+    
+    @Override
+    public synchronized void onEvent(TrialEvent event) {
+        if (event.phase != TrialEvent.Phase.RESPONSE || event.sessionState != CurrentState.GAMEPLAY) {
+            return;
+        }
+        int block = Math.min(Math.max(event.block, 0), MAX_BLOCKS - 1);
+        this.numResponses[block]++;
+        if (event.correct) {
+            this.numCorrect[block]++;
+        }
+        this.totalResponseTimeNanos[block] += event.responseTimeNanos;
+        log.info("Block statistics", "block", block, "correct", this.numCorrect[block], 
+                "responses", this.numResponses[block], "meanResponseSeconds", this.getMeanResponseTime(block));
+    }
+    
+    public synchronized int getNumResponses(int block) {
+        return this.numResponses[block];
+    }
+    
+    /**
+     * @return Fraction of correct responses in the block, 0 if none.
+     */
+    public synchronized double getAccuracy(int block) {
+        return this.numResponses[block] == 0 ? 0 : (double) this.numCorrect[block] / this.numResponses[block];
+    }
+    
+    /**
+     * @return Mean response time in seconds in the block, 0 if none.
+     */
+    public synchronized double getMeanResponseTime(int block) {
+        return this.numResponses[block] == 0 ? 0 
+                : this.totalResponseTimeNanos[block] / this.numResponses[block] / 1000000000.0;
+    }
+}
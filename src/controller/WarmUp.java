@@ -0,0 +1,161 @@
+package controller;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.paint.Color;
+import logging.AsyncLog;
+import model.ControlType;
+import model.DotsPair;
+import model.Player;
+import view.DotsRenderer;
+
+/**
+ * Drives the stimulus pipeline with throwaway pairs while the subject gets
+ * ready, so that the JIT has compiled it before the first trial of a block.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java
+ *      -Runs a warm-up during the get-ready countdown of a block until one has
+ *      run all of its rounds, and shows its progress on the countdown's bar.
+ *  -DotSet.java, DotsRenderer.java, DataWriter.java
+ *      -Placing the dots, painting them and generating the CSV row of a trial
+ *      are the paths warmed up.
+ *
+ * Each round places a pair of random numbers of dots in a canvas the size of
+ * the dots canvas, paints it with a DotsRenderer onto a Canvas that is never
+ * shown, and generates its CSV row with a DataWriter that writes nothing.
+ * Nodes outside a scene may be used on any thread, so the rounds run on the
+ * countdown's thread instead of the FX thread. A Canvas that is never shown
+ * keeps every command it is given, so it is replaced every CANVAS_ROUNDS rounds.
+ * What the JIT compiles stays compiled for the life of the process, so once a
+ * warm-up has run all of its rounds, isWarm() tells the later blocks to skip it.
+ *
+ * The latency of every round is kept. report() logs the latency of the first
+ * round and of the first and last quarters of the rounds, and whether the
+ * warm-up reached steady state: the median of the last quarter within
+ * STEADY_TOLERANCE of the median of the quarter before it. Medians, since the
+ * number of dots differs from round to round and a collection may fall on any.
+ */
+class WarmUp {
+
+    private static final AsyncLog log = AsyncLog.get("trial");
+
+    /** Most dots placed in a set, as many as DotsPairGenerator places. */
+    static final int MAX_DOTS_PER_SET = 20;
+    /** Rounds painted onto one canvas before it is replaced. */
+    static final int CANVAS_ROUNDS = 50;
+    /** Largest relative difference between the medians of the last two quarters at steady state. */
+    static final double STEADY_TOLERANCE = 0.2;
+
+    /** True once a warm-up has run all of its rounds in this process. */
+    private static volatile boolean warm;
+
+    private final int canvasWidth;
+    private final int canvasHeight;
+    private final Random random = new Random();
+    private final DataWriter dataWriter = new DataWriter();
+    private final TrialEvent event = new TrialEvent();
+    private final long[] roundNanos;
+    private int numRounds;
+    private DotsRenderer renderer;
+
+    /**
+     * @param rounds Number of rounds to run.
+     * @param canvasWidth Width of the dots canvas.
+     * @param canvasHeight Height of the dots canvas.
+     */
+    WarmUp(int rounds, int canvasWidth, int canvasHeight) {
+        this.roundNanos = new long[rounds];
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.event.phase = TrialEvent.Phase.RESPONSE;
+        this.event.subjectId = "warm-up";
+        this.event.subjectGender = Player.Gender.FEMALE;
+        this.event.colorOne = "warm";
+        this.event.colorTwo = "up";
+    }
+
+    /**
+     * Place, paint and write one pair.
+     */
+    void round() {
+        long start = System.nanoTime();
+        if (this.numRounds % CANVAS_ROUNDS == 0) {
+            this.renderer = new DotsRenderer(new Canvas(this.canvasWidth, this.canvasHeight).getGraphicsContext2D(),
+                    DotsGameController.CANVAS_COLOR);
+        }
+        DotsPair dotsPair = new DotsPair(this.random.nextInt(MAX_DOTS_PER_SET) + 1, this.random.nextInt(3),
+                this.random.nextInt(MAX_DOTS_PER_SET) + 1, this.random.nextInt(3), ControlType.NONE,
+                this.canvasWidth, this.canvasHeight, this.random);
+        this.renderer.paint(dotsPair, Color.BLUE, Color.YELLOW);
+        this.event.dotsPair = dotsPair;
+        this.event.block = this.numRounds % 4;
+        this.event.yesCorrect = this.random.nextBoolean();
+        this.event.correct = this.random.nextBoolean();
+        this.event.wallClockMillis = System.currentTimeMillis();
+        this.event.responseTimeNanos = this.random.nextInt(2000000000);
+        this.event.renderNanos = this.renderer.getLastPaintNanos();
+        this.dataWriter.generateTrialText(this.event);
+        this.roundNanos[this.numRounds++] = System.nanoTime() - start;
+        if (this.isDone()) {
+            warm = true;
+        }
+    }
+
+    /**
+     * @return true if a warm-up has already run all of its rounds in this process.
+     */
+    static boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * @return true once every round has run.
+     */
+    boolean isDone() {
+        return this.numRounds == this.roundNanos.length;
+    }
+
+    /**
+     * @return Fraction of the rounds run.
+     */
+    double getProgress() {
+        return this.roundNanos.length == 0 ? 1 : this.numRounds / (double) this.roundNanos.length;
+    }
+
+    /**
+     * @return true if the latency of the rounds has settled.
+     */
+    boolean isSteady() {
+        int quarter = this.numRounds / 4;
+        if (quarter == 0) {
+            return false;
+        }
+        double previous = this.medianMillis(this.numRounds - 2 * quarter, this.numRounds - quarter);
+        double last = this.medianMillis(this.numRounds - quarter, this.numRounds);
+        return Math.abs(last - previous) <= STEADY_TOLERANCE * previous;
+    }
+
+    private double medianMillis(int from, int to) {
+        long[] sorted = Arrays.copyOfRange(this.roundNanos, from, to);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1000000.0;
+    }
+
+    /**
+     * Log how the latency of the rounds developed.
+     */
+    void report() {
+        if (this.numRounds == 0) {
+            return;
+        }
+        int quarter = Math.max(1, this.numRounds / 4);
+        log.info("Warm-up", "rounds", this.numRounds, "of", this.roundNanos.length,
+                "firstMs", this.roundNanos[0] / 1000000.0,
+                "firstQuarterMedianMs", this.medianMillis(0, quarter),
+                "lastQuarterMedianMs", this.medianMillis(this.numRounds - quarter, this.numRounds),
+                "steady", this.isSteady());
+    }
+}
@@ -0,0 +1,198 @@
+package export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import controller.DotsGameController;
+import controller.SessionJournal;
+import model.ColorPair;
+import model.DotsPair;
+import model.StimulusBank;
+import replay.ScheduledSession;
+import view.SetUp;
+
+/**
+ * Exports stimuli as PNG images for inspection and publication, without a display.
+ *
+ * Classes Related To:
+ *  -ScheduledSession.java
+ *      -Rebuilds the pairs of a session from its seed.
+ *  -StimulusBank.java
+ *      -Reads the pairs of a stimulus bank file.
+ *  -StimulusImageRenderer.java
+ *      -Draws every pair; each worker thread reuses its own.
+ *  -ColorPair.java, SetUp.java
+ *      -The colors of the blocks, and the size of the dots canvas relative to the screen.
+ *
+ * The pairs come from one of
+ *  generate: sessions compiled from seeds drawn from the given seed, exactly
+ *      as journaled sessions with those seeds would show them,
+ *  journal: the session of a journal, from its seed and canvas size,
+ *  archive: every pair of a stimulus bank file.
+ * Pairs are produced in order on the main thread and drawn and encoded by a
+ * pool of one worker per processor; the queue to the workers is bounded, so
+ * only a few pairs are held in memory however many are exported. Session
+ * pairs are drawn in the colors of their block, archived pairs in the first
+ * color pair. Along with the images, index.csv lists every image with its
+ * session, trial, block, numbers of dots, areas and colors.
+ *
+ * Usage:
+ *  java export.StimulusExporter generate <trials> <seed> <outDir> [screenWidth screenHeight]
+ *  java export.StimulusExporter journal <journalFile> <outDir>
+ *  java export.StimulusExporter archive <bankFile> <outDir>
+ * Exits with 1 if an image could not be written.
+ */
+public class StimulusExporter {
+
+    /** Screen the canvas size of generated sessions is derived from, unless given. */
+    static final int DEFAULT_SCREEN_WIDTH = 1920;
+    static final int DEFAULT_SCREEN_HEIGHT = 1080;
+
+    /** Pairs waiting for a worker, per worker. */
+    static final int QUEUED_PER_WORKER = 4;
+
+    private final File outDir;
+    private final ArrayList<ColorPair> colorPairs = ColorPair.standardPairs();
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<StimulusImageRenderer> renderers = new ThreadLocal<StimulusImageRenderer>();
+    private final PrintWriter index;
+    private final AtomicInteger numWritten = new AtomicInteger();
+    private final AtomicInteger numFailed = new AtomicInteger();
+
+    StimulusExporter(File outDir, int numWorkers) throws IOException {
+        this.outDir = outDir;
+        outDir.mkdirs();
+        this.workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(numWorkers * QUEUED_PER_WORKER),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.index = new PrintWriter(new File(outDir, "index.csv"), "UTF-8");
+        this.index.println("image,session,trial,block,numDotsOne,numDotsTwo,controlType,areaOne,areaTwo,"
+                + "colorOne,colorTwo");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        ImageIO.setUseCache(false);
+        if (args.length < 3) {
+            System.err.println("Usage: StimulusExporter generate <trials> <seed> <outDir> [screenWidth screenHeight]"
+                    + " | journal <journalFile> <outDir> | archive <bankFile> <outDir>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        StimulusExporter exporter;
+        if (args[0].equals("generate")) {
+            int screenWidth = args.length > 5 ? Integer.parseInt(args[4]) : DEFAULT_SCREEN_WIDTH;
+            int screenHeight = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_SCREEN_HEIGHT;
+            exporter = new StimulusExporter(new File(args[3]), Runtime.getRuntime().availableProcessors());
+            exporter.generate(Integer.parseInt(args[1]), Long.parseLong(args[2]),
+                    (int) (screenWidth * SetUp.DOTS_CANVAS_FRACTION), (int) (screenHeight * SetUp.DOTS_CANVAS_FRACTION));
+        } else if (args[0].equals("journal")) {
+            SessionJournal.Contents contents = SessionJournal.read(new File(args[1]));
+            if (contents == null || contents.canvasWidth <= 0) {
+                System.err.println(args[1] + " is not a session journal with a canvas size.");
+                System.exit(1);
+            }
+            exporter = new StimulusExporter(new File(args[2]), Runtime.getRuntime().availableProcessors());
+            exporter.exportSession(contents.subjectId, contents.seed, contents.canvasWidth, contents.canvasHeight,
+                    contents.trials.size());
+        } else if (args[0].equals("archive")) {
+            exporter = new StimulusExporter(new File(args[2]), Runtime.getRuntime().availableProcessors());
+            exporter.exportArchive(StimulusBank.readArchive(new File(args[1])));
+        } else {
+            System.err.println("Unknown source \"" + args[0] + "\".");
+            System.exit(2);
+            return;
+        }
+        exporter.finish();
+        double seconds = (System.nanoTime() - start) / 1000000000.0;
+        System.out.printf(Locale.ROOT, "Exported %d images to %s in %.1f s (%.0f images/s).%n",
+                exporter.numWritten.get(), exporter.outDir, seconds, exporter.numWritten.get() / seconds);
+        System.exit(exporter.numFailed.get() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Export whole sessions, one after the other, until the number of trials is reached.
+     */
+    void generate(int numTrials, long seed, int canvasWidth, int canvasHeight) {
+        Random seeds = new Random(seed);
+        for (int session = 0; numTrials > 0; session++) {
+            int trials = Math.min(numTrials, ScheduledSession.NUM_TRIALS);
+            this.exportSession(String.format("s%05d", session), seeds.nextLong(), canvasWidth, canvasHeight, trials);
+            numTrials -= trials;
+        }
+    }
+
+    /**
+     * Export the first trials of a session.
+     * @param name Name of the session in the image names.
+     */
+    void exportSession(String name, long seed, int canvasWidth, int canvasHeight, int numTrials) {
+        ScheduledSession session = new ScheduledSession(seed, canvasWidth, canvasHeight);
+        for (int trial = 0; trial < numTrials && !session.isDone(); trial++) {
+            DotsPair dotsPair = session.nextPair();
+            int block = session.getGenerator().getBlockMode();
+            this.submit(String.format("%s_t%03d_block%d", name, trial, block), name, trial, block,
+                    dotsPair, this.colorPairs.get(session.getColorPairIndex()), canvasWidth, canvasHeight);
+            session.recordResponse(false);
+            session.endTrial();
+        }
+    }
+
+    void exportArchive(ArrayList<DotsPair> pairs) {
+        for (int i = 0; i < pairs.size(); i++) {
+            DotsPair dotsPair = pairs.get(i);
+            this.submit(String.format("archive_%06d", i), "archive", i, -1, dotsPair, this.colorPairs.get(0),
+                    dotsPair.getDotSetOne().getCanvasWidth(), dotsPair.getDotSetOne().getCanvasHeight());
+        }
+    }
+
+    /**
+     * List the pair in the index and hand it to a worker, waiting if they are all busy.
+     */
+    private void submit(final String image, String session, int trial, int block, final DotsPair dotsPair,
+            final ColorPair colors, final int canvasWidth, final int canvasHeight) {
+        this.index.printf(Locale.ROOT, "%s.png,%s,%d,%d,%d,%d,%s,%.1f,%.1f,%s,%s%n", image, session, trial, block,
+                dotsPair.getDotSetOne().getTotalNumDots(), dotsPair.getDotSetTwo().getTotalNumDots(),
+                dotsPair.getControlType(), dotsPair.getDotSetOne().getTotalArea(),
+                dotsPair.getDotSetTwo().getTotalArea(), colors.getColorOneName(), colors.getColorTwoName());
+        this.workers.execute(() -> this.write(image, dotsPair, colors, canvasWidth, canvasHeight));
+    }
+
+    /**
+     * Draw and encode one image, on a worker.
+     */
+    private void write(String image, DotsPair dotsPair, ColorPair colors, int canvasWidth, int canvasHeight) {
+        StimulusImageRenderer renderer = this.renderers.get();
+        if (renderer == null || !renderer.fits(canvasWidth, canvasHeight)) {
+            renderer = new StimulusImageRenderer(canvasWidth, canvasHeight, DotsGameController.CANVAS_COLOR);
+            this.renderers.set(renderer);
+        }
+        File file = new File(this.outDir, image + ".png");
+        try {
+            ImageIO.write(renderer.render(dotsPair, colors.getColorOne(), colors.getColorTwo()), "png", file);
+            this.numWritten.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            this.numFailed.incrementAndGet();
+            System.err.println("Could not write " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Wait for the workers to write every image and close the index.
+     */
+    void finish() throws InterruptedException {
+        this.workers.shutdown();
+        this.workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        this.index.close();
+    }
+}
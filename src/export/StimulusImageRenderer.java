@@ -0,0 +1,90 @@
+package export;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+import model.Coordinate;
+import model.Coordinate.Shape;
+import model.DotSet;
+import model.DotsPair;
+
+/**
+ * Draws DotsPairs into an image with java.awt, so stimuli can be exported
+ * without a display.
+ *
+ * Classes Related To:
+ *  -StimulusExporter.java
+ *      -Keeps one renderer per worker thread.
+ *  -DotsRenderer.java
+ *      -Draws the same shapes on the canvas during a session: each set as one
+ *      antialiased path of circles and squares, filled in the set's color.
+ *
+ * The image is allocated once and redrawn for every pair, so a renderer must
+ * only be used by one thread at a time, and the image it returns is only
+ * valid until the next render().
+ */
+public class StimulusImageRenderer {
+
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+    private final java.awt.Color background;
+
+    /**
+     * @param background Color of the canvas.
+     */
+    public StimulusImageRenderer(int width, int height, Color background) {
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.graphics = this.image.createGraphics();
+        this.graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        this.graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        this.background = toAwt(background);
+    }
+
+    /**
+     * Draw a pair, each set in its color, over a cleared canvas.
+     * @return The image, reused by the next render().
+     */
+    public BufferedImage render(DotsPair dotsPair, Color colorOne, Color colorTwo) {
+        this.graphics.setColor(this.background);
+        this.graphics.fillRect(0, 0, this.image.getWidth(), this.image.getHeight());
+        this.fillDotSet(dotsPair.getDotSetOne(), toAwt(colorOne));
+        this.fillDotSet(dotsPair.getDotSetTwo(), toAwt(colorTwo));
+        return this.image;
+    }
+
+    private void fillDotSet(DotSet dotSet, java.awt.Color color) {
+        ArrayList<Coordinate> positions = dotSet.getPositions();
+        List<Double> diameters = dotSet.getDiameters();
+        Path2D.Double path = new Path2D.Double();
+        for (int i = 0; i < dotSet.getTotalNumDots(); i++) {
+            Coordinate position = positions.get(i);
+            double diameter = diameters.get(i);
+            if (position.shape == Shape.CIRCLE) {
+                path.append(new Ellipse2D.Double(position.x, position.y, diameter, diameter), false);
+            } else if (position.shape == Shape.SQUARE) {
+                path.append(new Rectangle2D.Double(position.x, position.y, diameter, diameter), false);
+            }
+        }
+        this.graphics.setColor(color);
+        this.graphics.fill(path);
+    }
+
+    /**
+     * @return true if the renderer draws images of the given size.
+     */
+    public boolean fits(int width, int height) {
+        return this.image.getWidth() == width && this.image.getHeight() == height;
+    }
+
+    static java.awt.Color toAwt(Color color) {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(),
+                (float) color.getOpacity());
+    }
+}
@@ -0,0 +1,18 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Appending the row of a trial to the subject's CSV file. Committed on the
+ * thread of the data writer, not the FX thread.
+ */
+@Name("eacheverydots.CsvAppend")
+@Label("CSV Append")
+@Description("Appending the row of a trial to the subject's CSV file")
+public class CsvAppendEvent extends TrialLifecycleEvent {
+
+    @Label("Characters")
+    public int characters;
+}
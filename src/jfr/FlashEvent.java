@@ -0,0 +1,19 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The dots of a trial being shown: begins once they are painted and ends
+ * when they are cleared.
+ */
+@Name("eacheverydots.Flash")
+@Label("Flash")
+@Description("The dots of a trial being shown, from onset to offset")
+public class FlashEvent extends TrialLifecycleEvent {
+
+    @Label("Answered")
+    @Description("True if the subject answered while the dots were shown")
+    public boolean answered;
+}
@@ -0,0 +1,101 @@
+package jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.logging.Logger;
+
+import config.Config;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+/**
+ * Continuous Flight Recorder recording of a session, started from the
+ * configuration so that no command line flags are needed.
+ *
+ * Classes Related To:
+ *  -EachEveryMain.java
+ *      -Starts the recording before the GUI is created.
+ *  -TrialLifecycleEvent.java
+ *      -The events of every trial, recorded along with the JVM's own events.
+ *
+ * The recording uses the low overhead "default" settings of the JDK with
+ * every trial event enabled, is kept on disk for at most jfr.recording.max.age.minutes
+ * and is dumped to recordings/session_<time>.jfr when the program exits. It can
+ * be opened in Mission Control. A recording started with -XX:StartFlightRecording
+ * records the trial events as well.
+ */
+public final class FlightRecording {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    /** Folder the recordings are dumped to. */
+    public static final String RECORDINGS_DIR = "recordings";
+
+    /** True if a recording should be started on startup. */
+    private static boolean JFR_RECORDING_ON;
+
+    /** Age in minutes after which events are dropped from the recording. */
+    private static int JFR_RECORDING_MAX_AGE_MINUTES;
+
+    private FlightRecording() {
+    }
+
+    private static void loadConfig() {
+        new Config();
+        JFR_RECORDING_ON = Config.getPropertyBoolean("jfr.recording.on");
+        JFR_RECORDING_MAX_AGE_MINUTES = Config.getPropertyInt("jfr.recording.max.age.minutes");
+    }
+
+    /**
+     * Start the recording if jfr.recording.on.
+     * @return The recording, or null if none was started.
+     */
+    public static Recording start() {
+        loadConfig();
+        if (!JFR_RECORDING_ON) {
+            return null;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            logger.warning("Flight Recorder is not available in this JVM; the session is not recorded.");
+            return null;
+        }
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration("default"));
+            recording.setName("Each Every session");
+            for (Class<? extends TrialLifecycleEvent> eventClass : eventClasses()) {
+                recording.enable(eventClass).withoutStackTrace();
+            }
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMinutes(JFR_RECORDING_MAX_AGE_MINUTES));
+            File dir = new File(RECORDINGS_DIR);
+            dir.mkdirs();
+            recording.setDestination(new File(dir, "session_" + System.currentTimeMillis() + ".jfr").toPath());
+            recording.setDumpOnExit(true);
+            recording.start();
+            return recording;
+        } catch (IOException | ParseException | IllegalStateException e) {
+            logger.warning("Could not start flight recording: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return Every event of the trial lifecycle.
+     */
+    static Class<? extends TrialLifecycleEvent>[] eventClasses() {
+        @SuppressWarnings("unchecked")
+        Class<? extends TrialLifecycleEvent>[] classes = (Class<? extends TrialLifecycleEvent>[]) new Class<?>[] {
+            PairGenerationEvent.class,
+            PaintEvent.class,
+            FlashEvent.class,
+            MaskEvent.class,
+            KeyPressEvent.class,
+            ResponseEvent.class,
+            CsvAppendEvent.class,
+        };
+        return classes;
+    }
+}
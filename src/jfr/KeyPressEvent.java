@@ -0,0 +1,24 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The subject pressing F or J during a trial.
+ */
+@Name("eacheverydots.KeyPress")
+@Label("Key Press")
+@Description("The subject pressing F or J during a trial")
+public class KeyPressEvent extends TrialLifecycleEvent {
+
+    @Label("Key")
+    public String key;
+
+    @Label("Game State")
+    public String gameState;
+
+    @Label("Accepted")
+    @Description("False if the trial had already been answered or was not accepting responses")
+    public boolean accepted;
+}
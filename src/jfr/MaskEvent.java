@@ -0,0 +1,14 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The mask after the dots of a trial being shown.
+ */
+@Name("eacheverydots.Mask")
+@Label("Mask")
+@Description("The mask after the dots of a trial being shown")
+public class MaskEvent extends TrialLifecycleEvent {
+}
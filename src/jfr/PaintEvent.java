@@ -0,0 +1,17 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Issuing the commands that paint the dots of a trial on the canvas.
+ */
+@Name("eacheverydots.Paint")
+@Label("Paint")
+@Description("Painting the dots of a trial, including clearing the last frame")
+public class PaintEvent extends TrialLifecycleEvent {
+
+    @Label("Number of Dots")
+    public int numDots;
+}
@@ -0,0 +1,24 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Generating the DotsPair of a trial, from choosing its ratio to placing its dots.
+ */
+@Name("eacheverydots.PairGeneration")
+@Label("Pair Generation")
+@Description("Generating the pair of dot sets of a trial")
+public class PairGenerationEvent extends TrialLifecycleEvent {
+
+    @Label("Placement Attempts")
+    @Description("Candidate dots tried while placing both dot sets, 0 if drawn from the bank")
+    public int placementAttempts;
+
+    @Label("Number of Dots")
+    public int numDots;
+
+    @Label("Control Type")
+    public String controlType;
+}
@@ -0,0 +1,22 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A response being evaluated and recorded for the player.
+ */
+@Name("eacheverydots.Response")
+@Label("Response Recorded")
+@Description("Evaluating a response and updating the player")
+public class ResponseEvent extends TrialLifecycleEvent {
+
+    @Label("Correct")
+    public boolean correct;
+
+    @Label("Response Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long responseTime;
+}
@@ -0,0 +1,37 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the Flight Recorder events of a trial. Every event carries the
+ * trial and block it belongs to, so they can be lined up against GC pauses
+ * and safepoints in Mission Control.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java
+ *      -Commits the events of generating, painting, flashing and masking each
+ *      pair and of the subject's key presses and responses.
+ *  -DataWriter.java
+ *      -Commits a CsvAppendEvent for every row it appends.
+ *  -FlightRecording.java
+ *      -Starts a continuous recording of these events if jfr.recording.on.
+ *
+ * The events are committed whether or not a recording is running; when none
+ * is, begin() and commit() do nothing. Stack traces are not recorded.
+ */
+@Category({"Each Every", "Trial"})
+@StackTrace(false)
+public abstract class TrialLifecycleEvent extends Event {
+
+    @Label("Trial Index")
+    @Description("Number of trials answered before this one in the session, practice included")
+    public int trialIndex;
+
+    @Label("Block")
+    @Description("Block mode of the trial")
+    public int block;
+}
@@ -0,0 +1,231 @@
+package logging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import config.Config;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+
+/**
+ * Structured log that never blocks the thread logging.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java, DotsPairGenerator.java, DataWriter.java, TrialStatistics.java
+ *      -Log the progress of the session here instead of on System.out or the
+ *      logger directly, since they log from the FX thread and the timing threads.
+ *  -MetricsRegistry.java
+ *      -Counts the dropped messages as log.dropped.
+ *
+ * Every message belongs to a category, e.g. "trial", and has a level; each
+ * category has its own level, log.level.<category>, or log.level if that is not
+ * set. A message below the level of its category is discarded right away.
+ *
+ * Otherwise the message, its fields and the time and thread it was logged on
+ * are put in a bounded buffer of log.buffer.size messages, without waiting.
+ * If the buffer is full, the message is dropped and counted instead. A single
+ * daemon thread formats the messages as
+ *  message key=value key=value
+ * and passes them to the "mylog" logger, which does the console and file I/O.
+ * Since the fields are formatted on that thread, pass values that do not change
+ * afterwards, e.g. a String of a list rather than the list.
+ *
+ * Usage:
+ *  private static final AsyncLog log = AsyncLog.get("trial");
+ *  log.info("Response", "seconds", responseTime);
+ */
+public final class AsyncLog {
+
+    /** Name of the logger the messages are written to. */
+    static final String LOGGER_NAME = "mylog";
+
+    private static int LOG_BUFFER_SIZE;
+    private static Level DEFAULT_LEVEL;
+
+    private static final ConcurrentHashMap<String, AsyncLog> CATEGORIES = new ConcurrentHashMap<String, AsyncLog>();
+
+    private static final ArrayBlockingQueue<Entry> BUFFER;
+    private static final Counter DROPPED = MetricsRegistry.getDefault().counter(
+            "log.dropped", "Log messages dropped because the log buffer was full");
+    /** Messages dropped since the writer last reported it. */
+    private static final AtomicLong DROPPED_SINCE_REPORT = new AtomicLong();
+
+    static {
+        loadConfig();
+        BUFFER = new ArrayBlockingQueue<Entry>(Math.max(1, LOG_BUFFER_SIZE));
+        Thread writer = new Thread(AsyncLog::write, "async-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private final String category;
+    private final Level level;
+
+    private AsyncLog(String category, Level level) {
+        this.category = category;
+        this.level = level;
+    }
+
+    private static void loadConfig() {
+        new Config();
+        LOG_BUFFER_SIZE = Config.getPropertyInt("log.buffer.size");
+        DEFAULT_LEVEL = parseLevel(Config.getPropertyString("log.level"), Level.INFO);
+    }
+
+    private static Level parseLevel(String name, Level fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        try {
+            return Level.parse(name);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level \"" + name + "\".");
+            return fallback;
+        }
+    }
+
+    /**
+     * @param category Name of the category, e.g. "trial".
+     * @return The log of the category.
+     */
+    public static AsyncLog get(String category) {
+        AsyncLog log = CATEGORIES.get(category);
+        if (log == null) {
+            String key = "log.level." + category;
+            Level level = Config.hasProperty(key) ? parseLevel(Config.getPropertyString(key), DEFAULT_LEVEL)
+                    : DEFAULT_LEVEL;
+            AsyncLog created = new AsyncLog(category, level);
+            log = CATEGORIES.putIfAbsent(category, created);
+            if (log == null) {
+                log = created;
+            }
+        }
+        return log;
+    }
+
+    public boolean isLoggable(Level level) {
+        return level.intValue() >= this.level.intValue() && this.level != Level.OFF;
+    }
+
+    /**
+     * Log a message with fields, without waiting.
+     * @param keyValues Alternating names and values of the fields.
+     */
+    public void log(Level level, String message, Object... keyValues) {
+        if (!this.isLoggable(level)) {
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), Thread.currentThread().getName(), level,
+                this.category, message, keyValues);
+        if (!BUFFER.offer(entry)) {
+            DROPPED.increment();
+            DROPPED_SINCE_REPORT.incrementAndGet();
+        }
+    }
+
+    public void fine(String message, Object... keyValues) {
+        this.log(Level.FINE, message, keyValues);
+    }
+
+    public void info(String message, Object... keyValues) {
+        this.log(Level.INFO, message, keyValues);
+    }
+
+    public void warning(String message, Object... keyValues) {
+        this.log(Level.WARNING, message, keyValues);
+    }
+
+    /**
+     * @return Number of messages dropped because the buffer was full.
+     */
+    public static long getDropped() {
+        return DROPPED.getCount();
+    }
+
+    /**
+     * Wait until the writer has taken every buffered message, e.g. before exiting.
+     * @param timeoutMillis Longest time to wait.
+     */
+    public static void flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!BUFFER.isEmpty() && System.nanoTime() - deadline < 0) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Set the time of a record. setMillis is deprecated from Java 9 on, but
+     * setInstant does not exist on Java 8, which the game targets.
+     */
+    @SuppressWarnings("deprecation")
+    private static void setMillis(LogRecord record, long millis) {
+        record.setMillis(millis);
+    }
+
+    /**
+     * The writer thread: format every message and pass it to the logger.
+     */
+    private static void write() {
+        Logger logger = Logger.getLogger(LOGGER_NAME);
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            Entry entry;
+            try {
+                entry = BUFFER.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long dropped = DROPPED_SINCE_REPORT.getAndSet(0);
+            if (dropped > 0) {
+                logger.warning(dropped + " log messages were dropped because the log buffer was full.");
+            }
+            line.setLength(0);
+            line.append(entry.message);
+            Object[] keyValues = entry.keyValues;
+            for (int i = 0; i + 1 < keyValues.length; i += 2) {
+                line.append(' ').append(keyValues[i]).append('=').append(keyValues[i + 1]);
+            }
+            LogRecord record = new LogRecord(entry.level, line.toString());
+            setMillis(record, entry.millis);
+            record.setLoggerName(LOGGER_NAME);
+            record.setSourceClassName(entry.category);
+            record.setSourceMethodName(entry.thread);
+            try {
+                logger.log(record);
+            } catch (RuntimeException e) {
+                System.err.println("Could not write log message: " + e);
+            }
+        }
+    }
+
+    /**
+     * One buffered message.
+     */
+    private static final class Entry {
+        final long millis;
+        final String thread;
+        final Level level;
+        final String category;
+        final String message;
+        final Object[] keyValues;
+
+        Entry(long millis, String thread, Level level, String category, String message, Object[] keyValues) {
+            this.millis = millis;
+            this.thread = thread;
+            this.level = level;
+            this.category = category;
+            this.message = message;
+            this.keyValues = keyValues;
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package main;
 
+import config.ConfigWatcher;
+import jfr.FlightRecording;
+import metrics.MetricsEndpoints;
 import view.GameGUI;
 import javafx.application.Application;
 import javafx.stage.Stage;
 /**
+ * Starts the game. The login screen is shown before anything else is done:
+ * the services and the rest of the start are deferred until its first frame,
+ * and the time it took is reported by StartupProfile.
+ * 
  * @author Tony Jiang
  * 10-12-2015
  *
@@ -16,11 +23,36 @@ public class EachEveryMain extends Application {
     * @param args command line arguments
      */
     public static void main(String[] args) {
+        StartupProfile.begin();
         launch(args);
     }
 
     @Override
     public void start(Stage primaryStage) throws Exception {
-        new GameGUI(primaryStage);
+        StartupProfile.mark("FX started");
+        GameGUI gui = new GameGUI(primaryStage);
+        StartupProfile.mark("login screen");
+        StartupProfile.whenFirstFrameShown(() -> {
+            Thread services = startServices();
+            gui.finishStartup();
+            if (Boolean.getBoolean(StartupTraining.TRAINING_PROPERTY)) {
+                StartupTraining.finish(services);
+            }
+        });
+    }
+    
+    /**
+     * Start watching the config file, recording and serving metrics, off the FX thread.
+     * @return The thread starting them.
+     */
+    static Thread startServices() {
+        Thread services = new Thread(() -> {
+            ConfigWatcher.start();
+            FlightRecording.start();
+            MetricsEndpoints.start();
+        }, "startup-services");
+        services.setDaemon(true);
+        services.start();
+        return services;
     }
 }
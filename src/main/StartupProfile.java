@@ -0,0 +1,115 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+
+import javafx.animation.AnimationTimer;
+import metrics.MetricsRegistry;
+
+/**
+ * Times the start of the program, from the launch of the JVM until the login
+ * screen is first drawn, and reports it on every launch.
+ *
+ * Classes Related To:
+ *  -EachEveryMain.java
+ *      -Marks the phases of the start and defers everything the login screen
+ *      does not need until the first frame is shown.
+ *  -StartupTraining.java
+ *      -Exercises the start and a simulated session so that a class data
+ *      sharing archive can be dumped from the classes it loads.
+ *
+ * The phases are marked with System.nanoTime(); the time from the launch of
+ * the JVM to main() is taken from the RuntimeMXBean, but only once the first
+ * frame is shown, since loading the management classes takes time itself.
+ *
+ * JavaFX has no callback for a finished frame, so the first frame counts as
+ * shown on the second pulse after the login screen is built: the first pulse
+ * lays out and renders it, the second starts once that is done.
+ *
+ * The report is logged and the time to the first frame is published as the
+ * gauge startup.first.frame.ms, along with whether the JVM shares class data.
+ */
+public final class StartupProfile {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    /** System.nanoTime() at the start of main(). */
+    private static long mainNanos;
+    /** System.currentTimeMillis() at the same time. */
+    private static long mainMillis;
+
+    private static final ArrayList<String> phases = new ArrayList<String>();
+    private static final ArrayList<Long> phaseNanos = new ArrayList<Long>();
+
+    private static double firstFrameMillis;
+
+    private StartupProfile() {
+    }
+
+    /**
+     * Start timing, at the start of main().
+     */
+    static synchronized void begin() {
+        mainNanos = System.nanoTime();
+        mainMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Note the end of a phase of the start.
+     * @param phase What was done since the last mark.
+     */
+    static synchronized void mark(String phase) {
+        phases.add(phase);
+        phaseNanos.add(System.nanoTime());
+    }
+
+    /**
+     * Run a task once the first frame is shown, then report the profile.
+     * Call on the FX thread once the first screen is built.
+     * @param afterFirstFrame Run on the FX thread after the first frame.
+     */
+    static void whenFirstFrameShown(Runnable afterFirstFrame) {
+        new AnimationTimer() {
+            private int pulses;
+
+            @Override
+            public void handle(long now) {
+                if (++this.pulses < 2) {
+                    return;
+                }
+                this.stop();
+                mark("first frame");
+                report();
+                afterFirstFrame.run();
+            }
+        }.start();
+    }
+
+    private static synchronized void report() {
+        long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        double jvmToMain = mainMillis - jvmStartMillis;
+        StringBuilder builder = new StringBuilder(String.format("main %.0f ms", jvmToMain));
+        long last = mainNanos;
+        for (int i = 0; i < phases.size(); i++) {
+            builder.append(", ").append(phases.get(i)).append(' ')
+                    .append(String.format("%.0f", (phaseNanos.get(i) - last) / 1000000.0)).append(" ms");
+            last = phaseNanos.get(i);
+        }
+        firstFrameMillis = jvmToMain + (last - mainNanos) / 1000000.0;
+        String vmInfo = System.getProperty("java.vm.info", "");
+        boolean sharing = vmInfo.contains("sharing");
+        boolean archive = false;
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            archive |= argument.startsWith("-XX:SharedArchiveFile");
+        }
+        int classSharing = archive && sharing ? 2 : sharing ? 1 : 0;
+        logger.info(String.format("Time to first frame: %.0f ms (%s); class data sharing %s%s.",
+                firstFrameMillis, builder, sharing ? "on" : "off", archive ? ", with the application archive" : ""));
+        MetricsRegistry.getDefault().gauge("startup.first.frame.ms",
+                "Time from the launch of the JVM to the first frame of the login screen", () -> firstFrameMillis);
+        MetricsRegistry.getDefault().gauge("startup.class.sharing",
+                "1 if the JVM shares class data, 2 if it uses the application archive, 0 if neither",
+                () -> classSharing);
+    }
+}
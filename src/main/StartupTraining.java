@@ -0,0 +1,117 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import controller.SessionJournal;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleIntegerProperty;
+import model.DotsPair;
+import model.GameLogic;
+import model.Player;
+import replay.ScheduledSession;
+import replay.SessionReplay;
+import view.ResourceRegistry;
+
+/**
+ * Training run for a class data sharing archive: loads the classes a launch
+ * and a session need, so the JVM can list them with -XX:DumpLoadedClassList.
+ *
+ * Classes Related To:
+ *  -appcds.sh
+ *      -Runs the training, dumps the archive from the list, and launches the
+ *      game with it.
+ *  -EachEveryMain.java
+ *      -Launched by the training up to the first frame of the login screen.
+ *  -ScheduledSession.java, SessionJournal.java, SessionReplay.java
+ *      -Simulate a session without a display.
+ *
+ * The training first plays a complete simulated session: every pair of a
+ * random seed is placed and answered at random, journaled to a temporary
+ * file, read back and replayed. Unless "headless" is given, it then launches
+ * the game, which exits once the login screen is shown, the deferred start
+ * has run and the resources are loaded. Classes of the trial screens that
+ * only load once a subject logs in are not listed; the archive covers the
+ * start, which is what it is for.
+ *
+ * Usage: java main.StartupTraining [headless]
+ */
+public class StartupTraining {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    /** System property that makes EachEveryMain exit after the start. */
+    static final String TRAINING_PROPERTY = "startup.training";
+
+    /** Canvas of the simulated session, that of a 1920x1080 screen. */
+    static final int CANVAS_WIDTH = 1344;
+    static final int CANVAS_HEIGHT = 756;
+
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        simulateSession(new Random().nextLong());
+        logger.info(String.format("Simulated a session in %.0f ms.", (System.nanoTime() - start) / 1000000.0));
+        if (args.length == 0 || !args[0].equals("headless")) {
+            System.setProperty(TRAINING_PROPERTY, "true");
+            Application.launch(EachEveryMain.class);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Play, journal and replay a session without a display.
+     */
+    static void simulateSession(long seed) throws IOException {
+        File file = File.createTempFile("training", ".journal");
+        try {
+            ScheduledSession session = new ScheduledSession(seed, CANVAS_WIDTH, CANVAS_HEIGHT);
+            boolean fForTrue = session.getGenerator().isScheduledFforTrue();
+            Player player = new Player("training", Player.Gender.FEMALE, new SimpleIntegerProperty(30));
+            SessionJournal journal = SessionJournal.begin(file, seed, player, fForTrue, CANVAS_WIDTH, CANVAS_HEIGHT);
+            if (journal == null) {
+                return;
+            }
+            Random responses = new Random(seed);
+            while (!session.isDone()) {
+                DotsPair dotsPair = session.nextPair();
+                int blockMode = session.getGenerator().getBlockMode();
+                boolean pressedF = responses.nextBoolean();
+                boolean yesCorrect = GameLogic.checkWhichSideCorrect(dotsPair, blockMode);
+                boolean correct = GameLogic.checkAnswerCorrect(pressedF, yesCorrect, fForTrue);
+                session.recordResponse(correct);
+                journal.appendTrial(new SessionJournal.Checkpoint(session.getTrialIndex(), session.getState(),
+                        session.getGenerator().getBlockIndex(), session.getNumRoundsIntoBlock(),
+                        session.getGenerator().getSchedulePosition(), session.getNumRounds(),
+                        session.getNumCorrect()),
+                        new SessionJournal.Outcome(blockMode, pressedF, yesCorrect, correct, 0, 0,
+                        dotsPair.fingerprint(), System.currentTimeMillis()));
+                session.endTrial();
+            }
+            journal.close();
+            SessionReplay.Result result = SessionReplay.replay(SessionJournal.read(file));
+            if (!result.mismatches.isEmpty()) {
+                logger.warning("Simulated session does not replay: " + result.mismatches.get(0));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * End the launch of a training run, once the deferred start has run.
+     * Called on the FX thread.
+     * @param services Thread starting the services, waited for.
+     */
+    static void finish(Thread services) {
+        ResourceRegistry.get();
+        try {
+            services.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Platform.exit();
+    }
+}
@@ -0,0 +1,39 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, e.g. of trials answered. Any thread may increment it.
+ */
+public class Counter implements Metric {
+
+    private final String description;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String description) {
+        this.description = description;
+    }
+
+    public void increment() {
+        this.count.increment();
+    }
+
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public void snapshot(String name, Map<String, Double> values) {
+        values.put(name, (double) this.getCount());
+    }
+}
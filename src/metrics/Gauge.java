@@ -0,0 +1,40 @@
+package metrics;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that is read when the metrics are, e.g. the depth of a queue.
+ */
+public class Gauge implements Metric {
+
+    private final String description;
+    private volatile DoubleSupplier supplier;
+
+    Gauge(String description, DoubleSupplier supplier) {
+        this.description = description;
+        this.supplier = supplier;
+    }
+
+    /**
+     * Read the value from another supplier from now on, e.g. after the object
+     * it was read from was replaced.
+     */
+    void setSupplier(DoubleSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    public double getValue() {
+        return this.supplier.getAsDouble();
+    }
+
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public void snapshot(String name, Map<String, Double> values) {
+        values.put(name, this.getValue());
+    }
+}
@@ -0,0 +1,140 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Distribution of recorded values, e.g. of response times.
+ *
+ * Values are counted in buckets that are 1/SUB_BUCKETS of a power of two wide,
+ * so every bucket is within 1/SUB_BUCKETS (12.5%) of the values in it and a
+ * fixed array covers every value a long can hold. Recording is lock-free, so
+ * any thread may record while another reads. Percentiles are reported as the
+ * middle of the bucket they fall in.
+ *
+ * Values are recorded in the unit of the metric and counted in multiples of
+ * its resolution; values below the resolution are counted as zero.
+ */
+public class Histogram implements Metric {
+
+    /** Buckets per power of two. */
+    static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int NUM_BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    /** Percentiles put in every snapshot. */
+    static final double[] PERCENTILES = {50, 90, 99};
+
+    private final String description;
+    private final double resolution;
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param resolution Smallest difference between values that is kept, in the unit of the metric.
+     */
+    Histogram(String description, double resolution) {
+        this.description = description;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     */
+    public void record(double value) {
+        long units = Math.max(0, Math.round(value / this.resolution));
+        this.buckets.incrementAndGet(bucketOf(units));
+        this.sum.add(units * this.resolution);
+        long current;
+        while (units < (current = this.min.get()) && !this.min.compareAndSet(current, units)) {
+        }
+        while (units > (current = this.max.get()) && !this.max.compareAndSet(current, units)) {
+        }
+        this.count.incrementAndGet();
+    }
+
+    static int bucketOf(long units) {
+        if (units < SUB_BUCKETS) {
+            return (int) units;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(units);
+        int sub = (int) (units >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return Smallest number of units counted in the bucket.
+     */
+    static double lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return Math.scalb((double) (SUB_BUCKETS + sub), exponent - SUB_BITS);
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public double getMean() {
+        long n = this.getCount();
+        return n == 0 ? 0 : this.sum.sum() / n;
+    }
+
+    public double getMin() {
+        return this.getCount() == 0 ? 0 : this.min.get() * this.resolution;
+    }
+
+    public double getMax() {
+        return this.getCount() == 0 ? 0 : this.max.get() * this.resolution;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return The value below which the percentile of the values fall, 0 if none were recorded.
+     */
+    public double getPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                double middle = i < SUB_BUCKETS ? i : (lowerBound(i) + lowerBound(i + 1)) / 2;
+                return Math.min(Math.max(middle * this.resolution, this.getMin()), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public void snapshot(String name, Map<String, Double> values) {
+        values.put(name + ".count", (double) this.getCount());
+        values.put(name + ".mean", this.getMean());
+        values.put(name + ".min", this.getMin());
+        values.put(name + ".max", this.getMax());
+        for (double percentile : PERCENTILES) {
+            values.put(name + ".p" + (int) percentile, this.getPercentile(percentile));
+        }
+    }
+}
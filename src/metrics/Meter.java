@@ -0,0 +1,65 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts events and their rate over the last minute, e.g. trials per minute.
+ *
+ * The times of the last WINDOW events are kept in a ring, so the rate is exact
+ * as long as fewer than WINDOW events happen in a minute.
+ */
+public class Meter implements Metric {
+
+    /** Number of event times kept. */
+    static final int WINDOW = 1024;
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String description;
+    private final long[] times = new long[WINDOW];
+    private long count;
+
+    Meter(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Count one event now.
+     */
+    public synchronized void mark() {
+        this.times[(int) (this.count % WINDOW)] = System.nanoTime();
+        this.count++;
+    }
+
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return Number of events in the last minute.
+     */
+    public synchronized double getRatePerMinute() {
+        long since = System.nanoTime() - MINUTE_NANOS;
+        int recent = 0;
+        long available = Math.min(this.count, WINDOW);
+        for (long i = this.count - 1; i >= this.count - available; i--) {
+            if (this.times[(int) (i % WINDOW)] - since < 0) {
+                break;
+            }
+            recent++;
+        }
+        return recent;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public void snapshot(String name, Map<String, Double> values) {
+        values.put(name + ".count", (double) this.getCount());
+        values.put(name + ".per.minute", this.getRatePerMinute());
+    }
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * A metric of the MetricsRegistry.
+ *
+ * Classes Related To:
+ *  -MetricsRegistry.java
+ *      -Keeps every metric by name.
+ *  -MetricsEndpoints.java
+ *      -Reads every metric through snapshot() for JMX and HTTP.
+ */
+public interface Metric {
+
+    /**
+     * @return What the metric measures, in its unit.
+     */
+    String getDescription();
+
+    /**
+     * Put the current values of the metric in a map. A metric with a single
+     * value puts it under its name; one with several puts each under its name
+     * followed by a suffix, e.g. name.p99.
+     * @param name Name of the metric.
+     * @param values Map to put the values in.
+     */
+    void snapshot(String name, Map<String, Double> values);
+}
@@ -0,0 +1,261 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import config.Config;
+
+/**
+ * Exposes the default MetricsRegistry for monitoring the station while it runs.
+ *
+ * Classes Related To:
+ *  -EachEveryMain.java
+ *      -Starts the endpoints before the GUI is created.
+ *  -MetricsRegistry.java
+ *      -The metrics exposed.
+ *
+ * If metrics.jmx.on, the registry is registered as the MBean
+ * eacheverydots:type=Metrics, with one read-only attribute per value of every
+ * metric, so it can be watched in JConsole or VisualVM or through a JMX agent.
+ *
+ * If metrics.http.on, GET /metrics on metrics.http.port returns every value as a
+ * line of text in the Prometheus text format, with the dots of the names
+ * replaced by underscores. The server is bound to the loopback address only,
+ * so it can be scraped by an agent on the station but not from the network.
+ */
+public final class MetricsEndpoints {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    public static final String OBJECT_NAME = "eacheverydots:type=Metrics";
+
+    /** Prefix of every name served over HTTP. */
+    static final String HTTP_PREFIX = "eacheverydots_";
+
+    private static boolean METRICS_JMX_ON;
+    private static boolean METRICS_HTTP_ON;
+    private static int METRICS_HTTP_PORT;
+
+    private MetricsEndpoints() {
+    }
+
+    private static void loadConfig() {
+        new Config();
+        METRICS_JMX_ON = Config.getPropertyBoolean("metrics.jmx.on");
+        METRICS_HTTP_ON = Config.getPropertyBoolean("metrics.http.on");
+        METRICS_HTTP_PORT = Config.getPropertyInt("metrics.http.port");
+    }
+
+    /**
+     * Start the endpoints that are configured.
+     */
+    public static void start() {
+        loadConfig();
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        if (METRICS_JMX_ON) {
+            registerMBean(registry);
+        }
+        if (METRICS_HTTP_ON) {
+            startHttpServer(registry, METRICS_HTTP_PORT);
+        }
+    }
+
+    static void registerMBean(MetricsRegistry registry) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new RegistryMBean(registry), name);
+            }
+        } catch (JMException e) {
+            logger.warning("Could not register metrics MBean: " + e);
+        }
+    }
+
+    /**
+     * Serve the registry on the loopback address. The server's dispatcher is
+     * started from a daemon thread, whose daemon status it inherits, so it
+     * does not keep the program alive.
+     * @return The server, or null if it could not be started.
+     */
+    static HttpServer startHttpServer(final MetricsRegistry registry, int port) {
+        final HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            logger.warning("Could not serve metrics on port " + port + ": " + e);
+            return null;
+        }
+        server.createContext("/metrics", exchange -> serve(registry, exchange));
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        Thread starter = new Thread(server::start, "metrics-http-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Serving metrics on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/metrics");
+        return server;
+    }
+
+    private static void serve(MetricsRegistry registry, HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = format(registry).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return Every value of the registry in the Prometheus text format. A
+     * histogram is written as a summary with its percentiles as quantiles,
+     * followed by its minimum and maximum as gauges; every other value is a
+     * counter if it counts and a gauge otherwise. Every series written has a
+     * HELP and a TYPE line.
+     */
+    static String format(MetricsRegistry registry) {
+        StringBuilder text = new StringBuilder();
+        TreeMap<String, Metric> metrics = registry.getMetrics();
+        TreeMap<String, Double> values = new TreeMap<String, Double>();
+        for (Map.Entry<String, Metric> metric : metrics.entrySet()) {
+            String name = metric.getKey();
+            String description = metric.getValue().getDescription();
+            values.clear();
+            metric.getValue().snapshot(name, values);
+            if (metric.getValue() instanceof Histogram) {
+                appendHeader(text, name, "summary", description);
+                for (double percentile : Histogram.PERCENTILES) {
+                    text.append(httpName(name)).append("{quantile=\"").append(percentile / 100).append("\"} ")
+                            .append(values.get(name + ".p" + (int) percentile)).append('\n');
+                }
+                double count = values.get(name + ".count");
+                text.append(httpName(name)).append("_sum ").append(count * values.get(name + ".mean")).append('\n');
+                text.append(httpName(name)).append("_count ").append(count).append('\n');
+                for (String suffix : new String[] {".min", ".max"}) {
+                    appendHeader(text, name + suffix, "gauge", description);
+                    text.append(httpName(name + suffix)).append(' ').append(values.get(name + suffix)).append('\n');
+                }
+                continue;
+            }
+            for (Map.Entry<String, Double> value : values.entrySet()) {
+                boolean counts = metric.getValue() instanceof Counter || value.getKey().endsWith(".count");
+                appendHeader(text, value.getKey(), counts ? "counter" : "gauge", description);
+                text.append(httpName(value.getKey())).append(' ').append(value.getValue()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static void appendHeader(StringBuilder text, String name, String type, String description) {
+        text.append("# HELP ").append(httpName(name)).append(' ').append(description).append('\n');
+        text.append("# TYPE ").append(httpName(name)).append(' ').append(type).append('\n');
+    }
+
+    private static String httpName(String name) {
+        return HTTP_PREFIX + name.replace('.', '_');
+    }
+
+    /**
+     * The registry as an MBean. The attributes are read from a fresh snapshot
+     * every time, so metrics created after registration show up as well.
+     */
+    static class RegistryMBean implements DynamicMBean {
+
+        private final MetricsRegistry registry;
+
+        RegistryMBean(MetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Double value = this.registry.snapshot().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            TreeMap<String, Double> values = this.registry.snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+            TreeMap<String, Metric> metrics = this.registry.getMetrics();
+            TreeMap<String, Double> values = new TreeMap<String, Double>();
+            for (Map.Entry<String, Metric> metric : metrics.entrySet()) {
+                values.clear();
+                metric.getValue().snapshot(metric.getKey(), values);
+                for (String name : values.keySet()) {
+                    attributes.add(new MBeanAttributeInfo(name, Double.class.getName(),
+                            metric.getValue().getDescription(), true, false, false));
+                }
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "Metrics of the running assessment",
+                    attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+        }
+    }
+}
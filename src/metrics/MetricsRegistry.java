@@ -0,0 +1,89 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Named counters, gauges, meters and histograms of the running program.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java, DotsPairGenerator.java, DataWriter.java
+ *      -Record trials, pair generation, placement, frame timing, response times
+ *      and CSV flushes in the default registry.
+ *  -MetricsEndpoints.java
+ *      -Exposes the default registry through JMX and a loopback HTTP endpoint.
+ *
+ * Metrics are created on first use and shared after that: asking for a metric
+ * by a name that is already taken returns the existing one. Names are dotted
+ * and carry their unit, e.g. pair.generation.ms.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+    /**
+     * @return The registry of the program.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name, String description) {
+        return this.get(name, Counter.class, new Counter(description));
+    }
+
+    public Meter meter(String name, String description) {
+        return this.get(name, Meter.class, new Meter(description));
+    }
+
+    /**
+     * @param resolution Smallest difference between values that is kept, in the unit of the metric.
+     */
+    public Histogram histogram(String name, String description, double resolution) {
+        return this.get(name, Histogram.class, new Histogram(description, resolution));
+    }
+
+    /**
+     * Register a gauge. If there already is one by the name, it reads from the
+     * new supplier from now on.
+     */
+    public Gauge gauge(String name, String description, DoubleSupplier supplier) {
+        Gauge gauge = this.get(name, Gauge.class, new Gauge(description, supplier));
+        gauge.setSupplier(supplier);
+        return gauge;
+    }
+
+    private <T extends Metric> T get(String name, Class<T> type, T created) {
+        Metric existing = this.metrics.putIfAbsent(name, created);
+        if (existing == null) {
+            return created;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " is a "
+                    + existing.getClass().getSimpleName() + ", not a " + type.getSimpleName());
+        }
+        return type.cast(existing);
+    }
+
+    /**
+     * @return The current value of every metric, sorted by name.
+     */
+    public TreeMap<String, Double> snapshot() {
+        TreeMap<String, Double> values = new TreeMap<String, Double>();
+        for (Map.Entry<String, Metric> entry : this.metrics.entrySet()) {
+            entry.getValue().snapshot(entry.getKey(), values);
+        }
+        return values;
+    }
+
+    /**
+     * @return Every metric by name, sorted.
+     */
+    public TreeMap<String, Metric> getMetrics() {
+        return new TreeMap<String, Metric>(this.metrics);
+    }
+}
@@ -0,0 +1,129 @@
+package model;
+
+import java.util.EnumMap;
+
+import model.Coordinate.Shape;
+
+/**
+ * Exact minimum-gap tests between two dots of any pair of shapes.
+ *
+ * Classes Related To:
+ *  -OverlapKernel.java
+ *      -Finds candidate dots by their bounding circles, then confirms them here.
+ *  -JointPlacer.java
+ *      -Finds candidate dots with its grid, then confirms them here.
+ *  -StimulusBank.java, CongruencySolver.java
+ *      -Check placed and adjusted pairs with the same tests.
+ *
+ * A dot is given by its shape, center and radius (half its diameter). Circles
+ * are drawn with fillOval and squares with fillRect over the same d x d box, so
+ * a square is an axis-aligned box of half-width r.
+ *
+ * Every pair of shapes has a Test, kept in a table by shape. To add a shape,
+ * give it a bounding radius factor in boundingFactor() and register a Test
+ * against every existing shape with register().
+ */
+public final class Collision {
+
+    /**
+     * Exact test for one pair of shapes.
+     */
+    public interface Test {
+        /**
+         * @return true if the edges of dots a and b are less than gap apart.
+         */
+        boolean closerThan(double ax, double ay, double ar, double bx, double by, double br, double gap);
+    }
+
+    private static final EnumMap<Shape, EnumMap<Shape, Test>> TESTS =
+            new EnumMap<Shape, EnumMap<Shape, Test>>(Shape.class);
+
+    static {
+        register(Shape.CIRCLE, Shape.CIRCLE, Collision::circleCircle);
+        register(Shape.CIRCLE, Shape.SQUARE, Collision::circleBox);
+        register(Shape.SQUARE, Shape.SQUARE, Collision::boxBox);
+    }
+
+    private Collision() {
+    }
+
+    /**
+     * Register the test for shapes a and b. The test for b and a is derived by
+     * swapping the dots.
+     */
+    public static synchronized void register(Shape a, Shape b, Test test) {
+        tests(a).put(b, test);
+        if (a != b) {
+            tests(b).put(a, (bx, by, br, ax, ay, ar, gap) -> test.closerThan(ax, ay, ar, bx, by, br, gap));
+        }
+    }
+
+    private static EnumMap<Shape, Test> tests(Shape shape) {
+        EnumMap<Shape, Test> tests = TESTS.get(shape);
+        if (tests == null) {
+            tests = new EnumMap<Shape, Test>(Shape.class);
+            TESTS.put(shape, tests);
+        }
+        return tests;
+    }
+
+    /**
+     * @return true if the edges of dots a and b are less than gap apart.
+     */
+    public static boolean closerThan(Shape a, double ax, double ay, double ar,
+            Shape b, double bx, double by, double br, double gap) {
+        return TESTS.get(a).get(b).closerThan(ax, ay, ar, bx, by, br, gap);
+    }
+
+    /**
+     * Ratio of the radius of the smallest circle around a dot, centered on it,
+     * to its radius. Broad phases compare these circles.
+     */
+    public static double boundingFactor(Shape shape) {
+        switch (shape) {
+        case SQUARE:
+            return Math.sqrt(2);
+        default:
+            return 1;
+        }
+    }
+
+    /**
+     * @return The largest boundingFactor() of any shape.
+     */
+    public static double maxBoundingFactor() {
+        double max = 1;
+        for (Shape shape : Shape.values()) {
+            max = Math.max(max, boundingFactor(shape));
+        }
+        return max;
+    }
+
+    static boolean circleCircle(double ax, double ay, double ar, double bx, double by, double br, double gap) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        double limit = ar + br + gap;
+        return dx * dx + dy * dy < limit * limit;
+    }
+
+    /**
+     * Distance from the circle's center to the closest point of the box,
+     * compared to the circle's radius plus the gap.
+     */
+    static boolean circleBox(double ax, double ay, double ar, double bx, double by, double br, double gap) {
+        double dx = Math.max(Math.abs(ax - bx) - br, 0);
+        double dy = Math.max(Math.abs(ay - by) - br, 0);
+        double limit = ar + gap;
+        return dx * dx + dy * dy < limit * limit;
+    }
+
+    /**
+     * Separation of the boxes along each axis; the distance between them is the
+     * length of the separations that are positive.
+     */
+    static boolean boxBox(double ax, double ay, double ar, double bx, double by, double br, double gap) {
+        double dx = Math.max(Math.abs(ax - bx) - ar - br, 0);
+        double dy = Math.max(Math.abs(ay - by) - ar - br, 0);
+        return dx * dx + dy * dy < gap * gap;
+    }
+}
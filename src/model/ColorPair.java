@@ -1,5 +1,7 @@
 package model;
 
+import java.util.ArrayList;
+
 import javafx.scene.paint.Color;
 
 /**
@@ -23,6 +25,19 @@ public class ColorPair {
         this.colorTwoName = colorTwoName;
     }
     
+    /**
+     * @return A new list of the color pairs the blocks of a session are shown in,
+     * in the order a precompiled schedule indexes them.
+     */
+    public static ArrayList<ColorPair> standardPairs() {
+        ArrayList<ColorPair> pairs = new ArrayList<ColorPair>();
+        pairs.add(new ColorPair(Color.BLUE, Color.YELLOW, "Blue", "Yellow"));
+        pairs.add(new ColorPair(Color.web("#33CC33"), Color.RED, "Green", "Red"));
+        pairs.add(new ColorPair(Color.PURPLE, Color.ORANGE, "Purple", "Orange"));
+        pairs.add(new ColorPair(Color.CYAN, Color.BROWN, "Cyan", "Brown"));
+        return pairs;
+    }
+    
     public Color getColorOne() {
         return this.colorOne;
     }
@@ -0,0 +1,369 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import model.Coordinate.Shape;
+
+/**
+ * Adjusts the diameters and placement of the dots of a DotsPair so that the
+ * ratios (dot set one / dot set two) of several continuous features hit their
+ * targets at once: total area, convex hull area and density.
+ *
+ * Classes Related To:
+ *  -StimulusBank.java
+ *      -Runs the solver on every pair it places, on the background prefill thread.
+ *  -MagnitudeMetrics.java
+ *      -Defines the features; the hull is computed the same way.
+ *
+ * The geometry of both dot sets is copied into primitive arrays and improved by
+ * a randomized descent on the summed squared log error of the three ratios:
+ *  -The area ratio is first set in closed form by shrinking one set's diameters.
+ *  -Then, until the error is small or the time budget runs out, one of these moves
+ *  is tried and kept only if it lowers the error and every dot stays within the
+ *  canvas and at least MIN_DISTANCE_BETWEEN_DOTS from every other dot:
+ *      -scale the diameters of one set about the dots' centers,
+ *      -spread or contract one set about its centroid,
+ *      -move a single dot.
+ * The pair is only written back if the result is better than what it started with.
+ *
+ * Since density is dots per hull area, the density ratio is fixed by the hull ratio
+ * and the numbers of dots; targetsFor() picks consistent targets.
+ */
+public class CongruencySolver {
+
+    /** Stop once the error is below this. */
+    static final double TOLERANCE = 1e-4;
+
+    /** Largest relative step of the scale and spread moves. */
+    static final double MAX_SCALE_STEP = 0.1;
+
+    /** Largest step of a single dot move, in pixels. */
+    static final int MAX_JITTER = 15;
+
+    /** Weights of the area, hull and density errors. */
+    static final double AREA_WEIGHT = 1;
+    static final double HULL_WEIGHT = 1;
+    static final double DENSITY_WEIGHT = 0.5;
+
+    /** Time allowed per pair in nanoseconds. */
+    private final long budgetNanos;
+
+    private final Random randomGenerator;
+
+    /** Geometry of both sets; dots of set one come first. */
+    private int numDots;
+    private int numOne;
+    private int[] x;
+    private int[] y;
+    private double[] d;
+    private boolean[] square;
+    private int canvasWidth;
+    private int canvasHeight;
+
+    /** Scratch arrays for the hull of one set. */
+    private double[] hullX;
+    private double[] hullY;
+    private double[] hullD;
+    private boolean[] hullSquare;
+
+    /** Backup of the geometry before a move. */
+    private int[] savedX;
+    private int[] savedY;
+    private double[] savedD;
+
+    private double logTargetArea;
+    private double logTargetHull;
+    private double logTargetDensity;
+
+    /**
+     * @param budgetMillis Time allowed per pair in milliseconds.
+     * @param randomGenerator Source of the random moves.
+     */
+    public CongruencySolver(int budgetMillis, Random randomGenerator) {
+        this.budgetNanos = budgetMillis * 1000000L;
+        this.randomGenerator = randomGenerator;
+    }
+
+    /**
+     * Targets for the pair's control type. Both control types equalize the convex
+     * hulls, so the extent of the dots gives no cue, and density follows number.
+     *  -EQUAL_AREAS: equal total areas, so the set with more dots has smaller dots.
+     *  -INVERSE_AREAS: total areas in the square of the ratio of the numbers of
+     *  dots, so the mean dot area is in the ratio of the numbers and the set with
+     *  more dots has larger dots, as inverseMatchAreas() in DotsPair makes them.
+     * @return {area ratio, hull ratio, density ratio}, or null for other control types.
+     */
+    public static double[] targetsFor(DotsPair pair) {
+        double numberRatio = (double) pair.getDotSetOne().getTotalNumDots()
+                / pair.getDotSetTwo().getTotalNumDots();
+        if (pair.getControlType() == ControlType.EQUAL_AREAS) {
+            return new double[] {1, 1, numberRatio};
+        } else if (pair.getControlType() == ControlType.INVERSE_AREAS) {
+            return new double[] {numberRatio * numberRatio, 1, numberRatio};
+        }
+        return null;
+    }
+
+    /**
+     * Solve for the targets of the pair's control type.
+     * @return The remaining error, or -1 if the control type has no targets.
+     */
+    public double solve(DotsPair pair) {
+        double[] targets = targetsFor(pair);
+        if (targets == null) {
+            return -1;
+        }
+        return this.solve(pair, targets[0], targets[1], targets[2]);
+    }
+
+    /**
+     * Move and resize the dots of the pair towards the target ratios
+     * (dot set one / dot set two) within the time budget.
+     * @return The remaining error.
+     */
+    public double solve(DotsPair pair, double areaRatio, double hullRatio, double densityRatio) {
+        long deadline = System.nanoTime() + this.budgetNanos;
+        this.load(pair);
+        this.logTargetArea = Math.log(areaRatio);
+        this.logTargetHull = Math.log(hullRatio);
+        this.logTargetDensity = Math.log(densityRatio);
+
+        double initialError = this.error();
+        double error = initialError;
+
+        this.save();
+        this.matchAreaRatio(areaRatio);
+        double matched = this.valid() ? this.error() : Double.MAX_VALUE;
+        if (matched < error) {
+            error = matched;
+        } else {
+            this.restore();
+        }
+
+        while (error > TOLERANCE && System.nanoTime() < deadline) {
+            this.save();
+            int set = randomGenerator.nextInt(2);
+            switch (randomGenerator.nextInt(3)) {
+            case 0:
+                this.scaleDiameters(set, 1 + (randomGenerator.nextDouble() * 2 - 1) * MAX_SCALE_STEP);
+                break;
+            case 1:
+                this.spread(set, 1 + (randomGenerator.nextDouble() * 2 - 1) * MAX_SCALE_STEP);
+                break;
+            default:
+                this.jitter(randomGenerator.nextInt(this.numDots));
+                break;
+            }
+            double candidate = this.valid() ? this.error() : Double.MAX_VALUE;
+            if (candidate < error) {
+                error = candidate;
+            } else {
+                this.restore();
+            }
+        }
+
+        if (error < initialError) {
+            this.writeBack(pair);
+            return error;
+        }
+        return initialError;
+    }
+
+    /**
+     * Copy the geometry of the pair into the primitive arrays.
+     */
+    private void load(DotsPair pair) {
+        DotSet one = pair.getDotSetOne();
+        DotSet two = pair.getDotSetTwo();
+        this.numOne = one.getTotalNumDots();
+        this.numDots = this.numOne + two.getTotalNumDots();
+        this.canvasWidth = one.getCanvasWidth();
+        this.canvasHeight = one.getCanvasHeight();
+        if (this.x == null || this.x.length < this.numDots) {
+            this.x = new int[this.numDots];
+            this.y = new int[this.numDots];
+            this.d = new double[this.numDots];
+            this.square = new boolean[this.numDots];
+            this.savedX = new int[this.numDots];
+            this.savedY = new int[this.numDots];
+            this.savedD = new double[this.numDots];
+            this.hullX = new double[this.numDots];
+            this.hullY = new double[this.numDots];
+            this.hullD = new double[this.numDots];
+            this.hullSquare = new boolean[this.numDots];
+        }
+        for (int i = 0; i < this.numDots; i++) {
+            DotSet dotSet = i < this.numOne ? one : two;
+            int j = i < this.numOne ? i : i - this.numOne;
+            Coordinate c = dotSet.getPositions().get(j);
+            this.x[i] = c.x;
+            this.y[i] = c.y;
+            this.d[i] = dotSet.getDiameters().get(j);
+            this.square[i] = c.shape == Shape.SQUARE;
+        }
+    }
+
+    /**
+     * Replace the dots of the pair with the solved geometry.
+     */
+    private void writeBack(DotsPair pair) {
+        DotSet[] dotSets = {pair.getDotSetOne(), pair.getDotSetTwo()};
+        for (int set = 0; set < 2; set++) {
+            int start = this.start(set);
+            int end = this.end(set);
+            ArrayList<Coordinate> positions = new ArrayList<Coordinate>(end - start);
+            ArrayList<Double> diameters = new ArrayList<Double>(end - start);
+            for (int i = start; i < end; i++) {
+                positions.add(new Coordinate(this.x[i], this.y[i],
+                        this.square[i] ? Shape.SQUARE : Shape.CIRCLE));
+                diameters.add(this.d[i]);
+            }
+            dotSets[set].replaceDots(positions, diameters);
+        }
+        pair.updateMetrics();
+    }
+
+    private int start(int set) {
+        return set == 0 ? 0 : this.numOne;
+    }
+
+    private int end(int set) {
+        return set == 0 ? this.numOne : this.numDots;
+    }
+
+    /**
+     * Shrink whichever set must shrink so the area ratio is exact.
+     * Shrinking about the centers never creates an overlap.
+     */
+    private void matchAreaRatio(double areaRatio) {
+        double current = this.area(0) / this.area(1);
+        if (current > areaRatio) {
+            this.scaleDiameters(0, Math.sqrt(areaRatio / current));
+        } else {
+            this.scaleDiameters(1, Math.sqrt(current / areaRatio));
+        }
+    }
+
+    /**
+     * Scale the diameters of a set, keeping each dot's center in place.
+     */
+    private void scaleDiameters(int set, double factor) {
+        for (int i = this.start(set); i < this.end(set); i++) {
+            double centerX = this.x[i] + this.d[i] / 2;
+            double centerY = this.y[i] + this.d[i] / 2;
+            this.d[i] *= factor;
+            this.x[i] = (int) Math.round(centerX - this.d[i] / 2);
+            this.y[i] = (int) Math.round(centerY - this.d[i] / 2);
+        }
+    }
+
+    /**
+     * Move the dots of a set away from (factor > 1) or towards their centroid.
+     */
+    private void spread(int set, double factor) {
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = this.start(set); i < this.end(set); i++) {
+            sumX += this.x[i] + this.d[i] / 2;
+            sumY += this.y[i] + this.d[i] / 2;
+        }
+        int n = this.end(set) - this.start(set);
+        double centroidX = sumX / n;
+        double centroidY = sumY / n;
+        for (int i = this.start(set); i < this.end(set); i++) {
+            double centerX = centroidX + (this.x[i] + this.d[i] / 2 - centroidX) * factor;
+            double centerY = centroidY + (this.y[i] + this.d[i] / 2 - centroidY) * factor;
+            this.x[i] = (int) Math.round(centerX - this.d[i] / 2);
+            this.y[i] = (int) Math.round(centerY - this.d[i] / 2);
+        }
+    }
+
+    private void jitter(int i) {
+        this.x[i] += randomGenerator.nextInt(2 * MAX_JITTER + 1) - MAX_JITTER;
+        this.y[i] += randomGenerator.nextInt(2 * MAX_JITTER + 1) - MAX_JITTER;
+    }
+
+    /**
+     * @return true if every dot is within the canvas and far enough from every other dot.
+     */
+    private boolean valid() {
+        for (int i = 0; i < this.numDots; i++) {
+            if (this.x[i] < 0 || this.y[i] < 0
+                    || this.x[i] + this.d[i] > this.canvasWidth
+                    || this.y[i] + this.d[i] > this.canvasHeight) {
+                return false;
+            }
+            double radius = this.d[i] / 2;
+            double centerX = this.x[i] + radius;
+            double centerY = this.y[i] + radius;
+            for (int j = 0; j < i; j++) {
+                double otherRadius = this.d[j] / 2;
+                if (Collision.closerThan(this.shapeOf(i), centerX, centerY, radius, this.shapeOf(j),
+                        this.x[j] + otherRadius, this.y[j] + otherRadius, otherRadius,
+                        DotSet.MIN_DISTANCE_BETWEEN_DOTS)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Shape shapeOf(int i) {
+        return this.square[i] ? Shape.SQUARE : Shape.CIRCLE;
+    }
+
+    /**
+     * @return Summed squared log error of the three ratios.
+     */
+    private double error() {
+        double logArea = Math.log(this.area(0) / this.area(1));
+        double hullOne = this.hull(0);
+        double hullTwo = this.hull(1);
+        double logHull = Math.log(hullOne / hullTwo);
+        double logDensity = Math.log(((double) this.numOne / hullOne)
+                / ((double) (this.numDots - this.numOne) / hullTwo));
+        double areaError = logArea - this.logTargetArea;
+        double hullError = logHull - this.logTargetHull;
+        double densityError = logDensity - this.logTargetDensity;
+        return AREA_WEIGHT * areaError * areaError
+                + HULL_WEIGHT * hullError * hullError
+                + DENSITY_WEIGHT * densityError * densityError;
+    }
+
+    private double area(int set) {
+        double area = 0;
+        for (int i = this.start(set); i < this.end(set); i++) {
+            if (this.square[i]) {
+                area += this.d[i] * this.d[i];
+            } else {
+                area += Math.PI * (this.d[i] / 2) * (this.d[i] / 2);
+            }
+        }
+        return area;
+    }
+
+    private double hull(int set) {
+        int n = 0;
+        for (int i = this.start(set); i < this.end(set); i++) {
+            this.hullD[n] = this.d[i];
+            this.hullX[n] = this.x[i] + this.d[i] / 2;
+            this.hullY[n] = this.y[i] + this.d[i] / 2;
+            this.hullSquare[n] = this.square[i];
+            n++;
+        }
+        return MagnitudeMetrics.convexHullArea(this.hullX, this.hullY, this.hullD, this.hullSquare, n);
+    }
+
+    private void save() {
+        System.arraycopy(this.x, 0, this.savedX, 0, this.numDots);
+        System.arraycopy(this.y, 0, this.savedY, 0, this.numDots);
+        System.arraycopy(this.d, 0, this.savedD, 0, this.numDots);
+    }
+
+    private void restore() {
+        System.arraycopy(this.savedX, 0, this.x, 0, this.numDots);
+        System.arraycopy(this.savedY, 0, this.y, 0, this.numDots);
+        System.arraycopy(this.savedD, 0, this.d, 0, this.numDots);
+    }
+}
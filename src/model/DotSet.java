@@ -2,6 +2,8 @@ package model;
 
 import java.util.Random;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import model.Coordinate.Shape;
 import view.SetUp;
@@ -45,18 +47,36 @@ public class DotSet {
     /** Positions of every dot with respect to the canvas it is in */
     private ArrayList<Coordinate> positions;
     
-    /** Respective diameters of the dots in the dotSet */
+    /** Respective diameters of the dots in the dotSet, as placed (before scaling). */
     private ArrayList<Double> diameters;
     
-    /** The total area of the dotSet to be calculated after painting all dots.
+    /** Summed area of the circles and of the squares as placed (before scaling).
      * Used for TOTAL_AREA_CONTROL. */
-    private double totalArea;
+    private double circleArea;
+    private double squareArea;
+    
+    /** Factor every diameter is scaled by. Areas scale by its square. */
+    private double scale = 1;
+    
+    /** Read-only diameters multiplied by scale, built on first use after a rescale. Null if stale. */
+    private List<Double> scaledDiameters;
+    
+    /** Centers and radii of the dots as drawn, for the overlap checks. Null if stale. */
+    private OverlapKernel overlapKernel;
+    
+    /** Number of candidate dots tried while filling this dotSet, accepted or not. */
+    private int placementAttempts;
     
     /** Random number generator */
     private Random randomGenerator = new Random();
     
+    /** Width of the canvas the dots are placed in. */
+    private int canvasWidth;
+    /** Height of the canvas the dots are placed in. */
+    private int canvasHeight;
+    
     /** The minimum distance in pixels two dots can be from each other. */
-    static final int MIN_DISTANCE_BETWEEN_DOTS = 3;
+    public static final int MIN_DISTANCE_BETWEEN_DOTS = 3;
     
     /**
      * Constructor for DotSet with a specified number of total dots to contain. 
@@ -66,11 +86,12 @@ public class DotSet {
         
         loadConfig();
         
+        this.canvasWidth = SetUp.DOTS_CANVAS_WIDTH;
+        this.canvasHeight = SetUp.DOTS_CANVAS_HEIGHT;
         this.setTotalNumDots(numDots);
         this.positions = new ArrayList<Coordinate>();
         this.diameters = new ArrayList<Double>(); 
         
-        this.totalArea = 0;
         this.fillDots();
     }
     
@@ -82,35 +103,106 @@ public class DotSet {
      */
     public DotSet(int numDots, DotSet otherDotSet) {
         loadConfig();
+        this.canvasWidth = otherDotSet.canvasWidth;
+        this.canvasHeight = otherDotSet.canvasHeight;
         this.setTotalNumDots(numDots);
         this.positions = new ArrayList<Coordinate>();
         this.diameters = new ArrayList<Double>(); 
-        this.totalArea = 0;
         this.fillDots(otherDotSet);
     }
     
     public DotSet(int numCircles, int numSquares) {
     	loadConfig();
+    	this.canvasWidth = SetUp.DOTS_CANVAS_WIDTH;
+    	this.canvasHeight = SetUp.DOTS_CANVAS_HEIGHT;
     	this.totalNumCircles = numCircles;
     	this.totalNumSquares = numSquares;
     	this.totalNumDots = numSquares + numCircles;
     	this.positions = new ArrayList<Coordinate>();
         this.diameters = new ArrayList<Double>(); 
-        this.totalArea = 0;
         this.fillDots();
     }
     
+    /**
+     * Constructor for DotSet with a specified number of circles and squares
+     * to be placed in a canvas of the given size.
+     */
+    public DotSet(int numCircles, int numSquares, int canvasWidth, int canvasHeight) {
+        this(numCircles, numSquares, canvasWidth, canvasHeight, new Random());
+    }
+    
+    /**
+     * Constructor for DotSet with a specified number of circles and squares
+     * to be placed in a canvas of the given size, drawing the positions and 
+     * diameters from the given random number generator.
+     */
+    public DotSet(int numCircles, int numSquares, int canvasWidth, int canvasHeight, Random randomGenerator) {
+        loadConfig();
+        this.randomGenerator = randomGenerator;
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.totalNumCircles = numCircles;
+        this.totalNumSquares = numSquares;
+        this.totalNumDots = numSquares + numCircles;
+        this.positions = new ArrayList<Coordinate>();
+        this.diameters = new ArrayList<Double>(); 
+        this.fillDots();
+    }
+    
+    /**
+     * Constructor for a DotSet with dots that have already been placed.
+     * The positions and diameters are not copied.
+     */
+    DotSet(int numCircles, int numSquares, int canvasWidth, int canvasHeight,
+            ArrayList<Coordinate> positions, ArrayList<Double> diameters) {
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.totalNumCircles = numCircles;
+        this.totalNumSquares = numSquares;
+        this.totalNumDots = numSquares + numCircles;
+        this.replaceDots(positions, diameters);
+    }
+    
+    /**
+     * Replace every dot of this dotSet with dots that have already been placed
+     * and recompute the total area. The positions and diameters are not copied.
+     * @param positions Positions of the dots, in the same order of shapes.
+     * @param diameters Respective diameters of the dots.
+     */
+    void replaceDots(ArrayList<Coordinate> positions, ArrayList<Double> diameters) {
+        this.positions = positions;
+        this.setDiameters(diameters);
+    }
+    
     public DotSet(int numCircles, int numSquares, DotSet otherDotSet) {
+        this(numCircles, numSquares, otherDotSet, new Random());
+    }
+    
+    /**
+     * Constructor for DotSet that does not overlap with another DotSet, drawing
+     * the positions and diameters from the given random number generator.
+     */
+    public DotSet(int numCircles, int numSquares, DotSet otherDotSet, Random randomGenerator) {
     	loadConfig();
+    	this.randomGenerator = randomGenerator;
+    	this.canvasWidth = otherDotSet.canvasWidth;
+    	this.canvasHeight = otherDotSet.canvasHeight;
     	this.totalNumCircles = numCircles;
     	this.totalNumSquares = numSquares;
     	this.totalNumDots = numSquares + numCircles;
     	this.positions = new ArrayList<Coordinate>();
         this.diameters = new ArrayList<Double>(); 
-        this.totalArea = 0;
         this.fillDots(otherDotSet);
     }
     
+    /**
+     * @return A copy of this dot set that can be scaled independently.
+     */
+    DotSet copy() {
+        return new DotSet(this.totalNumCircles, this.totalNumSquares, this.canvasWidth, this.canvasHeight,
+                new ArrayList<Coordinate>(this.positions), new ArrayList<Double>(this.getDiameters()));
+    }
+    
     private void loadConfig() {
         new Config();
         AVERAGE_RADIUS_CONTROL = Config.getPropertyBoolean("average.radius.control");
@@ -127,16 +219,14 @@ public class DotSet {
     private void fillDots() {
         int i = 0;
         while (i < this.totalNumDots) {
-            int x = randomGenerator.nextInt(SetUp.DOTS_CANVAS_WIDTH - MAX_DIAMETER);
-            int y = randomGenerator.nextInt(SetUp.DOTS_CANVAS_HEIGHT - MAX_DIAMETER);
+            int x = randomGenerator.nextInt(this.canvasWidth - MAX_DIAMETER);
+            int y = randomGenerator.nextInt(this.canvasHeight - MAX_DIAMETER);
             int diameter = randomGenerator.nextInt(MAX_DIAMETER - MIN_DIAMETER) + MIN_DIAMETER; 
+            this.placementAttempts++;
+            Shape shape = i < this.totalNumCircles ? Shape.CIRCLE : Shape.SQUARE;
             
-            if (!overLapsOther(x, y, diameter)) {
-            	if (i < this.totalNumCircles) {
-                    this.addDotAndDiameterAndArea(x, y, diameter, Shape.CIRCLE);
-            	} else {
-            		this.addDotAndDiameterAndArea(x, y, diameter, Shape.SQUARE);
-            	}
+            if (!overLapsOther(x, y, diameter, shape)) {
+                this.addDotAndDiameterAndArea(x, y, diameter, shape);
                 i++;
             }
         }
@@ -145,18 +235,16 @@ public class DotSet {
     private void fillDots(DotSet otherDotSet) {
         int i = 0;
         while (i < this.totalNumDots) {
-            int x = randomGenerator.nextInt(SetUp.DOTS_CANVAS_WIDTH - MAX_DIAMETER);
-            int y = randomGenerator.nextInt(SetUp.DOTS_CANVAS_HEIGHT - MAX_DIAMETER);
+            int x = randomGenerator.nextInt(this.canvasWidth - MAX_DIAMETER);
+            int y = randomGenerator.nextInt(this.canvasHeight - MAX_DIAMETER);
             int diameter = randomGenerator.nextInt(MAX_DIAMETER - MIN_DIAMETER) + MIN_DIAMETER; 
+            this.placementAttempts++;
+            Shape shape = i < this.totalNumCircles ? Shape.CIRCLE : Shape.SQUARE;
             
-            if (!overLapsOther(x, y, diameter) 
-                    && !overLapsOtherInOtherDotSet(x, y, diameter, otherDotSet)) {
-            		if (i < this.totalNumCircles) {
-            			this.addDotAndDiameterAndArea(x, y, diameter, Shape.CIRCLE);
-            		} else {
-            			this.addDotAndDiameterAndArea(x, y, diameter, Shape.SQUARE);
-            		}
-                    i++;
+            if (!overLapsOther(x, y, diameter, shape) 
+                    && !overLapsOtherInOtherDotSet(x, y, diameter, shape, otherDotSet)) {
+                this.addDotAndDiameterAndArea(x, y, diameter, shape);
+                i++;
             }
         }
 	}
@@ -166,51 +254,32 @@ public class DotSet {
      * @param x X position of the dot to be checked.
      * @param y Y position of the dot to be checked.
      * @param diameter Diameter of the dot to be checked.
+     * @param shape Shape of the dot to be checked.
      * @return true if the dot overlaps another dot in the dotSet.
      */
-    private boolean overLapsOther(int x, int y, double diameter) {
-        double radius = diameter / 2.0;
-        double centerX = x + radius;
-        double centerY = y + radius;
-
-        for (int i = 0; i < positions.size(); i++) {
-            Coordinate otherPosition = positions.get(i);
-            double otherDiameter = diameters.get(i);
-            double otherRadius = otherDiameter/2;
-            double otherCenterX = otherPosition.x + otherRadius;
-            double otherCenterY = otherPosition.y + otherRadius;
-
-            double dx = centerX - otherCenterX;
-            double dy = centerY - otherCenterY;
-            double distance = Math.hypot(dx, dy);
-            if (distance < radius + otherRadius + MIN_DISTANCE_BETWEEN_DOTS) {
-                return true;
-            }
-        }
-        return false;
+    private boolean overLapsOther(int x, int y, double diameter, Shape shape) {
+        return this.overlapKernel().overlaps(x, y, diameter, shape);
     }
     
-    private boolean overLapsOtherInOtherDotSet(int x, int y, int diameter,
+    private boolean overLapsOtherInOtherDotSet(int x, int y, int diameter, Shape shape,
             DotSet otherDotSet) {
-        double radius = diameter / 2.0;
-        double centerX = x + radius;
-        double centerY = y + radius;
-
-        for (int i = 0; i < otherDotSet.positions.size(); i++) {
-            Coordinate otherPosition = otherDotSet.positions.get(i);
-            double otherDiameter = otherDotSet.diameters.get(i);
-            double otherRadius = otherDiameter/2;
-            double otherCenterX = otherPosition.x + otherRadius;
-            double otherCenterY = otherPosition.y + otherRadius;
-
-            double dx = centerX - otherCenterX;
-            double dy = centerY - otherCenterY;
-            double distance = Math.hypot(dx, dy);
-            if (distance < radius + otherRadius + MIN_DISTANCE_BETWEEN_DOTS) {
-                return true;
+        return otherDotSet.overlapKernel().overlaps(x, y, diameter, shape);
+    }
+    
+    /**
+     * @return The overlap kernel of the dots as drawn, rebuilt if stale.
+     */
+    private OverlapKernel overlapKernel() {
+        if (this.overlapKernel == null) {
+            List<Double> drawnDiameters = this.getDiameters();
+            OverlapKernel kernel = new OverlapKernel(this.totalNumDots, MIN_DISTANCE_BETWEEN_DOTS);
+            for (int i = 0; i < this.positions.size(); i++) {
+                Coordinate position = this.positions.get(i);
+                kernel.add(position.x, position.y, drawnDiameters.get(i), position.shape);
             }
+            this.overlapKernel = kernel;
         }
-        return false;
+        return this.overlapKernel;
     }
     
     /**
@@ -219,15 +288,20 @@ public class DotSet {
      * 
      * @param x X coordinate of the dot
      * @param y Y coordinate of the dot
-     * @param diameter Diameter of the dot
+     * @param diameter Diameter of the dot as drawn
      */
     public void addDotAndDiameterAndArea(int x, int y, double diameter, Shape shape) {
+        double unscaledDiameter = diameter / this.scale;
         this.positions.add(new Coordinate(x, y, shape));
-        this.diameters.add(diameter);
+        this.diameters.add(unscaledDiameter);
         if (shape == Shape.CIRCLE) {
-            this.totalArea += Math.PI * Math.pow((diameter / 2), 2);
+            this.circleArea += Math.PI * Math.pow((unscaledDiameter / 2), 2);
         } else if (shape == Shape.SQUARE) {
-        	this.totalArea += Math.pow(diameter, 2);
+        	this.squareArea += Math.pow(unscaledDiameter, 2);
+        }
+        this.scaledDiameters = null;
+        if (this.overlapKernel != null) {
+            this.overlapKernel.add(x, y, diameter, shape);
         }
     }
     
@@ -242,15 +316,8 @@ public class DotSet {
      * @param otherTotalArea The area of the other dotSet to be matched.
      */
     public void matchArea(double otherTotalArea) {
-        
         double resizeRatio = Math.sqrt(otherTotalArea / this.getTotalArea());
-        
-        for (int diameterIndex = 0; diameterIndex < this.totalNumDots; diameterIndex++) {
-            double diameterToScale = this.diameters.get(diameterIndex);
-            double scaledDiameter = diameterToScale * resizeRatio;
-            this.diameters.set(diameterIndex, scaledDiameter);
-        }
-        this.recalcArea();
+        this.rescale(resizeRatio);
     }
     
     /**
@@ -262,25 +329,19 @@ public class DotSet {
      * @param otherTotalArea
      */
     public void inverseMatchArea(double otherTotalArea) {
-        
         double inverseResizeRatio = Math.sqrt(this.getTotalArea() / otherTotalArea);
-        
-        for (int diameterIndex = 0; diameterIndex < this.totalNumDots; diameterIndex++) {
-            double diameterToScale = this.diameters.get(diameterIndex);
-            double scaledDiameter = diameterToScale * inverseResizeRatio;
-            this.diameters.set(diameterIndex, scaledDiameter);
-        }
-        this.recalcArea();
+        this.rescale(inverseResizeRatio);
     }
 
     /**
-     * Recompute and set the total area of the dotset.
+     * Multiply every diameter by a factor. Only the scale changes;
+     * the diameters are rebuilt the next time they are read.
+     * @param factor Factor to multiply every diameter by.
      */
-    private void recalcArea() {
-        this.totalArea = 0;
-        for (Double diameter : this.diameters) {
-            totalArea += Math.PI * Math.pow((diameter / 2), 2);
-        }
+    private void rescale(double factor) {
+        this.scale *= factor;
+        this.scaledDiameters = null;
+        this.overlapKernel = null;
     }
     
     public ArrayList<Coordinate> getPositions() {
@@ -289,22 +350,79 @@ public class DotSet {
 
     public void setPositions(ArrayList<Coordinate> positions) {
         this.positions = positions;
+        this.overlapKernel = null;
     }
     
+    /**
+     * @return Summed area of the dots as drawn: pi * r^2 for circles, d^2 for squares.
+     */
     public double getTotalArea() {
-        return this.totalArea;
+        return this.scale * this.scale * (this.circleArea + this.squareArea);
+    }
+    
+    /**
+     * @return Summed area of the circles as drawn.
+     */
+    public double getCircleArea() {
+        return this.scale * this.scale * this.circleArea;
+    }
+    
+    /**
+     * @return Summed area of the squares as drawn.
+     */
+    public double getSquareArea() {
+        return this.scale * this.scale * this.squareArea;
+    }
+    
+    /**
+     * @return Factor the placed diameters are scaled by.
+     */
+    public double getScale() {
+        return this.scale;
     }
     
     public int getTotalNumDots() {
         return this.totalNumDots;
     }
 
-    public ArrayList<Double> getDiameters() {
-        return diameters;
+    /**
+     * @return Diameters of the dots as drawn, in the order of the positions.
+     * Read only; use setDiameters() instead.
+     */
+    public List<Double> getDiameters() {
+        if (this.scaledDiameters == null) {
+            if (this.scale == 1) {
+                this.scaledDiameters = Collections.unmodifiableList(this.diameters);
+            } else {
+                ArrayList<Double> scaled = new ArrayList<Double>(this.diameters.size());
+                for (Double diameter : this.diameters) {
+                    scaled.add(diameter * this.scale);
+                }
+                this.scaledDiameters = Collections.unmodifiableList(scaled);
+            }
+        }
+        return this.scaledDiameters;
     }
 
+    /**
+     * Replace the diameters, resetting the scale and recomputing the circle and square areas.
+     * @param diameters Diameters as drawn, in the order of the positions.
+     */
     public void setDiameters(ArrayList<Double> diameters) {
         this.diameters = diameters;
+        this.scale = 1;
+        this.scaledDiameters = null;
+        this.overlapKernel = null;
+        this.circleArea = 0;
+        this.squareArea = 0;
+        for (int i = 0; i < diameters.size(); i++) {
+            double diameter = diameters.get(i);
+            if (this.positions.get(i).shape == Shape.CIRCLE) {
+                this.circleArea += Math.PI * Math.pow((diameter / 2), 2);
+            } else if (this.positions.get(i).shape == Shape.SQUARE) {
+                this.squareArea += Math.pow(diameter, 2);
+            }
+        }
     }
 
     public void setTotalNumDots(int totalNumDots) {
@@ -327,5 +445,17 @@ public class DotSet {
 		this.totalNumSquares = totalNumSquares;
 	}
 
+    public int getPlacementAttempts() {
+        return placementAttempts;
+    }
+
+    public int getCanvasWidth() {
+        return canvasWidth;
+    }
+
+    public int getCanvasHeight() {
+        return canvasHeight;
+    }
+
 
 }
@@ -3,6 +3,7 @@ package model;
 import java.util.Random;
 
 import config.Config;
+import view.SetUp;
 
 /** 
  * Object to represent two sets of dots.
@@ -25,6 +26,10 @@ public class DotsPair {
         
     /** The control type of this pair */
     private ControlType controlType;
+    
+    /** Non-numerical magnitude features of each dot set. */
+    private MagnitudeMetrics metricsOne;
+    private MagnitudeMetrics metricsTwo;
 
     /** Boolean variables for control type modes. */
     private static boolean TOTAL_AREA_CONTROL_ON;
@@ -32,14 +37,91 @@ public class DotsPair {
     private static boolean INVERSE_AREAS_ONLY;
     private static boolean AVERAGE_RADIUS_CONTROL;
     
+    /** True if both dot sets should be placed together by a JointPlacer. */
+    private static boolean JOINT_PLACEMENT_ON;
+    
+    /** Number of candidate dots tried while placing both dot sets. */
+    private int placementAttempts;
+    
     /** Random number generator. */
     private Random randomGenerator = new Random(); 
     
     public DotsPair(int numCirclesOne, int numSquaresOne, int numCirclesTwo, int numSquaresTwo,
     		ControlType controlType) {
-    	this.dotSetOne = new DotSet(numCirclesOne, numSquaresOne);
-    	this.dotSetTwo = new DotSet(numCirclesTwo, numSquaresTwo, this.dotSetOne);
-    	this.controlType = controlType;
+    	this(numCirclesOne, numSquaresOne, numCirclesTwo, numSquaresTwo, controlType,
+    	        SetUp.DOTS_CANVAS_WIDTH, SetUp.DOTS_CANVAS_HEIGHT);
+    }
+    
+    /**
+     * Constructor for a pair placed in a canvas of the given size.
+     */
+    public DotsPair(int numCirclesOne, int numSquaresOne, int numCirclesTwo, int numSquaresTwo,
+            ControlType controlType, int canvasWidth, int canvasHeight) {
+        this(numCirclesOne, numSquaresOne, numCirclesTwo, numSquaresTwo, controlType,
+                canvasWidth, canvasHeight, new Random());
+    }
+    
+    /**
+     * Constructor for a pair placed in a canvas of the given size, with every
+     * position and diameter drawn from the given random number generator.
+     * The same seed gives the same pair.
+     */
+    public DotsPair(int numCirclesOne, int numSquaresOne, int numCirclesTwo, int numSquaresTwo,
+            ControlType controlType, int canvasWidth, int canvasHeight, Random randomGenerator) {
+        this.loadConfig();
+        this.randomGenerator = randomGenerator;
+        if (JOINT_PLACEMENT_ON) {
+            JointPlacer placer = new JointPlacer(canvasWidth, canvasHeight, this.randomGenerator);
+            DotSet[] dotSets = placer.place(numCirclesOne, numSquaresOne, numCirclesTwo, numSquaresTwo);
+            this.dotSetOne = dotSets[0];
+            this.dotSetTwo = dotSets[1];
+            this.placementAttempts = placer.getAttempts();
+        } else {
+            this.dotSetOne = new DotSet(numCirclesOne, numSquaresOne, canvasWidth, canvasHeight,
+                    this.randomGenerator);
+            this.dotSetTwo = new DotSet(numCirclesTwo, numSquaresTwo, this.dotSetOne, this.randomGenerator);
+            this.placementAttempts = this.dotSetOne.getPlacementAttempts() 
+                    + this.dotSetTwo.getPlacementAttempts();
+        }
+        this.controlType = controlType;
+        this.updateMetrics();
+    }
+    
+    /**
+     * Constructor for a pair of dot sets that have already been placed.
+     */
+    DotsPair(DotSet dotSetOne, DotSet dotSetTwo, ControlType controlType) {
+        this.dotSetOne = dotSetOne;
+        this.dotSetTwo = dotSetTwo;
+        this.controlType = controlType;
+        this.updateMetrics();
+    }
+    
+    /**
+     * @return A copy of this pair that can be modified independently.
+     */
+    DotsPair copy() {
+        DotsPair copy = new DotsPair();
+        copy.dotSetOne = this.dotSetOne.copy();
+        copy.dotSetTwo = this.dotSetTwo.copy();
+        copy.controlType = this.controlType;
+        copy.placementAttempts = this.placementAttempts;
+        copy.metricsOne = this.metricsOne;
+        copy.metricsTwo = this.metricsTwo;
+        return copy;
+    }
+    
+    private DotsPair() {
+        
+    }
+    
+    /**
+     * Recompute the magnitude metrics of both dot sets. 
+     * Must be called whenever the dots are moved or resized.
+     */
+    public void updateMetrics() {
+        this.metricsOne = MagnitudeMetrics.of(this.dotSetOne);
+        this.metricsTwo = MagnitudeMetrics.of(this.dotSetTwo);
     }
     
     /** Load configuration settings. */
@@ -50,6 +132,7 @@ public class DotsPair {
         EQUAL_AREAS_ONLY = Config.getPropertyBoolean("equal.areas.only");
         INVERSE_AREAS_ONLY = Config.getPropertyBoolean("inverse.areas.only");
         AVERAGE_RADIUS_CONTROL = Config.getPropertyBoolean("average.radius.control");
+        JOINT_PLACEMENT_ON = Config.getPropertyBoolean("joint.placement.on");
     }
     
     /**
@@ -141,6 +224,54 @@ public class DotsPair {
         this.dotSetTwo = dotSetTwo;
     }
 
+    /**
+     * @return Number of candidate dots tried while placing both dot sets,
+     * or 0 if the pair was not placed by this object.
+     */
+    public int getPlacementAttempts() {
+        return this.placementAttempts;
+    }
+
+    public MagnitudeMetrics getMetricsOne() {
+        return this.metricsOne;
+    }
+
+    public MagnitudeMetrics getMetricsTwo() {
+        return this.metricsTwo;
+    }
+
+    /**
+     * Hash of everything that is drawn of the pair: the control type and the
+     * position, shape and diameter of every dot of both sets. Two pairs with the
+     * same fingerprint look the same; used to check a replayed session.
+     * @return 64-bit FNV-1a hash of the pair.
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, this.controlType == null ? -1 : this.controlType.ordinal());
+        for (DotSet dotSet : new DotSet[] {this.dotSetOne, this.dotSetTwo}) {
+            hash = fnv(hash, dotSet.getTotalNumDots());
+            for (int i = 0; i < dotSet.getTotalNumDots(); i++) {
+                Coordinate position = dotSet.getPositions().get(i);
+                hash = fnv(hash, position.x);
+                hash = fnv(hash, position.y);
+                hash = fnv(hash, position.shape.ordinal());
+                long bits = Double.doubleToLongBits(dotSet.getDiameters().get(i));
+                hash = fnv(hash, (int) bits);
+                hash = fnv(hash, (int) (bits >>> 32));
+            }
+        }
+        return hash;
+    }
+
+    private static long fnv(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash ^= (value >>> shift) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     public ControlType getControlType() {
         return controlType;
     }
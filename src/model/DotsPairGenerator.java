@@ -1,7 +1,14 @@
 package model;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Random;
+
+import logging.AsyncLog;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import view.SetUp;
+import config.Config;
 /**
  * @author Tony Jiang
  * 6-25-2015
@@ -24,6 +31,23 @@ import java.util.Random;
  * Whenever, a block is complete (based on number of rounds complete)
  * the ratiosBucket is immediately emptied.
  * 
+ * If stimulus.bank.on is set, pairs are drawn from a StimulusBank keyed by
+ * their numbers of dots, control type and canvas, which is filled on a
+ * background thread, instead of placing every pair's dots live.
+ * 
+ * Alternatively the whole session can be compiled up front by ScheduleCompiler
+ * and handed over with useSchedule(); the generator then just indexes the
+ * TrialSchedule for the ratio, number of dots and control type of each pair.
+ * 
+ * A seed can be given for the next pair with seedNextPair(). That pair is then
+ * placed live from the seed, even if there is a bank, so that a session that is
+ * resumed from its journal is shown exactly the pairs it would have been shown.
+ * 
+ * If adaptive.ratio.on is set, the ratiosBucket is not used. Instead the
+ * next ratio is picked by a QuestRatioSelector from the subject's responses
+ * so far, which are passed in through recordResponse(). The posterior is
+ * reset whenever the block changes.
+ * 
  * A "DotsPair" in this assessment is the two sets of dots,
  * each of a different color, that is shown in the same space
  * in one trial.
@@ -44,9 +68,67 @@ public class DotsPairGenerator {
     public static final int SOME_OF_THE_DOTS_BLOCK = 1;
     public static final int EACH_DOT_BLOCK = 2;
     public static final int EVERY_DOT_BLOCK = 3;    
+    /** Number of blocks in a session. */
+    public static final int NUM_BLOCKS = 4;
+    
+    /** The ratios every block draws from. Not to be modified. */
+    static final Ratio[] BLOCK_RATIOS = {
+        new Ratio(1,2),
+        new Ratio(1,3),
+        new Ratio(3,1),
+        new Ratio(2,1),
+        new Ratio(3,2),
+        new Ratio(2,3),
+    };
+    
+    /** True if ratios should be picked adaptively instead of from the ratiosBucket. */
+    private static boolean ADAPTIVE_RATIO_ON;
+    
+    /** True if pairs should be drawn from a StimulusBank. */
+    private static boolean STIMULUS_BANK_ON;
+    /** Number of different pairs the bank keeps for the same parameters. */
+    private static int STIMULUS_BANK_VARIANTS;
+    /** Size of the bank's memory tier in kilobytes. */
+    private static int STIMULUS_BANK_MEMORY_KB;
+    /** Size of the bank's disk tier in kilobytes. */
+    private static int STIMULUS_BANK_DISK_KB;
+    /** True if the bank should run a CongruencySolver on every pair it places. */
+    private static boolean CONGRUENCY_SOLVER_ON;
+    /** Time the solver may spend per pair in milliseconds. */
+    private static int CONGRUENCY_SOLVER_BUDGET_MS;
+    /** File backing the bank's disk tier. */
+    private static final String STIMULUS_BANK_FILE = "stimulus_bank" + File.separator + "stimuli.dat";
+    
+    /** Diameter range of the dots, part of the bank's keys. */
+    private static int MIN_DIAMETER;
+    private static int MAX_DIAMETER;
+    
+    private static final AsyncLog log = AsyncLog.get("generator");
+    
+    /** Time taken by getNewModePair(). */
+    private static final Histogram GENERATION_LATENCY = MetricsRegistry.getDefault().histogram(
+            "pair.generation.ms", "Time to generate a pair in milliseconds", 0.001);
+    /** Candidates rejected while placing a pair, per dot placed. */
+    private static final Histogram REJECTIONS_PER_DOT = MetricsRegistry.getDefault().histogram(
+            "placement.rejections.per.dot", "Candidate dots rejected per dot placed, per pair", 0.01);
     
     /** Random number generator. */
     Random randomGenerator = new Random();
+    
+    /** Size of the canvas the pairs are placed in. */
+    private int canvasWidth;
+    private int canvasHeight;
+    
+    /** Bank to draw pairs from when STIMULUS_BANK_ON. */
+    private StimulusBank stimulusBank;
+    /** Thread filling the bank, or null if there is none. */
+    private Thread prefillThread;
+    
+    /** Time in milliseconds close() waits for the bank's prefill to stop. */
+    static final int PREFILL_STOP_TIMEOUT_MS = 1000;
+    
+    /** Picks the next ratio when ADAPTIVE_RATIO_ON. */
+    private QuestRatioSelector questSelector;
 
     /** The most recent DotsPair produced by DotsPairGenerator. */
     private DotsPair dotsPair; 
@@ -71,14 +153,124 @@ public class DotsPairGenerator {
     /** True if the last correct choice was the cluster with bigger individual dots. */
     private boolean lastWasBig;
     
+    /** Precompiled session, or null if ratios and control types are picked at runtime. */
+    private TrialSchedule schedule;
+    /** Position of the next trial in the schedule. */
+    private int schedulePosition;
+    /** Position of the current block in the session. */
+    private int blockIndex;
+    
+    /** True if the next pair should be placed from nextPairSeed. */
+    private boolean nextPairSeeded;
+    private long nextPairSeed;
+    
     /**
      * Constructor. 
      */
     public DotsPairGenerator() {
+        this(SetUp.DOTS_CANVAS_WIDTH, SetUp.DOTS_CANVAS_HEIGHT);
+    }
+    
+    /**
+     * Constructor for pairs to be placed in a canvas of the given size.
+     */
+    public DotsPairGenerator(int canvasWidth, int canvasHeight) {
+        this(canvasWidth, canvasHeight, true);
+    }
+    
+    /**
+     * Constructor for pairs to be placed in a canvas of the given size.
+     * @param useStimulusBank False to place every pair live even if stimulus.bank.on,
+     * e.g. when every pair is seeded, so that no bank file or prefill thread is opened.
+     */
+    public DotsPairGenerator(int canvasWidth, int canvasHeight, boolean useStimulusBank) {
+        loadConfig();
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
         this.setLastWasBig(false);
         this.blockSet = new ArrayList<Integer>();
         this.ratiosBucket = new ArrayList<Ratio>();
         this.fillBlockSet();
+        if (ADAPTIVE_RATIO_ON) {
+            this.questSelector = new QuestRatioSelector(randomGenerator);
+        }
+        if (STIMULUS_BANK_ON && useStimulusBank) {
+            CongruencySolver solver = null;
+            if (CONGRUENCY_SOLVER_ON) {
+                solver = new CongruencySolver(CONGRUENCY_SOLVER_BUDGET_MS, new Random());
+            }
+            this.stimulusBank = new StimulusBank(STIMULUS_BANK_VARIANTS, STIMULUS_BANK_MEMORY_KB * 1024L, 
+                    new File(STIMULUS_BANK_FILE), STIMULUS_BANK_DISK_KB * 1024, solver);
+            this.prefillStimulusBank();
+        }
+    }
+    
+    /** Load configuration settings. */
+    private void loadConfig() {
+        new Config();
+        ADAPTIVE_RATIO_ON = Config.getPropertyBoolean("adaptive.ratio.on");
+        STIMULUS_BANK_ON = Config.getPropertyBoolean("stimulus.bank.on");
+        STIMULUS_BANK_VARIANTS = Config.getPropertyInt("stimulus.bank.variants");
+        STIMULUS_BANK_MEMORY_KB = Config.getPropertyInt("stimulus.bank.memory.kb");
+        STIMULUS_BANK_DISK_KB = Config.getPropertyInt("stimulus.bank.disk.kb");
+        CONGRUENCY_SOLVER_ON = Config.getPropertyBoolean("congruency.solver.on");
+        CONGRUENCY_SOLVER_BUDGET_MS = Config.getPropertyInt("congruency.solver.budget.ms");
+        this.reloadConfig();
+    }
+    
+    /**
+     * Read again the settings that may change between blocks. The modes chosen
+     * at construction, such as the stimulus bank and adaptive ratios, are kept.
+     */
+    public void reloadConfig() {
+        MIN_DIAMETER = Config.getPropertyInt("min.diameter");
+        MAX_DIAMETER = Config.getPropertyInt("max.diameter");
+    }
+    
+    /**
+     * Fill the stimulus bank on a background thread with every pair the block
+     * ratios can produce, so that draws during the session are from the bank.
+     */
+    private void prefillStimulusBank() {
+        final ArrayList<StimulusKey> keys = new ArrayList<StimulusKey>();
+        ControlType[] controlTypes = {ControlType.EQUAL_AREAS, ControlType.INVERSE_AREAS};
+        for (Ratio ratio : BLOCK_RATIOS) {
+            for (int randMax = 0; randMax < maxExtraMultiples(ratio); randMax++) {
+                int[] counts = dotCounts(ratio, ratio, randMax);
+                for (ControlType controlType : controlTypes) {
+                    keys.add(this.stimulusKey(counts[0], counts[1], counts[2], counts[3], controlType));
+                }
+            }
+        }
+        final StimulusBank bank = this.stimulusBank;
+        this.prefillThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bank.prefill(keys);
+            }
+        }, "stimulus-bank-prefill");
+        this.prefillThread.setDaemon(true);
+        this.prefillThread.start();
+    }
+    
+    /**
+     * Stop filling the stimulus bank and close its file. Call once the
+     * generator is no longer used, so that the next generator opens the file
+     * alone; pairs are still drawn from the memory tier.
+     */
+    public void close() {
+        if (this.prefillThread != null) {
+            this.prefillThread.interrupt();
+            try {
+                this.prefillThread.join(PREFILL_STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.prefillThread = null;
+        }
+        if (this.stimulusBank != null) {
+            this.stimulusBank.close();
+        }
     }
     
     /**
@@ -93,32 +285,123 @@ public class DotsPairGenerator {
         int size = tempSet.size();
         for (int i = 0; i < size; i++) {
             this.blockSet.add((Integer) tempSet.remove(randomGenerator.nextInt(tempSet.size())));
-            System.out.println(this.blockSet.toString());
+            log.info("Block set", "blocks", this.blockSet.toString());
         }
         this.blockMode = this.blockSet.get(0);
     }
     
+    /**
+     * Draw every following pair from a precompiled schedule instead of
+     * picking ratios and control types at runtime. Replaces the block set.
+     * @param schedule The compiled session.
+     */
+    public void useSchedule(TrialSchedule schedule) {
+        this.schedule = schedule;
+        this.schedulePosition = 0;
+        this.blockIndex = 0;
+        this.blockSet.clear();
+        for (int b = 0; b < schedule.getNumBlocks(); b++) {
+            this.blockSet.add(schedule.getBlockMode(b));
+        }
+        this.blockMode = this.blockSet.get(0);
+    }
+    
+    /**
+     * Move a scheduled session to where it was when it was interrupted.
+     * Must be called right after useSchedule().
+     * @param blockIndex Position of the block in the session.
+     * @param schedulePosition Position of the next trial in the schedule.
+     */
+    public void restore(int blockIndex, int schedulePosition) {
+        for (int b = 0; b < blockIndex; b++) {
+            this.changeBlock();
+        }
+        this.schedulePosition = schedulePosition;
+    }
+    
+    /**
+     * Place the next pair from the given seed instead of the bank or a fresh
+     * random number generator.
+     * @param seed Seed of the positions and diameters of the next pair.
+     */
+    public void seedNextPair(long seed) {
+        this.nextPairSeeded = true;
+        this.nextPairSeed = seed;
+    }
+    
     /** 
      * Get a new pair based on current mode. 
      */
     public void getNewModePair() {
-        Ratio ratioCircles = this.decideRatio();
-        Ratio ratioSquares = ratioCircles;
-        this.getNewPair(ratioCircles, ratioSquares);
+        long start = System.nanoTime();
+        if (this.schedule != null) {
+            this.getScheduledPair();
+        } else {
+            Ratio ratioCircles = this.decideRatio();
+            Ratio ratioSquares = ratioCircles;
+            this.getNewPair(ratioCircles, ratioSquares);
+        }
+        GENERATION_LATENCY.record((System.nanoTime() - start) / 1000000.0);
     }
     
     /**
-     * Empty the ratio bucket. 
+     * Get the next pair of the schedule. Should a block run over its scheduled
+     * trials, the block is repeated from its start.
+     */
+    private void getScheduledPair() {
+        int segmentStart;
+        int segmentEnd;
+        if (this.schedulePosition < this.schedule.getNumPracticeTrials()) {
+            segmentStart = 0;
+            segmentEnd = this.schedule.getNumPracticeTrials();
+        } else {
+            int block = Math.min(this.blockIndex, this.schedule.getNumBlocks() - 1);
+            segmentStart = this.schedule.getBlockStart(block);
+            segmentEnd = this.schedule.getBlockEnd(block);
+        }
+        if (this.schedulePosition >= segmentEnd) {
+            this.schedulePosition = segmentStart;
+        }
+        int trial = this.schedule.get(this.schedulePosition++);
+        Ratio ratio = TrialSchedule.getRatio(trial);
+        this.getNewPair(ratio, ratio, TrialSchedule.getExtraMultiples(trial),
+                TrialSchedule.getControlType(trial));
+    }
+    
+    /**
+     * Empty the ratio bucket. In adaptive mode, discard the responses so far.
+     * With a schedule, skip ahead to the first trial of the current block.
      */
     public void clearRatios() {
         this.ratiosBucket.clear();
+        if (ADAPTIVE_RATIO_ON) {
+            this.questSelector.reset();
+        }
+        if (this.schedule != null && this.blockIndex < this.schedule.getNumBlocks()) {
+            this.schedulePosition = this.schedule.getBlockStart(this.blockIndex);
+        }
+    }
+    
+    /**
+     * Inform the generator of the subject's response to the most recent pair.
+     * Only has an effect in adaptive mode.
+     * @param correct Whether the subject answered correctly.
+     */
+    public void recordResponse(boolean correct) {
+        if (ADAPTIVE_RATIO_ON) {
+            this.questSelector.recordResponse(correct);
+        }
     }
     
     /**
      * Pick a ratio at random from the ratiosBucket. If the ratiosBucket is empty, then refill it.
+     * In adaptive mode, let the QuestRatioSelector pick the ratio instead.
      * @return Ratio
      */
     private Ratio decideRatio() {
+        if (ADAPTIVE_RATIO_ON) {
+            return this.questSelector.nextRatio(this.blockMode);
+        }
         if (this.ratiosBucket.isEmpty()) {
             fillRatiosBucket();
         }
@@ -135,15 +418,12 @@ public class DotsPairGenerator {
         case SOME_DOTS_BLOCK:
         case EVERY_DOT_BLOCK:
         case EACH_DOT_BLOCK:
-            this.ratiosBucket.add(new Ratio(1,2));
-            this.ratiosBucket.add(new Ratio(1,3));
-            this.ratiosBucket.add(new Ratio(3,1));
-            this.ratiosBucket.add(new Ratio(2,1));
-            this.ratiosBucket.add(new Ratio(3,2));
-            this.ratiosBucket.add(new Ratio(2,3));
+            for (Ratio ratio : BLOCK_RATIOS) {
+                this.ratiosBucket.add(ratio);
+            }
             break;
         }
-        System.out.println(this.ratiosBucket.toString());
+        log.info("Ratios bucket", "ratios", this.ratiosBucket.toString());
     }
     
     /**
@@ -152,6 +432,36 @@ public class DotsPairGenerator {
      * @param ratio
      */
     private void getNewPair(Ratio ratioCircles, Ratio ratioSquares) {
+        int randMax = randomGenerator.nextInt(maxExtraMultiples(ratioCircles));
+        this.getNewPair(ratioCircles, ratioSquares, randMax, null);
+    }
+    
+    /**
+     * Get a new pair with a specified ratio of numbers of dots, scaled up to at least 
+     * MIN_DOTS and then by randMax extra multiples of the ratio.
+     * @param randMax Number of extra multiples, less than maxExtraMultiples(ratioCircles).
+     * @param controlType Control type of the pair, or null to generate one.
+     */
+    private void getNewPair(Ratio ratioCircles, Ratio ratioSquares, int randMax, ControlType controlType) {
+        int[] counts = dotCounts(ratioCircles, ratioSquares, randMax);
+        int numCirclesOne = counts[0];
+        int numCirclesTwo = counts[1];
+        int numSquaresOne = counts[2];
+        int numSquaresTwo = counts[3];
+        
+        if (controlType == null) {
+            this.checkAndSet(numCirclesOne, numCirclesTwo, numSquaresOne, numSquaresTwo);
+        } else {
+            this.setDotsPair(this.createPair(numCirclesOne, numCirclesTwo,
+                    numSquaresOne, numSquaresTwo, controlType));
+        }
+    }
+    
+    /**
+     * The numbers of dots of a pair with the given ratios and extra multiples.
+     * @return {numCirclesOne, numCirclesTwo, numSquaresOne, numSquaresTwo}
+     */
+    private static int[] dotCounts(Ratio ratioCircles, Ratio ratioSquares, int randMax) {
         int ratioCirclesNumOne = ratioCircles.getNumOne();
         int ratioCirclesNumTwo = ratioCircles.getNumTwo();
         int numCirclesOne = ratioCircles.getNumOne();
@@ -160,11 +470,6 @@ public class DotsPairGenerator {
             numCirclesOne += ratioCirclesNumOne;
             numCirclesTwo += ratioCirclesNumTwo;
         }
-        int max = (MAX_DOTS - (numCirclesOne + numCirclesTwo)) / (ratioCirclesNumOne + ratioCirclesNumTwo);
-        if (max <= 0) {
-        	max = 1;
-        }
-        int randMax = randomGenerator.nextInt(max);
         for (int i = 0; i < randMax; i++) {
             numCirclesOne += ratioCirclesNumOne;
             numCirclesTwo += ratioCirclesNumTwo;
@@ -174,21 +479,79 @@ public class DotsPairGenerator {
         int ratioSquaresNumTwo = ratioSquares.getNumTwo();
         int numSquaresOne = ratioCircles.getNumOne();
         int numSquaresTwo = ratioCircles.getNumTwo();
-        while (numCirclesOne + numCirclesTwo < MIN_DOTS) {
-            numCirclesOne += ratioCirclesNumOne;
-            numCirclesTwo += ratioCirclesNumTwo;
-        }
-        int maxT = (MAX_DOTS - (numCirclesOne + numCirclesTwo)) / (ratioCirclesNumOne + ratioCirclesNumTwo);
-        if (max <= 0) {
-        	max = 1;
-        }
-        int randMaxT = randomGenerator.nextInt(max);
         for (int i = 0; i < randMax; i++) {
             numSquaresOne += ratioSquaresNumOne;
             numSquaresTwo += ratioSquaresNumTwo;
         }
-        
-        this.checkAndSet(numCirclesOne, numCirclesTwo, numSquaresOne, numSquaresTwo);
+        return new int[] {numCirclesOne, numCirclesTwo, numSquaresOne, numSquaresTwo};
+    }
+    
+    /**
+     * Create a pair, drawing it from the stimulus bank if there is one.
+     * Arguments are the counts of dotCounts(), in its order. As checkAndSet()
+     * always has, they are handed to the DotsPair constructor in that order,
+     * so set one gets numCirclesOne circles and numCirclesTwo squares, and set
+     * two numSquaresOne circles and numSquaresTwo squares.
+     */
+    private DotsPair createPair(int numCirclesOne, int numCirclesTwo, int numSquaresOne, int numSquaresTwo,
+            ControlType controlType) {
+        if (this.nextPairSeeded) {
+            this.nextPairSeeded = false;
+            return recordRejections(new DotsPair(numCirclesOne, numCirclesTwo, numSquaresOne, numSquaresTwo,
+                    controlType, this.canvasWidth, this.canvasHeight, new Random(this.nextPairSeed)));
+        }
+        if (this.stimulusBank != null) {
+            return this.stimulusBank.draw(this.stimulusKey(numCirclesOne, numCirclesTwo, 
+                    numSquaresOne, numSquaresTwo, controlType), randomGenerator);
+        }
+        return recordRejections(new DotsPair(numCirclesOne, numCirclesTwo, numSquaresOne, numSquaresTwo,
+                controlType, this.canvasWidth, this.canvasHeight));
+    }
+    
+    /**
+     * Record how many candidates were rejected per dot while placing a pair live.
+     * @return The pair.
+     */
+    private static DotsPair recordRejections(DotsPair pair) {
+        int numDots = pair.getDotSetOne().getTotalNumDots() + pair.getDotSetTwo().getTotalNumDots();
+        if (numDots > 0) {
+            REJECTIONS_PER_DOT.record((pair.getPlacementAttempts() - numDots) / (double) numDots);
+        }
+        return pair;
+    }
+    
+    /**
+     * The key of the pair createPair() places for the given counts. Its
+     * fields count the dots of each set of that pair.
+     * Arguments are the counts of dotCounts(), in its order.
+     */
+    private StimulusKey stimulusKey(int numCirclesOne, int numCirclesTwo, int numSquaresOne, int numSquaresTwo,
+            ControlType controlType) {
+        int setOneCircles = numCirclesOne;
+        int setOneSquares = numCirclesTwo;
+        int setTwoCircles = numSquaresOne;
+        int setTwoSquares = numSquaresTwo;
+        return new StimulusKey(setOneCircles, setOneSquares, setTwoCircles, setTwoSquares, controlType, 
+                this.canvasWidth, this.canvasHeight, MIN_DIAMETER, MAX_DIAMETER);
+    }
+    
+    /**
+     * Number of extra multiples of a ratio that still keep the pair within MAX_DOTS,
+     * once it has been scaled up to MIN_DOTS. Always at least 1.
+     * @param ratio
+     * @return Exclusive upper bound on the extra multiples of the ratio.
+     */
+    static int maxExtraMultiples(Ratio ratio) {
+        int ratioSum = ratio.getNumOne() + ratio.getNumTwo();
+        int minTotal = ratioSum;
+        while (minTotal < MIN_DOTS) {
+            minTotal += ratioSum;
+        }
+        int max = (MAX_DOTS - minTotal) / ratioSum;
+        if (max <= 0) {
+            max = 1;
+        }
+        return max;
     }
     
     /**
@@ -198,7 +561,7 @@ public class DotsPairGenerator {
      */
     private void checkAndSet(int numCirclesOne, int numCirclesTwo, int numSquaresOne, int numSquaresTwo) {  
         ControlType controlTypeCandidate = generateAreaControlType(numCirclesOne, numCirclesTwo);
-        this.setDotsPair(new DotsPair(numCirclesOne, numCirclesTwo,
+        this.setDotsPair(this.createPair(numCirclesOne, numCirclesTwo,
         		numSquaresOne, numSquaresTwo, controlTypeCandidate));
     }
     
@@ -293,11 +656,51 @@ public class DotsPairGenerator {
      * Change to the next block. Clear the ratiosBucket.
      */
     public void changeBlock() {
+        this.blockIndex++;
         this.blockSet.remove(0);
         if (!this.blockSet.isEmpty()) {
             this.blockMode = this.blockSet.get(0);
         }
-        this.ratiosBucket.clear();
+        this.clearRatios();
+    }
+
+    public StimulusBank getStimulusBank() {
+        return this.stimulusBank;
+    }
+    
+    public boolean hasSchedule() {
+        return this.schedule != null;
+    }
+    
+    public int getCanvasWidth() {
+        return this.canvasWidth;
+    }
+    
+    public int getCanvasHeight() {
+        return this.canvasHeight;
+    }
+    
+    public int getBlockIndex() {
+        return this.blockIndex;
+    }
+    
+    public int getSchedulePosition() {
+        return this.schedulePosition;
+    }
+    
+    /**
+     * @return Index of the scheduled color pair of the current block.
+     */
+    public int getScheduledColorPairIndex() {
+        int block = Math.min(this.blockIndex, this.schedule.getNumBlocks() - 1);
+        return TrialSchedule.getColorPairIndex(this.schedule.get(this.schedule.getBlockStart(block)));
+    }
+    
+    /**
+     * @return Whether the schedule has F for "Yes".
+     */
+    public boolean isScheduledFforTrue() {
+        return TrialSchedule.isFforTrue(this.schedule.get(0));
     }
 
     public DotsPair getDotsPair() {
@@ -54,9 +54,17 @@ public final class GameLogic {
      * @return correct True if correct, false otherwise.
      */
     public static boolean checkAnswerCorrect(KeyEvent e, boolean yesCorrect, boolean FforTrue) {
+        return checkAnswerCorrect(e.getCode() == KeyCode.F, yesCorrect, FforTrue);
+    }
+    /**
+     * Checks whether subject's answer is correct or incorrect.
+     * @param pressedF True if the subject pressed F, false if J.
+     * @return correct True if correct, false otherwise.
+     */
+    public static boolean checkAnswerCorrect(boolean pressedF, boolean yesCorrect, boolean FforTrue) {
         boolean correct;
-        if ((yesCorrect && e.getCode() == KeyCode.F)
-                || !yesCorrect && e.getCode() == KeyCode.J) {
+        if ((yesCorrect && pressedF)
+                || !yesCorrect && !pressedF) {
             correct = true;
         } else {  
             correct = false;     
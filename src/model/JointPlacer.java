@@ -0,0 +1,261 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import model.Coordinate.Shape;
+import config.Config;
+
+/**
+ * Places the dots of both DotSets of a DotsPair in a single pass.
+ *
+ * Classes Related To:
+ *  -DotsPair.java
+ *      -Uses a JointPlacer instead of placing dot set one and then dot set two
+ *      around it when joint.placement.on.
+ *  -DotSet.java
+ *      -The placed dots are handed to DotSets that have already been placed.
+ *
+ * Placing one set fully before the other makes the second set's rejection rate
+ * climb as the canvas fills, and gives the first set the pick of the space.
+ * Instead, the two sets take turns so that both are always about equally far
+ * along, and every dot is checked against a shared uniform grid with cells as
+ * wide as the largest distance between the centers of two dots that can collide,
+ * so the broad phase only visits the 3x3 cells around the candidate. Collision
+ * then makes the exact, shape-aware test.
+ *
+ * The canvas is split into REGIONS_PER_SIDE x REGIONS_PER_SIDE regions. Each dot
+ * is tried in the region where its set has the fewest dots so far, so each color
+ * is spread evenly over the canvas. After MAX_REGION_ATTEMPTS misses in that
+ * region, the dot is tried anywhere on the canvas.
+ */
+public class JointPlacer {
+
+    /** Number of balancing regions along each side of the canvas. */
+    static final int REGIONS_PER_SIDE = 2;
+
+    /** Misses in the chosen region before trying the whole canvas. */
+    static final int MAX_REGION_ATTEMPTS = 50;
+
+    static int MIN_DIAMETER;
+    static int MAX_DIAMETER;
+
+    private final int canvasWidth;
+    private final int canvasHeight;
+    private final Random randomGenerator;
+
+    /** Geometry of every dot placed, in placement order. */
+    private double[] centerX;
+    private double[] centerY;
+    private double[] radius;
+    private Shape[] shapes;
+    private int numPlaced;
+
+    /** Shared grid: head of the list of dots in each cell, next dot in the same cell. */
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellHead;
+    private int[] nextInCell;
+
+    /** Number of dots of each set in each region. */
+    private final int[][] regionCounts;
+
+    /** Candidates tried in the last call to place(). */
+    private int attempts;
+
+    /**
+     * @param canvasWidth Width of the canvas both sets are placed in.
+     * @param canvasHeight Height of the canvas both sets are placed in.
+     * @param randomGenerator Source of the positions and diameters.
+     */
+    public JointPlacer(int canvasWidth, int canvasHeight, Random randomGenerator) {
+        loadConfig();
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.randomGenerator = randomGenerator;
+        this.cellSize = MAX_DIAMETER * Collision.maxBoundingFactor() + DotSet.MIN_DISTANCE_BETWEEN_DOTS;
+        this.columns = (int) (canvasWidth / this.cellSize) + 1;
+        this.rows = (int) (canvasHeight / this.cellSize) + 1;
+        this.cellHead = new int[this.columns * this.rows];
+        this.regionCounts = new int[2][REGIONS_PER_SIDE * REGIONS_PER_SIDE];
+    }
+
+    private void loadConfig() {
+        new Config();
+        MIN_DIAMETER = Config.getPropertyInt("min.diameter");
+        MAX_DIAMETER = Config.getPropertyInt("max.diameter");
+    }
+
+    /**
+     * Place both sets. Within each set, circles come before squares as in DotSet.
+     * @return {dot set one, dot set two}
+     */
+    public DotSet[] place(int numCirclesOne, int numSquaresOne, int numCirclesTwo, int numSquaresTwo) {
+        int[] numCircles = {numCirclesOne, numCirclesTwo};
+        int[] numDots = {numCirclesOne + numSquaresOne, numCirclesTwo + numSquaresTwo};
+        int total = numDots[0] + numDots[1];
+        this.reset(total);
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayList<Coordinate>[] positions = new ArrayList[] {
+                new ArrayList<Coordinate>(numDots[0]), new ArrayList<Coordinate>(numDots[1])};
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayList<Double>[] diameters = new ArrayList[] {
+                new ArrayList<Double>(numDots[0]), new ArrayList<Double>(numDots[1])};
+
+        for (int n = 0; n < total; n++) {
+            int set = this.nextSet(positions[0].size(), numDots[0], positions[1].size(), numDots[1]);
+            int diameter = randomGenerator.nextInt(MAX_DIAMETER - MIN_DIAMETER) + MIN_DIAMETER;
+            Shape shape = positions[set].size() < numCircles[set] ? Shape.CIRCLE : Shape.SQUARE;
+            int region = this.emptiestRegion(set);
+            int misses = 0;
+            int x;
+            int y;
+            while (true) {
+                this.attempts++;
+                if (misses < MAX_REGION_ATTEMPTS) {
+                    x = this.randomInRegion(region % REGIONS_PER_SIDE, this.canvasWidth);
+                    y = this.randomInRegion(region / REGIONS_PER_SIDE, this.canvasHeight);
+                } else {
+                    x = randomGenerator.nextInt(this.canvasWidth - MAX_DIAMETER);
+                    y = randomGenerator.nextInt(this.canvasHeight - MAX_DIAMETER);
+                }
+                if (!this.overlaps(x, y, diameter, shape)) {
+                    break;
+                }
+                misses++;
+            }
+            this.add(x, y, diameter, shape);
+            this.regionCounts[set][this.regionOf(x + diameter / 2.0, y + diameter / 2.0)]++;
+            positions[set].add(new Coordinate(x, y, shape));
+            diameters[set].add((double) diameter);
+        }
+
+        return new DotSet[] {
+                new DotSet(numCirclesOne, numSquaresOne, this.canvasWidth, this.canvasHeight,
+                        positions[0], diameters[0]),
+                new DotSet(numCirclesTwo, numSquaresTwo, this.canvasWidth, this.canvasHeight,
+                        positions[1], diameters[1])};
+    }
+
+    /**
+     * The set that is least far along, so both finish together.
+     * Ties go to the set with more dots left.
+     */
+    private int nextSet(int placedOne, int totalOne, int placedTwo, int totalTwo) {
+        if (placedOne == totalOne) {
+            return 1;
+        }
+        if (placedTwo == totalTwo) {
+            return 0;
+        }
+        long one = (long) placedOne * totalTwo;
+        long two = (long) placedTwo * totalOne;
+        if (one != two) {
+            return one < two ? 0 : 1;
+        }
+        return totalOne - placedOne >= totalTwo - placedTwo ? 0 : 1;
+    }
+
+    /**
+     * The region with the fewest dots of the set, ties broken at random.
+     */
+    private int emptiestRegion(int set) {
+        int[] counts = this.regionCounts[set];
+        int best = -1;
+        int numTies = 0;
+        for (int region = 0; region < counts.length; region++) {
+            if (best < 0 || counts[region] < counts[best]) {
+                best = region;
+                numTies = 1;
+            } else if (counts[region] == counts[best] && randomGenerator.nextInt(++numTies) == 0) {
+                best = region;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A random top left coordinate along one side such that the dot stays
+     * within the canvas and, if the region is wide enough, starts within it.
+     */
+    private int randomInRegion(int index, int length) {
+        int limit = length - MAX_DIAMETER;
+        int start = Math.min(index * length / REGIONS_PER_SIDE, limit - 1);
+        int end = Math.min((index + 1) * length / REGIONS_PER_SIDE, limit);
+        return start + randomGenerator.nextInt(Math.max(1, end - start));
+    }
+
+    private int regionOf(double x, double y) {
+        int column = Math.min((int) (x * REGIONS_PER_SIDE / this.canvasWidth), REGIONS_PER_SIDE - 1);
+        int row = Math.min((int) (y * REGIONS_PER_SIDE / this.canvasHeight), REGIONS_PER_SIDE - 1);
+        return row * REGIONS_PER_SIDE + column;
+    }
+
+    /**
+     * Check the candidate against the dots in the 3x3 cells around its center.
+     */
+    private boolean overlaps(int x, int y, double diameter, Shape shape) {
+        double r = diameter / 2;
+        double cx = x + r;
+        double cy = y + r;
+        int column = this.cellColumn(cx);
+        int row = this.cellRow(cy);
+        for (int rr = Math.max(0, row - 1); rr <= Math.min(this.rows - 1, row + 1); rr++) {
+            for (int cc = Math.max(0, column - 1); cc <= Math.min(this.columns - 1, column + 1); cc++) {
+                for (int i = this.cellHead[rr * this.columns + cc]; i >= 0; i = this.nextInCell[i]) {
+                    if (Collision.closerThan(shape, cx, cy, r, this.shapes[i], this.centerX[i], this.centerY[i],
+                            this.radius[i], DotSet.MIN_DISTANCE_BETWEEN_DOTS)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void add(int x, int y, double diameter, Shape shape) {
+        double r = diameter / 2;
+        int i = this.numPlaced++;
+        this.centerX[i] = x + r;
+        this.centerY[i] = y + r;
+        this.radius[i] = r;
+        this.shapes[i] = shape;
+        int cell = this.cellRow(y + r) * this.columns + this.cellColumn(x + r);
+        this.nextInCell[i] = this.cellHead[cell];
+        this.cellHead[cell] = i;
+    }
+
+    private int cellColumn(double x) {
+        return Math.min(Math.max((int) (x / this.cellSize), 0), this.columns - 1);
+    }
+
+    private int cellRow(double y) {
+        return Math.min(Math.max((int) (y / this.cellSize), 0), this.rows - 1);
+    }
+
+    private void reset(int total) {
+        if (this.centerX == null || this.centerX.length < total) {
+            this.centerX = new double[total];
+            this.centerY = new double[total];
+            this.radius = new double[total];
+            this.shapes = new Shape[total];
+            this.nextInCell = new int[total];
+        }
+        this.numPlaced = 0;
+        this.attempts = 0;
+        Arrays.fill(this.cellHead, -1);
+        for (int[] counts : this.regionCounts) {
+            Arrays.fill(counts, 0);
+        }
+    }
+
+    /**
+     * @return Candidates tried in the last call to place(), accepted or not.
+     */
+    public int getAttempts() {
+        return this.attempts;
+    }
+}
@@ -0,0 +1,268 @@
+package model;
+
+import java.util.Arrays;
+
+import model.Coordinate.Shape;
+
+/**
+ * Non-numerical magnitude features of a DotSet, the usual confounds of a
+ * numerosity comparison. Immutable.
+ *
+ * Classes Related To:
+ *  -DotsPair.java
+ *      -Computes the metrics of both of its DotSets once they are placed.
+ *  -DataWriter.java
+ *      -Exports the metrics of each trial.
+ *
+ *  -Total area: summed area of the dots (pi * r^2 for circles, d^2 for squares).
+ *  -Convex hull area: area of the convex hull around the outlines of all dots.
+ *  -Density: number of dots per 10,000 square pixels of convex hull.
+ *  -Mean nearest neighbor distance: mean over dots of the center distance to the
+ *  closest other dot.
+ *  -Total perimeter: summed outline length of the dots.
+ *  -Field area: area of the bounding box of all dots.
+ *
+ * The hull is Andrew's monotone chain, O(n log n). Nearest neighbors are found
+ * with a uniform grid so that each query only visits nearby cells.
+ */
+public final class MagnitudeMetrics {
+
+    /** Points sampled along the outline of each circle for the hull. */
+    static final int HULL_POINTS_PER_CIRCLE = 16;
+
+    /** Square pixels per unit of density. */
+    static final double DENSITY_AREA_UNIT = 10000;
+
+    private final double totalArea;
+    private final double convexHullArea;
+    private final double density;
+    private final double meanNearestNeighborDistance;
+    private final double totalPerimeter;
+    private final double fieldArea;
+
+    private MagnitudeMetrics(double totalArea, double convexHullArea, double density,
+            double meanNearestNeighborDistance, double totalPerimeter, double fieldArea) {
+        this.totalArea = totalArea;
+        this.convexHullArea = convexHullArea;
+        this.density = density;
+        this.meanNearestNeighborDistance = meanNearestNeighborDistance;
+        this.totalPerimeter = totalPerimeter;
+        this.fieldArea = fieldArea;
+    }
+
+    /**
+     * Compute the metrics of a dot set.
+     * @param dotSet The placed dot set.
+     * @return Its metrics.
+     */
+    public static MagnitudeMetrics of(DotSet dotSet) {
+        int n = dotSet.getTotalNumDots();
+        double[] centerX = new double[n];
+        double[] centerY = new double[n];
+        double[] diameter = new double[n];
+        boolean[] square = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            Coordinate c = dotSet.getPositions().get(i);
+            diameter[i] = dotSet.getDiameters().get(i);
+            centerX[i] = c.x + diameter[i] / 2;
+            centerY[i] = c.y + diameter[i] / 2;
+            square[i] = c.shape == Shape.SQUARE;
+        }
+        return of(centerX, centerY, diameter, square, n);
+    }
+
+    /**
+     * Compute the metrics of n dots given as primitive arrays.
+     */
+    static MagnitudeMetrics of(double[] centerX, double[] centerY, double[] diameter,
+            boolean[] square, int n) {
+        if (n == 0) {
+            return new MagnitudeMetrics(0, 0, 0, 0, 0, 0);
+        }
+        double totalArea = 0;
+        double totalPerimeter = 0;
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            double d = diameter[i];
+            if (square[i]) {
+                totalArea += d * d;
+                totalPerimeter += 4 * d;
+            } else {
+                totalArea += Math.PI * (d / 2) * (d / 2);
+                totalPerimeter += Math.PI * d;
+            }
+            minX = Math.min(minX, centerX[i] - d / 2);
+            minY = Math.min(minY, centerY[i] - d / 2);
+            maxX = Math.max(maxX, centerX[i] + d / 2);
+            maxY = Math.max(maxY, centerY[i] + d / 2);
+        }
+        double fieldArea = (maxX - minX) * (maxY - minY);
+        double convexHullArea = convexHullArea(centerX, centerY, diameter, square, n);
+        double density = convexHullArea > 0 ? n * DENSITY_AREA_UNIT / convexHullArea : 0;
+        double meanNearestNeighbor = meanNearestNeighborDistance(centerX, centerY, n,
+                minX, minY, maxX, maxY);
+        return new MagnitudeMetrics(totalArea, convexHullArea, density, meanNearestNeighbor,
+                totalPerimeter, fieldArea);
+    }
+
+    /**
+     * Area of the convex hull of the outlines of the dots.
+     */
+    static double convexHullArea(double[] centerX, double[] centerY, double[] diameter,
+            boolean[] square, int n) {
+        int numPoints = 0;
+        for (int i = 0; i < n; i++) {
+            numPoints += square[i] ? 4 : HULL_POINTS_PER_CIRCLE;
+        }
+        double[] xs = new double[numPoints];
+        double[] ys = new double[numPoints];
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            double r = diameter[i] / 2;
+            if (square[i]) {
+                xs[p] = centerX[i] - r; ys[p++] = centerY[i] - r;
+                xs[p] = centerX[i] + r; ys[p++] = centerY[i] - r;
+                xs[p] = centerX[i] + r; ys[p++] = centerY[i] + r;
+                xs[p] = centerX[i] - r; ys[p++] = centerY[i] + r;
+            } else {
+                for (int k = 0; k < HULL_POINTS_PER_CIRCLE; k++) {
+                    double angle = 2 * Math.PI * k / HULL_POINTS_PER_CIRCLE;
+                    xs[p] = centerX[i] + r * Math.cos(angle);
+                    ys[p++] = centerY[i] + r * Math.sin(angle);
+                }
+            }
+        }
+        Integer[] order = new Integer[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byX = Double.compare(xs[a], xs[b]);
+            return byX != 0 ? byX : Double.compare(ys[a], ys[b]);
+        });
+
+        int[] hull = new int[2 * numPoints];
+        int k = 0;
+        for (int i = 0; i < numPoints; i++) {
+            int q = order[i];
+            while (k >= 2 && cross(xs, ys, hull[k - 2], hull[k - 1], q) <= 0) {
+                k--;
+            }
+            hull[k++] = q;
+        }
+        for (int i = numPoints - 2, lower = k + 1; i >= 0; i--) {
+            int q = order[i];
+            while (k >= lower && cross(xs, ys, hull[k - 2], hull[k - 1], q) <= 0) {
+                k--;
+            }
+            hull[k++] = q;
+        }
+        double twiceArea = 0;
+        for (int i = 0; i < k - 1; i++) {
+            twiceArea += xs[hull[i]] * ys[hull[i + 1]] - xs[hull[i + 1]] * ys[hull[i]];
+        }
+        return Math.abs(twiceArea) / 2;
+    }
+
+    private static double cross(double[] xs, double[] ys, int o, int a, int b) {
+        return (xs[a] - xs[o]) * (ys[b] - ys[o]) - (ys[a] - ys[o]) * (xs[b] - xs[o]);
+    }
+
+    /**
+     * Mean distance from each center to its nearest other center, found by
+     * searching rings of grid cells outward until no closer center is possible.
+     */
+    private static double meanNearestNeighborDistance(double[] centerX, double[] centerY, int n,
+            double minX, double minY, double maxX, double maxY) {
+        if (n < 2) {
+            return 0;
+        }
+        double width = Math.max(maxX - minX, 1);
+        double height = Math.max(maxY - minY, 1);
+        /* About one center per cell. */
+        double cellSize = Math.max(Math.sqrt(width * height / n), 1);
+        int columns = (int) (width / cellSize) + 1;
+        int rows = (int) (height / cellSize) + 1;
+
+        int[] cellStart = new int[columns * rows + 1];
+        int[] cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            int column = Math.min((int) ((centerX[i] - minX) / cellSize), columns - 1);
+            int row = Math.min((int) ((centerY[i] - minY) / cellSize), rows - 1);
+            cellOf[i] = row * columns + column;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, cellStart.length);
+        int[] members = new int[n];
+        for (int i = 0; i < n; i++) {
+            members[fill[cellOf[i]]++] = i;
+        }
+
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            int column = cellOf[i] % columns;
+            int row = cellOf[i] / columns;
+            double best = Double.MAX_VALUE;
+            int maxRing = Math.max(columns, rows);
+            for (int ring = 0; ring <= maxRing; ring++) {
+                /* Every center beyond this ring is at least ring * cellSize away. */
+                if (ring > 0 && (ring - 1) * cellSize > Math.sqrt(best)) {
+                    break;
+                }
+                for (int r = row - ring; r <= row + ring; r++) {
+                    if (r < 0 || r >= rows) {
+                        continue;
+                    }
+                    for (int c = column - ring; c <= column + ring; c++) {
+                        if (c < 0 || c >= columns
+                                || (Math.abs(r - row) != ring && Math.abs(c - column) != ring)) {
+                            continue;
+                        }
+                        int cell = r * columns + c;
+                        for (int m = cellStart[cell]; m < cellStart[cell + 1]; m++) {
+                            int j = members[m];
+                            if (j == i) {
+                                continue;
+                            }
+                            double dx = centerX[i] - centerX[j];
+                            double dy = centerY[i] - centerY[j];
+                            best = Math.min(best, dx * dx + dy * dy);
+                        }
+                    }
+                }
+            }
+            sum += Math.sqrt(best);
+        }
+        return sum / n;
+    }
+
+    public double getTotalArea() {
+        return totalArea;
+    }
+
+    public double getConvexHullArea() {
+        return convexHullArea;
+    }
+
+    public double getDensity() {
+        return density;
+    }
+
+    public double getMeanNearestNeighborDistance() {
+        return meanNearestNeighborDistance;
+    }
+
+    public double getTotalPerimeter() {
+        return totalPerimeter;
+    }
+
+    public double getFieldArea() {
+        return fieldArea;
+    }
+}
@@ -0,0 +1,345 @@
+package model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import model.Coordinate.Shape;
+
+/**
+ * On-disk tier of the StimulusBank: a fixed-size, memory-mapped ring of
+ * DotsPair records.
+ *
+ * Records are appended at the write position, followed by a 0 that marks the
+ * end of the newest records. When a record does not fit before the end of the
+ * file, writing wraps to the start and every record the new one overlaps is
+ * evicted, so the file never grows past its capacity.
+ *
+ * The index is rebuilt on open by scanning the whole ring: first the records
+ * from the start of the file up to the 0, which are the newest, then the rest
+ * of the file byte by byte for older records that were not overwritten. Only
+ * records whose length matches their numbers of dots, and whose header and
+ * shapes are in range, are indexed; StimulusBank checks the pairs themselves.
+ * Not thread safe; StimulusBank serializes all access.
+ *
+ * Record layout:
+ *  int MAGIC, int record length,
+ *  int numCirclesOne, numSquaresOne, numCirclesTwo, numSquaresTwo,
+ *  int control type ordinal, canvasWidth, canvasHeight, minDiameter, maxDiameter,
+ *  then for every dot of set one followed by set two:
+ *  int x, int y, byte shape ordinal, double diameter.
+ */
+class MappedStimulusStore {
+
+    private static final int MAGIC = 0x44505231;
+    private static final int HEADER_BYTES = 11 * 4;
+    private static final int DOT_BYTES = 4 + 4 + 1 + 8;
+
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+    private final RandomAccessFile file;
+
+    /** Offsets of the records of each key. */
+    private final HashMap<StimulusKey, ArrayList<Integer>> index;
+
+    /** Every record, oldest first. Offset -> key. */
+    private final LinkedHashMap<Integer, StimulusKey> records;
+
+    /** Where the next record goes. */
+    private int writePosition;
+
+    /**
+     * Open the ring in a file for reading and writing, creating the file or
+     * resizing it to the capacity as needed.
+     */
+    MappedStimulusStore(File path, int capacity) throws IOException {
+        File directory = path.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        this.capacity = capacity;
+        this.file = new RandomAccessFile(path, "rw");
+        if (this.file.length() != capacity) {
+            this.file.setLength(capacity);
+        }
+        this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.index = new HashMap<StimulusKey, ArrayList<Integer>>();
+        this.records = new LinkedHashMap<Integer, StimulusKey>();
+        this.scan();
+    }
+    
+    /**
+     * Open the ring in an existing file for reading only. The file is neither
+     * created nor resized; store() must not be called.
+     * @throws FileNotFoundException If there is no such file.
+     * @throws IOException If the file is larger than a ring can be.
+     */
+    private MappedStimulusStore(File path) throws IOException {
+        if (!path.isFile()) {
+            throw new FileNotFoundException(path.getPath());
+        }
+        this.file = new RandomAccessFile(path, "r");
+        long length = this.file.length();
+        if (length > Integer.MAX_VALUE) {
+            this.file.close();
+            throw new IOException("Not a stimulus bank file, " + length + " bytes: " + path);
+        }
+        this.capacity = (int) length;
+        this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, this.capacity);
+        this.index = new HashMap<StimulusKey, ArrayList<Integer>>();
+        this.records = new LinkedHashMap<Integer, StimulusKey>();
+        this.scan();
+    }
+    
+    /**
+     * @return The ring in an existing file, opened for reading only.
+     */
+    static MappedStimulusStore openReadOnly(File path) throws IOException {
+        return new MappedStimulusStore(path);
+    }
+
+    /**
+     * Rebuild the index from every record in the ring, oldest first.
+     */
+    private void scan() {
+        ArrayList<Integer> newest = new ArrayList<Integer>();
+        int position = 0;
+        while (this.isRecord(position)) {
+            newest.add(position);
+            position += this.buffer.getInt(position + 4);
+        }
+        this.writePosition = position;
+        
+        position++;
+        while (position + HEADER_BYTES <= this.capacity) {
+            if (this.isRecord(position)) {
+                this.addToIndex(this.readKey(position), position);
+                position += this.buffer.getInt(position + 4);
+            } else {
+                position++;
+            }
+        }
+        for (int offset : newest) {
+            this.addToIndex(this.readKey(offset), offset);
+        }
+    }
+    
+    /**
+     * @return true if a complete record starts at the position.
+     */
+    private boolean isRecord(int position) {
+        if (position + HEADER_BYTES > this.capacity || this.buffer.getInt(position) != MAGIC) {
+            return false;
+        }
+        int length = this.buffer.getInt(position + 4);
+        if (length < HEADER_BYTES || length > this.capacity - position) {
+            return false;
+        }
+        for (int field = 8; field <= 20; field += 4) {
+            if (this.buffer.getInt(position + field) < 0) {
+                return false;
+            }
+        }
+        int controlType = this.buffer.getInt(position + 24);
+        if (controlType < 0 || controlType >= ControlType.values().length
+                || this.buffer.getInt(position + 28) <= 0 || this.buffer.getInt(position + 32) <= 0) {
+            return false;
+        }
+        StimulusKey key = this.readKey(position);
+        if (length != recordLength(key)) {
+            return false;
+        }
+        int numShapes = Shape.values().length;
+        for (int dot = position + HEADER_BYTES + 8; dot < position + length; dot += DOT_BYTES) {
+            if (this.buffer.get(dot) < 0 || this.buffer.get(dot) >= numShapes) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return Length in bytes of the record of a pair stored under the key.
+     */
+    private static int recordLength(StimulusKey key) {
+        long numDots = (long) key.numCirclesOne + key.numSquaresOne + key.numCirclesTwo + key.numSquaresTwo;
+        return (int) Math.min(Integer.MAX_VALUE, HEADER_BYTES + DOT_BYTES * numDots);
+    }
+
+    /**
+     * @return Number of records stored for the key.
+     */
+    int count(StimulusKey key) {
+        ArrayList<Integer> offsets = this.index.get(key);
+        return offsets == null ? 0 : offsets.size();
+    }
+
+    /**
+     * Read every pair stored for the key. A record that no longer holds a
+     * pair of the key is skipped.
+     * @return A new list, empty if nothing is stored.
+     */
+    ArrayList<DotsPair> load(StimulusKey key) {
+        ArrayList<DotsPair> pairs = new ArrayList<DotsPair>();
+        ArrayList<Integer> offsets = this.index.get(key);
+        if (offsets != null) {
+            for (int offset : offsets) {
+                if (this.isRecord(offset) && this.readKey(offset).equals(key)) {
+                    pairs.add(this.readPair(offset, key));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Read every pair stored, oldest first.
+     * @return A new list, empty if nothing is stored.
+     */
+    ArrayList<DotsPair> loadAll() {
+        ArrayList<DotsPair> pairs = new ArrayList<DotsPair>(this.records.size());
+        for (Map.Entry<Integer, StimulusKey> record : this.records.entrySet()) {
+            if (this.isRecord(record.getKey())) {
+                pairs.add(this.readPair(record.getKey(), record.getValue()));
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Append a pair, evicting the oldest records if the ring is full.
+     * Pairs larger than the whole store are not stored.
+     */
+    void store(StimulusKey key, DotsPair pair) {
+        int length = recordLength(key);
+        if (length + 4 > this.capacity) {
+            return;
+        }
+        if (this.writePosition + length + 4 > this.capacity) {
+            this.writePosition = 0;
+        }
+        this.evict(this.writePosition, this.writePosition + length + 4);
+
+        int position = this.writePosition;
+        this.buffer.putInt(position, MAGIC);
+        this.buffer.putInt(position + 4, length);
+        this.buffer.putInt(position + 8, key.numCirclesOne);
+        this.buffer.putInt(position + 12, key.numSquaresOne);
+        this.buffer.putInt(position + 16, key.numCirclesTwo);
+        this.buffer.putInt(position + 20, key.numSquaresTwo);
+        this.buffer.putInt(position + 24, key.controlType.ordinal());
+        this.buffer.putInt(position + 28, key.canvasWidth);
+        this.buffer.putInt(position + 32, key.canvasHeight);
+        this.buffer.putInt(position + 36, key.minDiameter);
+        this.buffer.putInt(position + 40, key.maxDiameter);
+        position += HEADER_BYTES;
+        position = this.writeDotSet(position, pair.getDotSetOne());
+        position = this.writeDotSet(position, pair.getDotSetTwo());
+        /* Terminate the scan on the next open. */
+        this.buffer.putInt(position, 0);
+
+        this.addToIndex(key, this.writePosition);
+        this.writePosition = position;
+    }
+
+    /**
+     * Drop every record that overlaps [start, end). After the ring has wrapped
+     * more than once, the records there are not necessarily the oldest, so
+     * every record is checked.
+     */
+    private void evict(int start, int end) {
+        Iterator<Map.Entry<Integer, StimulusKey>> records = this.records.entrySet().iterator();
+        while (records.hasNext()) {
+            Map.Entry<Integer, StimulusKey> record = records.next();
+            int offset = record.getKey();
+            if (offset >= end || offset + recordLength(record.getValue()) <= start) {
+                continue;
+            }
+            ArrayList<Integer> offsets = this.index.get(record.getValue());
+            offsets.remove(Integer.valueOf(offset));
+            if (offsets.isEmpty()) {
+                this.index.remove(record.getValue());
+            }
+            records.remove();
+        }
+    }
+
+    private void addToIndex(StimulusKey key, int offset) {
+        ArrayList<Integer> offsets = this.index.get(key);
+        if (offsets == null) {
+            offsets = new ArrayList<Integer>();
+            this.index.put(key, offsets);
+        }
+        offsets.add(offset);
+        this.records.put(offset, key);
+    }
+
+    private int writeDotSet(int position, DotSet dotSet) {
+        for (int i = 0; i < dotSet.getTotalNumDots(); i++) {
+            Coordinate c = dotSet.getPositions().get(i);
+            this.buffer.putInt(position, c.x);
+            this.buffer.putInt(position + 4, c.y);
+            this.buffer.put(position + 8, (byte) c.shape.ordinal());
+            this.buffer.putDouble(position + 9, dotSet.getDiameters().get(i));
+            position += DOT_BYTES;
+        }
+        return position;
+    }
+
+    private StimulusKey readKey(int position) {
+        return new StimulusKey(
+                this.buffer.getInt(position + 8),
+                this.buffer.getInt(position + 12),
+                this.buffer.getInt(position + 16),
+                this.buffer.getInt(position + 20),
+                ControlType.values()[this.buffer.getInt(position + 24)],
+                this.buffer.getInt(position + 28),
+                this.buffer.getInt(position + 32),
+                this.buffer.getInt(position + 36),
+                this.buffer.getInt(position + 40));
+    }
+
+    private DotsPair readPair(int position, StimulusKey key) {
+        position += HEADER_BYTES;
+        DotSet dotSetOne = this.readDotSet(position, key.numCirclesOne, key.numSquaresOne, key);
+        position += DOT_BYTES * dotSetOne.getTotalNumDots();
+        DotSet dotSetTwo = this.readDotSet(position, key.numCirclesTwo, key.numSquaresTwo, key);
+        return new DotsPair(dotSetOne, dotSetTwo, key.controlType);
+    }
+
+    private DotSet readDotSet(int position, int numCircles, int numSquares, StimulusKey key) {
+        int numDots = numCircles + numSquares;
+        ArrayList<Coordinate> positions = new ArrayList<Coordinate>(numDots);
+        ArrayList<Double> diameters = new ArrayList<Double>(numDots);
+        Shape[] shapes = Shape.values();
+        for (int i = 0; i < numDots; i++) {
+            positions.add(new Coordinate(this.buffer.getInt(position), this.buffer.getInt(position + 4),
+                    shapes[this.buffer.get(position + 8)]));
+            diameters.add(this.buffer.getDouble(position + 9));
+            position += DOT_BYTES;
+        }
+        return new DotSet(numCircles, numSquares, key.canvasWidth, key.canvasHeight, positions, diameters);
+    }
+
+    /**
+     * Flush the mapped pages and close the file.
+     */
+    void close() {
+        if (!this.buffer.isReadOnly()) {
+            this.buffer.force();
+        }
+        try {
+            this.file.close();
+        } catch (IOException e) {
+            System.err.println("IOException closing stimulus bank file...");
+        }
+    }
+}
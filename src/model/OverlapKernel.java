@@ -0,0 +1,146 @@
+package model;
+
+import java.util.Arrays;
+
+import model.Coordinate.Shape;
+
+/**
+ * Overlap test of a candidate dot against every dot placed so far, over
+ * primitive arrays of centers and radii.
+ *
+ * Classes Related To:
+ *  -DotSet.java
+ *      -Keeps one kernel with its dots for the overlap checks while placing.
+ *  -Collision.java
+ *      -Exact test for the dots the broad phase cannot rule out.
+ *
+ * Two dots overlap if their edges are closer than a minimum gap. The broad phase
+ * compares the squared distance of the centers against the squared sum of the
+ * bounding radii plus the gap, so there is no sqrt or Math.hypot in the loop, and
+ * scans the arrays in fixed blocks of BLOCK dots without branching inside a block.
+ * That shape lets the JIT unroll and vectorize the block, and only one branch per
+ * block decides whether to look closer. Only the dots of a block that pass the
+ * broad phase are given to Collision for the exact, shape-aware test; for two
+ * circles the broad phase already is exact.
+ */
+public final class OverlapKernel {
+
+    /** Number of dots tested per block. */
+    static final int BLOCK = 8;
+
+    private double[] centerX;
+    private double[] centerY;
+    private double[] radius;
+    private double[] boundingRadius;
+    private Shape[] shapes;
+    private int size;
+
+    /** Minimum gap in pixels between the edges of two dots. */
+    private final double minDistance;
+
+    /**
+     * @param initialCapacity Number of dots to allocate room for.
+     * @param minDistance Minimum gap in pixels between the edges of two dots.
+     */
+    public OverlapKernel(int initialCapacity, double minDistance) {
+        int capacity = Math.max(BLOCK, initialCapacity);
+        this.centerX = new double[capacity];
+        this.centerY = new double[capacity];
+        this.radius = new double[capacity];
+        this.boundingRadius = new double[capacity];
+        this.shapes = new Shape[capacity];
+        this.minDistance = minDistance;
+    }
+
+    /**
+     * Add a placed circle given by its top left corner and diameter.
+     */
+    public void add(double x, double y, double diameter) {
+        this.add(x, y, diameter, Shape.CIRCLE);
+    }
+
+    /**
+     * Add a placed dot given by its top left corner, diameter and shape.
+     */
+    public void add(double x, double y, double diameter, Shape shape) {
+        if (this.size == this.centerX.length) {
+            int capacity = this.size * 2;
+            this.centerX = Arrays.copyOf(this.centerX, capacity);
+            this.centerY = Arrays.copyOf(this.centerY, capacity);
+            this.radius = Arrays.copyOf(this.radius, capacity);
+            this.boundingRadius = Arrays.copyOf(this.boundingRadius, capacity);
+            this.shapes = Arrays.copyOf(this.shapes, capacity);
+        }
+        double r = diameter / 2;
+        this.centerX[this.size] = x + r;
+        this.centerY[this.size] = y + r;
+        this.radius[this.size] = r;
+        this.boundingRadius[this.size] = r * Collision.boundingFactor(shape);
+        this.shapes[this.size] = shape;
+        this.size++;
+    }
+
+    /**
+     * Check if a circle given by its top left corner and diameter overlaps any
+     * dot of this kernel.
+     * @return true if it is closer than the minimum gap to any dot.
+     */
+    public boolean overlaps(double x, double y, double diameter) {
+        return this.overlaps(x, y, diameter, Shape.CIRCLE);
+    }
+
+    /**
+     * Check if a dot given by its top left corner, diameter and shape overlaps
+     * any dot of this kernel.
+     * @return true if it is closer than the minimum gap to any dot.
+     */
+    public boolean overlaps(double x, double y, double diameter, Shape shape) {
+        double r = diameter / 2;
+        double cx = x + r;
+        double cy = y + r;
+        double reach = r * Collision.boundingFactor(shape) + this.minDistance;
+        double[] xs = this.centerX;
+        double[] ys = this.centerY;
+        double[] bs = this.boundingRadius;
+
+        int i = 0;
+        int blocked = this.size - this.size % BLOCK;
+        for (; i < blocked; i += BLOCK) {
+            int hits = 0;
+            for (int k = i; k < i + BLOCK; k++) {
+                double dx = cx - xs[k];
+                double dy = cy - ys[k];
+                double limit = reach + bs[k];
+                hits += dx * dx + dy * dy < limit * limit ? 1 : 0;
+            }
+            if (hits != 0 && this.anyCloserThan(i, i + BLOCK, cx, cy, r, shape)) {
+                return true;
+            }
+        }
+        return this.anyCloserThan(i, this.size, cx, cy, r, shape);
+    }
+
+    /**
+     * Exact test of a dot against the dots from start to end.
+     */
+    private boolean anyCloserThan(int start, int end, double cx, double cy, double r, Shape shape) {
+        for (int k = start; k < end; k++) {
+            if (Collision.closerThan(shape, cx, cy, r, this.shapes[k], this.centerX[k], this.centerY[k],
+                    this.radius[k], this.minDistance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove every dot, keeping the arrays.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,226 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Bayesian adaptive (QUEST) selection of the next Ratio.
+ *
+ * Classes Related To:
+ *  -DotsPairGenerator.java
+ *      -Used in place of the ratiosBucket when adaptive.ratio.on is true.
+ *  -Ratio.java
+ *      -Every candidate ratio is a preallocated Ratio.
+ *
+ * The stimulus intensity of a ratio is its distance, in log-odds, from the
+ * criterion of the current block (50%, 60% or 75% of the total). The subject's
+ * threshold is tracked as a posterior over THRESHOLD_GRID_SIZE log-spaced values
+ * and the next ratio is the candidate whose intensity is closest to the
+ * posterior mean (King-Smith et al. 1994).
+ *
+ * The likelihood of a correct and an incorrect response is precomputed for every
+ * (block, candidate, threshold) so that between trials the posterior is updated
+ * in place with one addition per grid point and no allocation.
+ */
+public class QuestRatioSelector {
+
+    /** Number of points in the threshold grid. */
+    static final int THRESHOLD_GRID_SIZE = 100;
+    /** Smallest threshold (log-odds distance from the criterion) in the grid. */
+    static final double MIN_THRESHOLD = 0.02;
+    /** Largest threshold (log-odds distance from the criterion) in the grid. */
+    static final double MAX_THRESHOLD = 2.5;
+
+    /** Weibull slope. */
+    static final double BETA = 3.5;
+    /** Guess rate. The subject answers "Yes" or "No". */
+    static final double GAMMA = 0.5;
+    /** Lapse rate. */
+    static final double DELTA = 0.01;
+
+    /** Largest term of a candidate ratio. */
+    static final int MAX_RATIO_TERM = 9;
+
+    /** Intensities closer than this to the criterion are never shown. */
+    private static final double MIN_INTENSITY = 1e-6;
+
+    /** Criterion (proportion of dots in dot set one) of each block. */
+    private static final double[] BLOCK_CRITERIA = new double[4];
+    static {
+        BLOCK_CRITERIA[DotsPairGenerator.SOME_DOTS_BLOCK] = .5;
+        BLOCK_CRITERIA[DotsPairGenerator.SOME_OF_THE_DOTS_BLOCK] = .5;
+        BLOCK_CRITERIA[DotsPairGenerator.EACH_DOT_BLOCK] = .6;
+        BLOCK_CRITERIA[DotsPairGenerator.EVERY_DOT_BLOCK] = .75;
+    }
+
+    /** Candidate ratios. */
+    private final Ratio[] candidates;
+
+    /** The thresholds of the grid. */
+    private final double[] thresholds;
+
+    /** Intensity of each candidate for each block. [block][candidate] */
+    private final double[][] intensities;
+
+    /** Whether "Yes" is the correct answer for each candidate in each block. [block][candidate] */
+    private final boolean[][] yesCorrect;
+
+    /** Log likelihood of a correct response. [block][candidate][threshold] */
+    private final double[][][] logLikelihoodCorrect;
+
+    /** Log likelihood of an incorrect response. [block][candidate][threshold] */
+    private final double[][][] logLikelihoodIncorrect;
+
+    /** The running log posterior over the threshold grid. Updated in place. */
+    private final double[] logPosterior;
+
+    /** Block of the last candidate chosen. */
+    private int lastBlock;
+
+    /** Index of the last candidate chosen, -1 if no response is pending. */
+    private int lastCandidate;
+
+    /** Random number generator. */
+    private Random randomGenerator;
+
+    public QuestRatioSelector(Random randomGenerator) {
+        this.randomGenerator = randomGenerator;
+        this.candidates = buildCandidates();
+        this.thresholds = new double[THRESHOLD_GRID_SIZE];
+        double logMin = Math.log(MIN_THRESHOLD);
+        double logStep = (Math.log(MAX_THRESHOLD) - logMin) / (THRESHOLD_GRID_SIZE - 1);
+        for (int i = 0; i < THRESHOLD_GRID_SIZE; i++) {
+            this.thresholds[i] = Math.exp(logMin + i * logStep);
+        }
+        int numBlocks = BLOCK_CRITERIA.length;
+        this.intensities = new double[numBlocks][this.candidates.length];
+        this.yesCorrect = new boolean[numBlocks][this.candidates.length];
+        this.logLikelihoodCorrect = new double[numBlocks][this.candidates.length][THRESHOLD_GRID_SIZE];
+        this.logLikelihoodIncorrect = new double[numBlocks][this.candidates.length][THRESHOLD_GRID_SIZE];
+        for (int block = 0; block < numBlocks; block++) {
+            this.precomputeBlock(block);
+        }
+        this.logPosterior = new double[THRESHOLD_GRID_SIZE];
+        this.reset();
+    }
+
+    /**
+     * Every reduced ratio a:b with a != b and both terms at most MAX_RATIO_TERM.
+     * @return The candidate ratios.
+     */
+    private static Ratio[] buildCandidates() {
+        ArrayList<Ratio> ratios = new ArrayList<Ratio>();
+        for (int a = 1; a <= MAX_RATIO_TERM; a++) {
+            for (int b = 1; b <= MAX_RATIO_TERM; b++) {
+                if (a != b && gcd(a, b) == 1) {
+                    ratios.add(new Ratio(a, b));
+                }
+            }
+        }
+        return ratios.toArray(new Ratio[ratios.size()]);
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Fill in the intensities and likelihood grids of one block.
+     * @param block The block to precompute.
+     */
+    private void precomputeBlock(int block) {
+        double criterion = BLOCK_CRITERIA[block];
+        double criterionLogOdds = Math.log(criterion / (1 - criterion));
+        for (int c = 0; c < this.candidates.length; c++) {
+            double numOne = this.candidates[c].getNumOne();
+            double numTwo = this.candidates[c].getNumTwo();
+            double proportion = numOne / (numOne + numTwo);
+            this.yesCorrect[block][c] = proportion > criterion;
+            double intensity = Math.abs(Math.log(numOne / numTwo) - criterionLogOdds);
+            this.intensities[block][c] = intensity;
+            for (int t = 0; t < THRESHOLD_GRID_SIZE; t++) {
+                double pCorrect = GAMMA + (1 - GAMMA - DELTA)
+                        * (1 - Math.exp(-Math.pow(intensity / this.thresholds[t], BETA)));
+                this.logLikelihoodCorrect[block][c][t] = Math.log(pCorrect);
+                this.logLikelihoodIncorrect[block][c][t] = Math.log(1 - pCorrect);
+            }
+        }
+    }
+
+    /**
+     * Reset the posterior to a uniform prior over the log-spaced grid.
+     */
+    public void reset() {
+        for (int t = 0; t < THRESHOLD_GRID_SIZE; t++) {
+            this.logPosterior[t] = 0;
+        }
+        this.lastCandidate = -1;
+    }
+
+    /**
+     * Pick the next ratio for the given block.
+     *
+     * The correct answer ("Yes" or "No") is chosen at random first so that both
+     * answers stay balanced, then the candidate with that answer whose intensity
+     * is closest to the posterior mean threshold is chosen.
+     * @param block The current block mode.
+     * @return The next Ratio. Not to be modified.
+     */
+    public Ratio nextRatio(int block) {
+        double logTarget = Math.log(this.posteriorMean());
+        boolean wantYes = randomGenerator.nextBoolean();
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int c = 0; c < this.candidates.length; c++) {
+            double intensity = this.intensities[block][c];
+            if (this.yesCorrect[block][c] != wantYes || intensity < MIN_INTENSITY) {
+                continue;
+            }
+            double distance = Math.abs(Math.log(intensity) - logTarget);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        this.lastBlock = block;
+        this.lastCandidate = best;
+        return this.candidates[best];
+    }
+
+    /**
+     * Update the posterior with the subject's response to the last ratio given.
+     * @param correct Whether the subject answered correctly.
+     */
+    public void recordResponse(boolean correct) {
+        if (this.lastCandidate < 0) {
+            return;
+        }
+        double[] logLikelihood = correct
+                ? this.logLikelihoodCorrect[this.lastBlock][this.lastCandidate]
+                : this.logLikelihoodIncorrect[this.lastBlock][this.lastCandidate];
+        for (int t = 0; t < THRESHOLD_GRID_SIZE; t++) {
+            this.logPosterior[t] += logLikelihood[t];
+        }
+        this.lastCandidate = -1;
+    }
+
+    /**
+     * @return The mean threshold of the current posterior.
+     */
+    public double posteriorMean() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t < THRESHOLD_GRID_SIZE; t++) {
+            if (this.logPosterior[t] > max) {
+                max = this.logPosterior[t];
+            }
+        }
+        double weightedSum = 0;
+        double totalWeight = 0;
+        for (int t = 0; t < THRESHOLD_GRID_SIZE; t++) {
+            double weight = Math.exp(this.logPosterior[t] - max);
+            weightedSum += weight * this.thresholds[t];
+            totalWeight += weight;
+        }
+        return weightedSum / totalWeight;
+    }
+}
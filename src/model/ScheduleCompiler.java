@@ -0,0 +1,211 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Builds the whole session's TrialSchedule up front.
+ *
+ * Classes Related To:
+ *  -TrialSchedule.java
+ *      -The compiled, packed sequence of trials.
+ *  -DotsPairGenerator.java
+ *      -Uses the same BLOCK_RATIOS, MAX_TIMES_SAME_SIZE_CORRECT and multiples as
+ *      the runtime generator so a scheduled session draws from the same stimuli.
+ *
+ * Balancing is done by construction:
+ *  -Within a block every ratio occurs the same number of times (+/- 1).
+ *  -Within a ratio EQUAL_AREAS and INVERSE_AREAS alternate, and the odd one out
+ *  alternates between ratios, so the control types are split evenly per block.
+ *  -Within a ratio the extra multiples cycle, so every count occurs equally often.
+ *  -Each block gets its own color pair and F/J is fixed for the session.
+ *
+ * The order of the trials is then found by a randomized depth-first search that
+ * never lets the same control type (i.e. the same relative size being correct)
+ * run longer than MAX_TIMES_SAME_SIZE_CORRECT, nor the same ratio run longer
+ * than MAX_TIMES_SAME_RATIO, including across block boundaries.
+ */
+public final class ScheduleCompiler {
+
+    /** Max number of times in a row the same ratio may be shown. */
+    static final int MAX_TIMES_SAME_RATIO = 2;
+
+    /** Number of search steps before the search is restarted from a new shuffle. */
+    private static final int MAX_SEARCH_STEPS = 100000;
+
+    /** Number of restarts before giving up. */
+    private static final int MAX_RESTARTS = 100;
+
+    /** Disable constructing of an object. */
+    private ScheduleCompiler() {
+
+    }
+
+    /**
+     * Compile a session.
+     * @param randomGenerator Source of randomness for the whole session.
+     * @param numPracticeTrials Number of practice trials, taken from the first block.
+     * @param numTrialsPerBlock Number of trials in each block.
+     * @param numColorPairs Number of color pairs to choose from, at least one per block.
+     * @return The compiled schedule.
+     */
+    public static TrialSchedule compile(Random randomGenerator, int numPracticeTrials,
+            int numTrialsPerBlock, int numColorPairs) {
+        int[] blockOrder = permutation(DotsPairGenerator.NUM_BLOCKS, randomGenerator);
+        int[] colorOrder = permutation(numColorPairs, randomGenerator);
+        boolean FforTrue = randomGenerator.nextBoolean();
+
+        int numBlocks = blockOrder.length;
+        int[] trials = new int[numPracticeTrials + numBlocks * numTrialsPerBlock];
+        int[] blockStarts = new int[numBlocks];
+
+        int position = 0;
+        int[] practice = balancedTrials(numPracticeTrials, blockOrder[0], colorOrder[0],
+                FforTrue, randomGenerator);
+        order(practice, trials, position, randomGenerator);
+        position += numPracticeTrials;
+        for (int b = 0; b < numBlocks; b++) {
+            blockStarts[b] = position;
+            int[] block = balancedTrials(numTrialsPerBlock, blockOrder[b], colorOrder[b],
+                    FforTrue, randomGenerator);
+            order(block, trials, position, randomGenerator);
+            position += numTrialsPerBlock;
+        }
+        return new TrialSchedule(trials, blockStarts, numPracticeTrials);
+    }
+
+    /**
+     * Build the (unordered) trials of one block with every cell balanced.
+     */
+    private static int[] balancedTrials(int numTrials, int block, int colorPairIndex,
+            boolean FforTrue, Random randomGenerator) {
+        Ratio[] ratios = DotsPairGenerator.BLOCK_RATIOS;
+        int numRatios = ratios.length;
+        int[] ratioOrder = permutation(numRatios, randomGenerator);
+
+        /* How many times each ratio occurs. The extras go to the first ratios of ratioOrder. */
+        int[] ratioCounts = new int[numRatios];
+        for (int i = 0; i < numTrials; i++) {
+            ratioCounts[ratioOrder[i % numRatios]]++;
+        }
+
+        int[] trials = new int[numTrials];
+        int t = 0;
+        boolean oddStartsInverse = randomGenerator.nextBoolean();
+        for (int i = 0; i < numRatios; i++) {
+            int r = ratioOrder[i];
+            int count = ratioCounts[r];
+            boolean startInverse;
+            if (count % 2 == 1) {
+                startInverse = oddStartsInverse;
+                oddStartsInverse = !oddStartsInverse;
+            } else {
+                startInverse = randomGenerator.nextBoolean();
+            }
+            int maxExtra = Math.min(DotsPairGenerator.maxExtraMultiples(ratios[r]),
+                    TrialSchedule.MAX_MULTIPLES + 1);
+            int multiplesOffset = randomGenerator.nextInt(maxExtra);
+            for (int k = 0; k < count; k++) {
+                boolean inverse = (k % 2 == 0) == startInverse;
+                ControlType controlType = inverse ? ControlType.INVERSE_AREAS : ControlType.EQUAL_AREAS;
+                int extraMultiples = (multiplesOffset + k) % maxExtra;
+                trials[t++] = TrialSchedule.encode(block, r, extraMultiples, controlType,
+                        colorPairIndex, FforTrue);
+            }
+        }
+        return trials;
+    }
+
+    /**
+     * Order the given trials into session[start...] without breaking any run constraint.
+     */
+    private static void order(int[] pool, int[] session, int start, Random randomGenerator) {
+        for (int restart = 0; restart < MAX_RESTARTS; restart++) {
+            shuffle(pool, randomGenerator);
+            int[] steps = new int[1];
+            if (place(pool, new boolean[pool.length], session, start, 0, steps)) {
+                return;
+            }
+        }
+        throw new IllegalStateException("No trial order satisfies the balancing constraints.");
+    }
+
+    /**
+     * Depth first search for the trial at session[start + depth].
+     * @return true once every trial of the pool has been placed.
+     */
+    private static boolean place(int[] pool, boolean[] used, int[] session, int start,
+            int depth, int[] steps) {
+        if (depth == pool.length) {
+            return true;
+        }
+        if (++steps[0] > MAX_SEARCH_STEPS) {
+            return false;
+        }
+        int position = start + depth;
+        for (int i = 0; i < pool.length; i++) {
+            if (used[i] || triedAlready(pool, used, i)) {
+                continue;
+            }
+            if (!fits(session, position, pool[i])) {
+                continue;
+            }
+            used[i] = true;
+            session[position] = pool[i];
+            if (place(pool, used, session, start, depth + 1, steps)) {
+                return true;
+            }
+            used[i] = false;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if an identical, unused trial earlier in the pool has already been tried.
+     */
+    private static boolean triedAlready(int[] pool, boolean[] used, int i) {
+        for (int j = 0; j < i; j++) {
+            if (!used[j] && pool[j] == pool[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the trial can go at the given position of the session.
+     */
+    private static boolean fits(int[] session, int position, int trial) {
+        ControlType controlType = TrialSchedule.getControlType(trial);
+        int ratioIndex = TrialSchedule.getRatioIndex(trial);
+        int sameControl = 0;
+        for (int p = position - 1; p >= 0 && TrialSchedule.getControlType(session[p]) == controlType; p--) {
+            sameControl++;
+        }
+        if (sameControl >= DotsPairGenerator.MAX_TIMES_SAME_SIZE_CORRECT) {
+            return false;
+        }
+        int sameRatio = 0;
+        for (int p = position - 1; p >= 0 && TrialSchedule.getRatioIndex(session[p]) == ratioIndex; p--) {
+            sameRatio++;
+        }
+        return sameRatio < MAX_TIMES_SAME_RATIO;
+    }
+
+    private static int[] permutation(int size, Random randomGenerator) {
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = i;
+        }
+        shuffle(permutation, randomGenerator);
+        return permutation;
+    }
+
+    private static void shuffle(int[] array, Random randomGenerator) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = randomGenerator.nextInt(i + 1);
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+}
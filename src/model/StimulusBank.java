@@ -0,0 +1,293 @@
+package model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cache of pre-generated, validated DotsPairs addressed by their StimulusKey.
+ *
+ * Classes Related To:
+ *  -DotsPairGenerator.java
+ *      -Draws pairs from the bank instead of placing dots live when stimulus.bank.on.
+ *  -StimulusKey.java
+ *      -The generation parameters a pair is stored under.
+ *  -MappedStimulusStore.java
+ *      -The on-disk tier.
+ *  -CongruencySolver.java
+ *      -If given, adjusts every pair placed for the bank before it is stored.
+ *
+ * Up to variantsPerKey different pairs are kept for every key. Until a key has
+ * all of its variants, draw() places a new pair and deposits it; after that it
+ * returns a copy of one of the variants at random.
+ *
+ * There are two tiers:
+ *  -Memory: the variants of the most recently used keys, evicted least recently
+ *  used first once their estimated size exceeds maxMemoryBytes.
+ *  -Disk: every variant ever deposited, in a memory-mapped ring file that evicts
+ *  the oldest records once full. A key missing from memory is reloaded from disk.
+ *
+ * All methods are thread safe. Pairs are placed outside the lock so a background
+ * prefill never blocks a draw for longer than a lookup.
+ */
+public class StimulusBank {
+
+    /** Estimated heap bytes of one dot: Coordinate, Double and two references. */
+    private static final int BYTES_PER_DOT = 24 + 16 + 2 * 8;
+    /** Estimated heap bytes of a DotsPair without its dots. */
+    private static final int BYTES_PER_PAIR = 256;
+
+    /** Number of different pairs kept per key. */
+    private final int variantsPerKey;
+
+    /** Size in bytes above which the memory tier evicts. */
+    private final long maxMemoryBytes;
+
+    /** Estimated size in bytes of the memory tier. */
+    private long memoryBytes;
+
+    /** Memory tier, in access order (least recently used first). */
+    private final LinkedHashMap<StimulusKey, ArrayList<DotsPair>> memory;
+
+    /** Disk tier. Null if running from memory only. */
+    private MappedStimulusStore disk;
+    
+    /** Solver run on every placed pair. Null if none. */
+    private final CongruencySolver solver;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param variantsPerKey Number of different pairs kept per key.
+     * @param maxMemoryBytes Size of the memory tier.
+     * @param diskFile File backing the disk tier, or null for memory only.
+     * @param maxDiskBytes Size of the disk tier.
+     * @param solver Solver to run on every placed pair, or null.
+     */
+    public StimulusBank(int variantsPerKey, long maxMemoryBytes, File diskFile, int maxDiskBytes,
+            CongruencySolver solver) {
+        this.variantsPerKey = Math.max(1, variantsPerKey);
+        this.solver = solver;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.memory = new LinkedHashMap<StimulusKey, ArrayList<DotsPair>>(16, 0.75f, true);
+        if (diskFile != null) {
+            try {
+                this.disk = new MappedStimulusStore(diskFile, maxDiskBytes);
+            } catch (IOException e) {
+                System.err.println("Stimulus bank file " + diskFile + " could not be opened. "
+                        + "Running from memory only.");
+            }
+        }
+    }
+
+    /**
+     * Draw a pair for the key, placing a new one if the key does not yet have
+     * all of its variants.
+     * @param key The generation parameters.
+     * @param randomGenerator Used to pick one of the variants.
+     * @return A pair that may be modified by the caller.
+     */
+    public DotsPair draw(StimulusKey key, Random randomGenerator) {
+        synchronized (this) {
+            ArrayList<DotsPair> variants = this.variants(key);
+            if (variants.size() >= this.variantsPerKey) {
+                this.hits++;
+                return variants.get(randomGenerator.nextInt(variants.size())).copy();
+            }
+            this.misses++;
+        }
+        DotsPair pair = this.generate(key);
+        this.deposit(key, pair.copy());
+        return pair;
+    }
+
+    /**
+     * Fill every key up to its number of variants. Stops early if the thread
+     * is interrupted.
+     * @param keys The keys to fill.
+     */
+    public void prefill(List<StimulusKey> keys) {
+        for (StimulusKey key : keys) {
+            while (this.count(key) < this.variantsPerKey) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                this.deposit(key, this.generate(key));
+            }
+        }
+    }
+
+    /**
+     * Place a new pair for the key and run the solver on it.
+     */
+    private DotsPair generate(StimulusKey key) {
+        DotsPair pair = key.generate();
+        if (this.solver != null) {
+            synchronized (this.solver) {
+                this.solver.solve(pair);
+            }
+        }
+        return pair;
+    }
+    
+    /**
+     * @return Number of variants of the key in the bank.
+     */
+    public synchronized int count(StimulusKey key) {
+        return this.variants(key).size();
+    }
+
+    /**
+     * Store a pair under the key if it is valid and the key still has room.
+     */
+    private synchronized void deposit(StimulusKey key, DotsPair pair) {
+        ArrayList<DotsPair> variants = this.variants(key);
+        if (variants.size() >= this.variantsPerKey || !isValid(key, pair)) {
+            return;
+        }
+        variants.add(pair);
+        this.memoryBytes += estimateBytes(pair);
+        if (this.disk != null) {
+            this.disk.store(key, pair);
+        }
+        this.evict();
+    }
+
+    /**
+     * The memory tier's variants of a key, reloaded from disk on a miss.
+     * Pairs reloaded from disk are checked like new ones, and dropped if they
+     * do not match their key.
+     */
+    private ArrayList<DotsPair> variants(StimulusKey key) {
+        ArrayList<DotsPair> variants = this.memory.get(key);
+        if (variants == null) {
+            if (this.disk != null) {
+                variants = this.disk.load(key);
+                variants.removeIf(pair -> !isValid(key, pair));
+            } else {
+                variants = new ArrayList<DotsPair>();
+            }
+            this.memory.put(key, variants);
+            for (DotsPair pair : variants) {
+                this.memoryBytes += estimateBytes(pair);
+            }
+            this.evict();
+        }
+        return variants;
+    }
+
+    /**
+     * Drop least recently used keys from memory until under maxMemoryBytes.
+     * The most recently used key is always kept.
+     */
+    private void evict() {
+        Iterator<Map.Entry<StimulusKey, ArrayList<DotsPair>>> eldest = this.memory.entrySet().iterator();
+        while (this.memoryBytes > this.maxMemoryBytes && this.memory.size() > 1) {
+            ArrayList<DotsPair> variants = eldest.next().getValue();
+            for (DotsPair pair : variants) {
+                this.memoryBytes -= estimateBytes(pair);
+            }
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Check a pair matches its key: the right number of each shape, every dot
+     * within the canvas and no two dots closer than MIN_DISTANCE_BETWEEN_DOTS
+     * by the exact tests of Collision.
+     * @return true if the pair may be stored.
+     */
+    static boolean isValid(StimulusKey key, DotsPair pair) {
+        DotSet one = pair.getDotSetOne();
+        DotSet two = pair.getDotSetTwo();
+        if (pair.getControlType() != key.controlType
+                || !hasCounts(one, key.numCirclesOne, key.numSquaresOne)
+                || !hasCounts(two, key.numCirclesTwo, key.numSquaresTwo)) {
+            return false;
+        }
+        ArrayList<Coordinate> positions = new ArrayList<Coordinate>(one.getPositions());
+        positions.addAll(two.getPositions());
+        ArrayList<Double> diameters = new ArrayList<Double>(one.getDiameters());
+        diameters.addAll(two.getDiameters());
+        for (int i = 0; i < positions.size(); i++) {
+            Coordinate c = positions.get(i);
+            double r = diameters.get(i) / 2;
+            if (c.x < 0 || c.y < 0 || c.x + 2 * r > key.canvasWidth || c.y + 2 * r > key.canvasHeight) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                Coordinate o = positions.get(j);
+                double or = diameters.get(j) / 2;
+                if (Collision.closerThan(c.shape, c.x + r, c.y + r, r, o.shape, o.x + or, o.y + or, or,
+                        DotSet.MIN_DISTANCE_BETWEEN_DOTS)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasCounts(DotSet dotSet, int numCircles, int numSquares) {
+        int circles = 0;
+        int squares = 0;
+        for (Coordinate c : dotSet.getPositions()) {
+            if (c.shape == Coordinate.Shape.CIRCLE) {
+                circles++;
+            } else if (c.shape == Coordinate.Shape.SQUARE) {
+                squares++;
+            }
+        }
+        return circles == numCircles && squares == numSquares;
+    }
+
+    private static long estimateBytes(DotsPair pair) {
+        return BYTES_PER_PAIR + BYTES_PER_DOT
+                * (pair.getDotSetOne().getTotalNumDots() + pair.getDotSetTwo().getTotalNumDots());
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return this.memoryBytes;
+    }
+
+    /**
+     * Read every pair of a stimulus bank file, e.g. to inspect the stimuli
+     * a station has been drawing from.
+     * The file is opened read only, and is neither created nor resized.
+     * @param diskFile The disk tier of a bank, as named by stimulus.bank.file.
+     * @return The pairs, oldest first.
+     * @throws FileNotFoundException If there is no such file.
+     */
+    public static ArrayList<DotsPair> readArchive(File diskFile) throws IOException {
+        MappedStimulusStore store = MappedStimulusStore.openReadOnly(diskFile);
+        try {
+            return store.loadAll();
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Flush and close the disk tier. The bank keeps working from memory.
+     */
+    public synchronized void close() {
+        if (this.disk != null) {
+            this.disk.close();
+            this.disk = null;
+        }
+    }
+}
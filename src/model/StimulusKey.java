@@ -0,0 +1,96 @@
+package model;
+
+/**
+ * The generation parameters of a DotsPair. Two pairs generated from equal
+ * keys are interchangeable as stimuli.
+ *
+ * Classes Related To:
+ *  -StimulusBank.java
+ *      -Pairs in the bank are addressed by their StimulusKey.
+ */
+public final class StimulusKey {
+
+    /** Numbers of circles and squares of set one and set two of the pair. */
+    final int numCirclesOne;
+    final int numSquaresOne;
+    final int numCirclesTwo;
+    final int numSquaresTwo;
+    final ControlType controlType;
+    final int canvasWidth;
+    final int canvasHeight;
+    final int minDiameter;
+    final int maxDiameter;
+
+    public StimulusKey(int numCirclesOne, int numSquaresOne, int numCirclesTwo, int numSquaresTwo,
+            ControlType controlType, int canvasWidth, int canvasHeight, int minDiameter, int maxDiameter) {
+        this.numCirclesOne = numCirclesOne;
+        this.numSquaresOne = numSquaresOne;
+        this.numCirclesTwo = numCirclesTwo;
+        this.numSquaresTwo = numSquaresTwo;
+        this.controlType = controlType;
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.minDiameter = minDiameter;
+        this.maxDiameter = maxDiameter;
+    }
+
+    /**
+     * Place a new pair for this key.
+     * @return A freshly generated DotsPair.
+     */
+    DotsPair generate() {
+        return new DotsPair(numCirclesOne, numSquaresOne, numCirclesTwo, numSquaresTwo,
+                controlType, canvasWidth, canvasHeight);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of every field. Stable across runs, so it can address
+     * pairs stored on disk.
+     * @return The fingerprint of this key.
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        int[] fields = {numCirclesOne, numSquaresOne, numCirclesTwo, numSquaresTwo,
+                controlType.ordinal(), canvasWidth, canvasHeight, minDiameter, maxDiameter};
+        for (int field : fields) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                hash ^= (field >>> shift) & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StimulusKey)) {
+            return false;
+        }
+        StimulusKey k = (StimulusKey) o;
+        return numCirclesOne == k.numCirclesOne
+                && numSquaresOne == k.numSquaresOne
+                && numCirclesTwo == k.numCirclesTwo
+                && numSquaresTwo == k.numSquaresTwo
+                && controlType == k.controlType
+                && canvasWidth == k.canvasWidth
+                && canvasHeight == k.canvasHeight
+                && minDiameter == k.minDiameter
+                && maxDiameter == k.maxDiameter;
+    }
+
+    @Override
+    public int hashCode() {
+        long fingerprint = this.fingerprint();
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "{" + numCirclesOne + "+" + numSquaresOne + "," + numCirclesTwo + "+" + numSquaresTwo
+                + "," + controlType + "," + canvasWidth + "x" + canvasHeight
+                + ",d" + minDiameter + "-" + maxDiameter + "}";
+    }
+}
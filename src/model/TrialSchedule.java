@@ -0,0 +1,148 @@
+package model;
+
+/**
+ * The precompiled sequence of trials of one session, built up front by
+ * ScheduleCompiler.
+ *
+ * Classes Related To:
+ *  -ScheduleCompiler.java
+ *      -Builds the TrialSchedule.
+ *  -DotsPairGenerator.java
+ *      -Indexes the schedule instead of picking ratios and control types at runtime.
+ *
+ * Each trial is packed into a single int:
+ *
+ *  bits 0-1   block
+ *  bits 2-4   index into DotsPairGenerator.BLOCK_RATIOS
+ *  bits 5-8   extra multiples of the ratio (see DotsPairGenerator.maxExtraMultiples)
+ *  bit  9     control type (0 = EQUAL_AREAS, 1 = INVERSE_AREAS)
+ *  bits 10-11 index of the color pair of the block
+ *  bit  12    1 if F is for "Yes"
+ *
+ * The practice trials come first, followed by each block in order.
+ */
+public class TrialSchedule {
+
+    private static final int BLOCK_SHIFT = 0;
+    private static final int BLOCK_MASK = 0x3;
+    private static final int RATIO_SHIFT = 2;
+    private static final int RATIO_MASK = 0x7;
+    private static final int MULTIPLES_SHIFT = 5;
+    private static final int MULTIPLES_MASK = 0xF;
+    private static final int CONTROL_SHIFT = 9;
+    private static final int CONTROL_MASK = 0x1;
+    private static final int COLOR_SHIFT = 10;
+    private static final int COLOR_MASK = 0x3;
+    private static final int F_FOR_TRUE_SHIFT = 12;
+
+    /** Largest number of extra multiples that can be stored. */
+    static final int MAX_MULTIPLES = MULTIPLES_MASK;
+
+    /** Every trial of the session, packed. */
+    private final int[] trials;
+
+    /** Index of the first trial of each block. */
+    private final int[] blockStarts;
+
+    /** Number of practice trials at the start of the schedule. */
+    private final int numPracticeTrials;
+
+    TrialSchedule(int[] trials, int[] blockStarts, int numPracticeTrials) {
+        this.trials = trials;
+        this.blockStarts = blockStarts;
+        this.numPracticeTrials = numPracticeTrials;
+    }
+
+    /**
+     * Pack one trial into an int.
+     */
+    static int encode(int block, int ratioIndex, int extraMultiples, ControlType controlType,
+            int colorPairIndex, boolean FforTrue) {
+        int controlBit = controlType == ControlType.INVERSE_AREAS ? 1 : 0;
+        int FforTrueBit = FforTrue ? 1 : 0;
+        return (block << BLOCK_SHIFT)
+                | (ratioIndex << RATIO_SHIFT)
+                | (extraMultiples << MULTIPLES_SHIFT)
+                | (controlBit << CONTROL_SHIFT)
+                | (colorPairIndex << COLOR_SHIFT)
+                | (FforTrueBit << F_FOR_TRUE_SHIFT);
+    }
+
+    public static int getBlock(int trial) {
+        return (trial >>> BLOCK_SHIFT) & BLOCK_MASK;
+    }
+
+    public static int getRatioIndex(int trial) {
+        return (trial >>> RATIO_SHIFT) & RATIO_MASK;
+    }
+
+    public static Ratio getRatio(int trial) {
+        return DotsPairGenerator.BLOCK_RATIOS[getRatioIndex(trial)];
+    }
+
+    public static int getExtraMultiples(int trial) {
+        return (trial >>> MULTIPLES_SHIFT) & MULTIPLES_MASK;
+    }
+
+    public static ControlType getControlType(int trial) {
+        if (((trial >>> CONTROL_SHIFT) & CONTROL_MASK) == 1) {
+            return ControlType.INVERSE_AREAS;
+        }
+        return ControlType.EQUAL_AREAS;
+    }
+
+    public static int getColorPairIndex(int trial) {
+        return (trial >>> COLOR_SHIFT) & COLOR_MASK;
+    }
+
+    public static boolean isFforTrue(int trial) {
+        return ((trial >>> F_FOR_TRUE_SHIFT) & 1) == 1;
+    }
+
+    /**
+     * @param index Position in the session.
+     * @return The packed trial at that position.
+     */
+    public int get(int index) {
+        return this.trials[index];
+    }
+
+    public int size() {
+        return this.trials.length;
+    }
+
+    public int getNumPracticeTrials() {
+        return this.numPracticeTrials;
+    }
+
+    public int getNumBlocks() {
+        return this.blockStarts.length;
+    }
+
+    /**
+     * @param blockIndex The position of the block in the session (not its block mode).
+     * @return Index of the first trial of the block.
+     */
+    public int getBlockStart(int blockIndex) {
+        return this.blockStarts[blockIndex];
+    }
+
+    /**
+     * @param blockIndex The position of the block in the session (not its block mode).
+     * @return Index one past the last trial of the block.
+     */
+    public int getBlockEnd(int blockIndex) {
+        if (blockIndex + 1 < this.blockStarts.length) {
+            return this.blockStarts[blockIndex + 1];
+        }
+        return this.trials.length;
+    }
+
+    /**
+     * @param blockIndex The position of the block in the session.
+     * @return The block mode of that block.
+     */
+    public int getBlockMode(int blockIndex) {
+        return getBlock(this.trials[this.blockStarts[blockIndex]]);
+    }
+}
@@ -0,0 +1,149 @@
+package replay;
+
+import java.util.Random;
+
+import controller.CurrentState;
+import controller.GameController;
+import controller.SessionJournal;
+import model.DotsPair;
+import model.DotsPairGenerator;
+import model.ScheduleCompiler;
+
+/**
+ * The pairs of a precompiled, journaled session, rebuilt from its seed trial by
+ * trial without a controller or a display.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java
+ *      -Does the same bookkeeping between trials: counting rounds into the block,
+ *      changing blocks, and clearing the ratios and the player's score after practice.
+ *  -SessionJournal.java
+ *      -Every pair is placed from SessionJournal.pairSeed() of the session seed
+ *      and the trial index, as the controller does when it journals.
+ *  -SessionReplay.java, StimulusExporter.java
+ *      -Walk sessions with this class.
+ *
+ * Each trial is nextPair(), then recordResponse(), then endTrial(); the getters
+ * between recordResponse() and endTrial() match the Checkpoint the controller
+ * journals for the trial.
+ */
+public class ScheduledSession {
+
+    /** Number of trials of a complete session, practice included. */
+    public static final int NUM_TRIALS = GameController.NUM_PRACTICE_ROUNDS + GameController.NUM_ROUNDS;
+
+    private final long seed;
+    private final DotsPairGenerator dpg;
+
+    private CurrentState state = CurrentState.PRACTICE;
+    private int trialIndex;
+    private int numRoundsIntoBlock;
+    private int numRounds;
+    private int numCorrect;
+    private boolean done;
+
+    /**
+     * @param seed Seed of the session.
+     * @param canvasWidth Width of the dots canvas the session was placed in.
+     * @param canvasHeight Height of the dots canvas.
+     */
+    public ScheduledSession(long seed, int canvasWidth, int canvasHeight) {
+        this.seed = seed;
+        // Every pair is seeded, and seeded pairs are placed live, so the bank would only be opened and filled.
+        this.dpg = new DotsPairGenerator(canvasWidth, canvasHeight, false);
+        this.dpg.useSchedule(ScheduleCompiler.compile(new Random(seed), GameController.NUM_PRACTICE_ROUNDS,
+                GameController.NUM_QUESTIONS_PER_BLOCK, GameController.NUM_COLOR_PAIRS));
+    }
+
+    /**
+     * Place the pair of the next trial.
+     */
+    public DotsPair nextPair() {
+        this.dpg.seedNextPair(SessionJournal.pairSeed(this.seed, this.trialIndex));
+        this.dpg.getNewModePair();
+        if (this.state != CurrentState.PRACTICE) {
+            this.numRoundsIntoBlock++;
+        }
+        return this.dpg.getDotsPair();
+    }
+
+    /**
+     * Count the response to the pair.
+     */
+    public void recordResponse(boolean correct) {
+        this.dpg.recordResponse(correct);
+        this.numRounds++;
+        if (correct) {
+            this.numCorrect++;
+        }
+        this.trialIndex++;
+    }
+
+    /**
+     * Move on to the next block, or from practice to the assessment, if the trial ended one.
+     */
+    public void endTrial() {
+        if (this.numRoundsIntoBlock >= GameController.NUM_QUESTIONS_PER_BLOCK) {
+            this.numRoundsIntoBlock = 0;
+            this.dpg.changeBlock();
+        }
+        if (this.numRounds >= GameController.NUM_ROUNDS) {
+            this.done = true;
+        } else if (this.state == CurrentState.PRACTICE && this.numRounds >= GameController.NUM_PRACTICE_ROUNDS) {
+            this.dpg.clearRatios();
+            this.state = CurrentState.GAMEPLAY;
+            this.numRounds = 0;
+            this.numCorrect = 0;
+        }
+    }
+
+    /**
+     * Carry on from recorded counts instead of the replayed ones.
+     */
+    void setCounts(int numRoundsIntoBlock, int numRounds, int numCorrect) {
+        this.numRoundsIntoBlock = numRoundsIntoBlock;
+        this.numRounds = numRounds;
+        this.numCorrect = numCorrect;
+    }
+
+    public DotsPairGenerator getGenerator() {
+        return this.dpg;
+    }
+
+    public CurrentState getState() {
+        return this.state;
+    }
+
+    /**
+     * @return Number of trials answered so far.
+     */
+    public int getTrialIndex() {
+        return this.trialIndex;
+    }
+
+    public int getNumRoundsIntoBlock() {
+        return this.numRoundsIntoBlock;
+    }
+
+    public int getNumRounds() {
+        return this.numRounds;
+    }
+
+    public int getNumCorrect() {
+        return this.numCorrect;
+    }
+
+    /**
+     * @return Index of the color pair of the current block, as the controller picks it.
+     */
+    public int getColorPairIndex() {
+        return this.dpg.getScheduledColorPairIndex();
+    }
+
+    /**
+     * @return true once the last trial of the session has ended.
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+}
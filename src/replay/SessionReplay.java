@@ -0,0 +1,286 @@
+package replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import controller.CurrentState;
+import controller.DataWriter;
+import controller.SessionJournal;
+import model.DotsPair;
+import model.DotsPairGenerator;
+import model.GameLogic;
+import model.MagnitudeMetrics;
+
+/**
+ * Replays journaled sessions headlessly and checks that they come out the same.
+ *
+ * Classes Related To:
+ *  -SessionJournal.java
+ *      -The journals replayed: the session seed, canvas size and F/J, and the
+ *      Checkpoint and Outcome of every trial.
+ *  -ScheduledSession.java
+ *      -Rebuilds the pairs and does the controller's bookkeeping between trials.
+ *  -SoftwareRasterizer.java
+ *      -Re-renders every pair.
+ *  -DataWriter.java
+ *      -The subject's CSV file, whose magnitude columns are checked.
+ *
+ * For every session the schedule is compiled from the session seed, and every
+ * pair is rebuilt by seeding the generator with SessionJournal.pairSeed() of
+ * the trial, so no stimuli need to be archived. Each pair is then
+ *  -checked against the fingerprint of the pair that was shown,
+ *  -rendered, and its pixels checked against the area of each dot set,
+ *  -answered with the key that was pressed, through GameLogic, and its
+ *   yesCorrect and correctness checked against what was recorded,
+ *  -if it was a trial of the assessment, checked against its row of the
+ *   subject's CSV file: the number of dots and the magnitude metrics of both
+ *   dot sets must be those of the rebuilt pair.
+ * After every trial the replayed block, schedule position, rounds and score
+ * are checked against the Checkpoint. The journal does not record the block
+ * statistics the session logged, so those are not checked; they follow from
+ * the correctness and response times of the trials. The rows of the session
+ * are those of the subject dated from its start to its last trial, which are
+ * the first of its assessment trials in order. A session without rows, e.g.
+ * when replayed away from the station's results folder, is replayed without
+ * checking them.
+ *
+ * Nothing waits on a clock, so a session replays in milliseconds; the speedup
+ * over the recorded session is printed. The replay needs the generator settings
+ * the session ran with, i.e. the same defaultconfig.properties.
+ *
+ * Usage: java replay.SessionReplay [journal files or folders]
+ * With no arguments, every journal in the journal folder is replayed. Prints
+ * one CSV line per session and the first mismatches of each to System.err;
+ * exits with 1 if any session did not replay the same.
+ */
+public class SessionReplay {
+
+    /** Largest difference between a set's pixels and its area, as a fraction of the area. */
+    static final double AREA_TOLERANCE = 0.05;
+
+    /** Mismatches printed per session. */
+    static final int MAX_REPORTED_MISMATCHES = 10;
+
+    /**
+     * Result of replaying one session.
+     */
+    public static class Result {
+        public int numTrials;
+        /** Number of trials checked against a row of the subject's CSV file. */
+        public int numCheckedRows;
+        public long replayNanos;
+        /** Time from the start of the session to its last response, 0 if not recorded. */
+        public long recordedMillis;
+        public long recordedRenderNanos;
+        public long replayedRenderNanos;
+        public final ArrayList<String> mismatches = new ArrayList<String>();
+
+        public boolean matches() {
+            return this.mismatches.isEmpty();
+        }
+
+        /**
+         * @return How many times faster than the session the replay ran, 0 if unknown.
+         */
+        public double getSpeedup() {
+            return this.replayNanos == 0 ? 0 : this.recordedMillis * 1000000.0 / this.replayNanos;
+        }
+
+        void mismatch(int trial, String what, Object recorded, Object replayed) {
+            this.mismatches.add((trial < 0 ? "session" : "trial " + trial) + ": " + what + " was " + recorded
+                    + ", replayed " + replayed);
+        }
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger("mylog").setLevel(Level.WARNING);
+        ArrayList<File> files = new ArrayList<File>();
+        for (String arg : args.length == 0 ? new String[] {SessionJournal.JOURNAL_DIR} : args) {
+            File file = new File(arg);
+            File[] journals = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".journal")) : null;
+            if (journals != null) {
+                Arrays.sort(journals);
+                files.addAll(Arrays.asList(journals));
+            } else {
+                files.add(file);
+            }
+        }
+
+        boolean allMatch = true;
+        System.out.println("journal,subject,trials,checkedRows,mismatches,replayMs,recordedMs,speedup,"
+                + "recordedRenderMs,replayedRenderMs");
+        for (File file : files) {
+            SessionJournal.Contents contents = SessionJournal.read(file);
+            if (contents == null) {
+                System.err.println(file + ": not a session journal.");
+                allMatch = false;
+                continue;
+            }
+            Result result = replay(contents);
+            System.out.printf("%s,%s,%d,%d,%d,%.2f,%d,%.0f,%.3f,%.3f%n", file.getName(), contents.subjectId,
+                    result.numTrials, result.numCheckedRows, result.mismatches.size(), result.replayNanos / 1000000.0,
+                    result.recordedMillis, result.getSpeedup(), result.recordedRenderNanos / 1000000.0,
+                    result.replayedRenderNanos / 1000000.0);
+            for (int i = 0; i < Math.min(MAX_REPORTED_MISMATCHES, result.mismatches.size()); i++) {
+                System.err.println(file.getName() + ": " + result.mismatches.get(i));
+            }
+            allMatch &= result.matches();
+        }
+        System.exit(allMatch ? 0 : 1);
+    }
+
+    /**
+     * Replay one session.
+     */
+    public static Result replay(SessionJournal.Contents contents) {
+        Result result = new Result();
+        if (contents.canvasWidth <= 0 || contents.canvasHeight <= 0) {
+            result.mismatches.add("the journal has no canvas size; it was written before replay was possible");
+            return result;
+        }
+        long start = System.nanoTime();
+        ScheduledSession session = new ScheduledSession(contents.seed, contents.canvasWidth, contents.canvasHeight);
+        DotsPairGenerator dpg = session.getGenerator();
+        if (dpg.isScheduledFforTrue() != contents.fForTrue) {
+            result.mismatch(0, "F for \"Yes\"", contents.fForTrue, dpg.isScheduledFforTrue());
+        }
+        SoftwareRasterizer rasterizer = new SoftwareRasterizer(contents.canvasWidth, contents.canvasHeight);
+        List<Map<String, String>> rows = readRows(result, contents);
+        int numAssessed = 0;
+
+        for (int trialIndex = 0; trialIndex < contents.trials.size(); trialIndex++) {
+            SessionJournal.Trial trial = contents.trials.get(trialIndex);
+            SessionJournal.Checkpoint checkpoint = trial.checkpoint;
+            SessionJournal.Outcome outcome = trial.outcome;
+            result.numTrials++;
+            if (session.isDone()) {
+                result.mismatch(trialIndex, "the session", "still running", "over");
+                break;
+            }
+            if (outcome == null) {
+                result.mismatch(trialIndex, "the outcome", "not recorded", "needed");
+                break;
+            }
+
+            CurrentState state = session.getState();
+            DotsPair dotsPair = session.nextPair();
+            if (dotsPair.fingerprint() != outcome.pairFingerprint) {
+                result.mismatch(trialIndex, "the pair", Long.toHexString(outcome.pairFingerprint),
+                        Long.toHexString(dotsPair.fingerprint()));
+            }
+            long renderStart = System.nanoTime();
+            rasterizer.render(dotsPair);
+            result.replayedRenderNanos += System.nanoTime() - renderStart;
+            result.recordedRenderNanos += outcome.renderNanos;
+            checkArea(result, trialIndex, "set one", dotsPair.getDotSetOne().getTotalArea(),
+                    rasterizer.getCount(SoftwareRasterizer.SET_ONE));
+            checkArea(result, trialIndex, "set two", dotsPair.getDotSetTwo().getTotalArea(),
+                    rasterizer.getCount(SoftwareRasterizer.SET_TWO));
+
+            boolean yesCorrect = GameLogic.checkWhichSideCorrect(dotsPair, dpg.getBlockMode());
+            boolean correct = GameLogic.checkAnswerCorrect(outcome.pressedF, yesCorrect, contents.fForTrue);
+            session.recordResponse(correct);
+            check(result, trialIndex, "the block mode", outcome.blockMode, dpg.getBlockMode());
+            check(result, trialIndex, "yesCorrect", outcome.yesCorrect, yesCorrect);
+            check(result, trialIndex, "correct", outcome.correct, correct);
+            if (state == CurrentState.GAMEPLAY) {
+                if (numAssessed < rows.size()) {
+                    checkRow(result, trialIndex, rows.get(numAssessed), dotsPair);
+                    result.numCheckedRows++;
+                }
+                numAssessed++;
+            }
+            check(result, trialIndex, "the trial index", checkpoint.trialIndex, session.getTrialIndex());
+            check(result, trialIndex, "the state", checkpoint.state, state);
+            check(result, trialIndex, "the block index", checkpoint.blockIndex, dpg.getBlockIndex());
+            check(result, trialIndex, "the rounds into the block", checkpoint.numRoundsIntoBlock,
+                    session.getNumRoundsIntoBlock());
+            check(result, trialIndex, "the schedule position", checkpoint.schedulePosition, dpg.getSchedulePosition());
+            check(result, trialIndex, "the number of rounds", checkpoint.numRounds, session.getNumRounds());
+            check(result, trialIndex, "the number correct", checkpoint.numCorrect, session.getNumCorrect());
+            // Carry on from the recorded counts, so one mismatch is reported once and not at every later trial.
+            session.setCounts(checkpoint.numRoundsIntoBlock, checkpoint.numRounds, checkpoint.numCorrect);
+
+            session.endTrial();
+            result.recordedMillis = outcome.wallClockMillis - contents.startedMillis;
+        }
+        if (!rows.isEmpty() && rows.size() != numAssessed) {
+            result.mismatch(-1, "the number of rows in the results", rows.size(), numAssessed);
+        }
+        result.replayNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * The rows of the subject's CSV file dated from the start of the session to its last trial.
+     */
+    private static List<Map<String, String>> readRows(Result result, SessionJournal.Contents contents) {
+        long lastMillis = contents.startedMillis;
+        for (SessionJournal.Trial trial : contents.trials) {
+            if (trial.outcome != null) {
+                lastMillis = trial.outcome.wallClockMillis;
+            }
+        }
+        try {
+            return DataWriter.readRows(contents.subjectId, contents.startedMillis, lastMillis);
+        } catch (IOException e) {
+            result.mismatch(-1, "the results", "unreadable", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Check the number of dots and the magnitude columns of a row against the rebuilt pair.
+     */
+    private static void checkRow(Result result, int trial, Map<String, String> row, DotsPair dotsPair) {
+        MagnitudeMetrics one = dotsPair.getMetricsOne();
+        MagnitudeMetrics two = dotsPair.getMetricsTwo();
+        checkColumn(result, trial, row, DataWriter.LEFT_CHOICE, dotsPair.getDotSetOne().getPositions().size());
+        checkColumn(result, trial, row, DataWriter.RIGHT_CHOICE, dotsPair.getDotSetTwo().getPositions().size());
+        checkColumn(result, trial, row, DataWriter.TOTAL_AREA_ONE, one.getTotalArea());
+        checkColumn(result, trial, row, DataWriter.TOTAL_AREA_TWO, two.getTotalArea());
+        checkColumn(result, trial, row, DataWriter.CONVEX_HULL_ONE, one.getConvexHullArea());
+        checkColumn(result, trial, row, DataWriter.CONVEX_HULL_TWO, two.getConvexHullArea());
+        checkColumn(result, trial, row, DataWriter.DENSITY_ONE, one.getDensity());
+        checkColumn(result, trial, row, DataWriter.DENSITY_TWO, two.getDensity());
+        checkColumn(result, trial, row, DataWriter.NEAREST_NEIGHBOR_ONE, one.getMeanNearestNeighborDistance());
+        checkColumn(result, trial, row, DataWriter.NEAREST_NEIGHBOR_TWO, two.getMeanNearestNeighborDistance());
+        checkColumn(result, trial, row, DataWriter.PERIMETER_ONE, one.getTotalPerimeter());
+        checkColumn(result, trial, row, DataWriter.PERIMETER_TWO, two.getTotalPerimeter());
+        checkColumn(result, trial, row, DataWriter.FIELD_AREA_ONE, one.getFieldArea());
+        checkColumn(result, trial, row, DataWriter.FIELD_AREA_TWO, two.getFieldArea());
+    }
+
+    /**
+     * Check a column against its value as DataWriter writes it.
+     */
+    private static void checkColumn(Result result, int trial, Map<String, String> row, String column, Object value) {
+        String recorded = row.get(column);
+        String replayed = String.valueOf(value);
+        if (!replayed.equals(recorded)) {
+            result.mismatch(trial, "the column \"" + column + "\"", recorded, replayed);
+        }
+    }
+
+    private static void check(Result result, int trial, String what, Object recorded, Object replayed) {
+        if (!recorded.equals(replayed)) {
+            result.mismatch(trial, what, recorded, replayed);
+        }
+    }
+
+    /**
+     * Check that a dot set covers as many pixels as its area, within AREA_TOLERANCE.
+     */
+    private static void checkArea(Result result, int trial, String dotSet, double area, int pixels) {
+        if (Math.abs(pixels - area) > AREA_TOLERANCE * area + 1) {
+            result.mismatch(trial, "the area of " + dotSet, Math.round(area), pixels + " pixels");
+        }
+    }
+}
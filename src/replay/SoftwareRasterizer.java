@@ -0,0 +1,128 @@
+package replay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Arrays;
+
+import model.Coordinate;
+import model.Coordinate.Shape;
+import model.DotSet;
+import model.DotsPair;
+
+/**
+ * Draws DotsPairs into an array of pixels without JavaFX, so a session can be
+ * re-rendered headlessly and much faster than the screen refreshes.
+ *
+ * Classes Related To:
+ *  -SessionReplay.java
+ *      -Renders every replayed pair here and checks the pixels against the pair.
+ *  -DotsRenderer.java
+ *      -Draws the same shapes on the canvas during a session: circles inscribed
+ *      in the dot's box at its position, squares filling the box.
+ *
+ * A pixel belongs to a dot if its center is inside the dot, without
+ * antialiasing. Set one is drawn as SET_ONE and set two as SET_TWO over it;
+ * anything outside the canvas is not drawn, so a dot that sticks out of the
+ * canvas shows up as missing pixels.
+ */
+public class SoftwareRasterizer {
+
+    static final int BACKGROUND = 0;
+    static final int SET_ONE = 1;
+    static final int SET_TWO = 2;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    /** Pixels drawn by the last render(), by value. */
+    private final int[] counts = new int[3];
+
+    public SoftwareRasterizer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    /**
+     * Clear the frame and draw both dot sets of the pair.
+     */
+    public void render(DotsPair dotsPair) {
+        Arrays.fill(this.pixels, BACKGROUND);
+        Arrays.fill(this.counts, 0);
+        this.counts[BACKGROUND] = this.pixels.length;
+        this.drawDotSet(dotsPair.getDotSetOne(), SET_ONE);
+        this.drawDotSet(dotsPair.getDotSetTwo(), SET_TWO);
+    }
+
+    private void drawDotSet(DotSet dotSet, int value) {
+        ArrayList<Coordinate> positions = dotSet.getPositions();
+        List<Double> diameters = dotSet.getDiameters();
+        for (int i = 0; i < dotSet.getTotalNumDots(); i++) {
+            Coordinate position = positions.get(i);
+            double diameter = diameters.get(i);
+            if (position.shape == Shape.CIRCLE) {
+                this.fillCircle(position.x, position.y, diameter, value);
+            } else if (position.shape == Shape.SQUARE) {
+                this.fillRect(position.x, position.y, diameter, value);
+            }
+        }
+    }
+
+    /**
+     * Fill the circle inscribed in the box of the given diameter at (x, y), one row span at a time.
+     */
+    private void fillCircle(int x, int y, double diameter, int value) {
+        double radius = diameter / 2;
+        double centerX = x + radius;
+        double centerY = y + radius;
+        int top = Math.max(0, (int) Math.floor(y));
+        int bottom = Math.min(this.height, (int) Math.ceil(y + diameter));
+        for (int row = top; row < bottom; row++) {
+            double dy = row + 0.5 - centerY;
+            double halfWidth = radius * radius - dy * dy;
+            if (halfWidth < 0) {
+                continue;
+            }
+            halfWidth = Math.sqrt(halfWidth);
+            int from = (int) Math.ceil(centerX - halfWidth - 0.5);
+            int to = (int) Math.floor(centerX + halfWidth - 0.5);
+            this.fillSpan(row, from, to + 1, value);
+        }
+    }
+
+    private void fillRect(int x, int y, double size, int value) {
+        int bottom = Math.min(this.height, (int) Math.round(y + size));
+        int right = (int) Math.round(x + size);
+        for (int row = Math.max(0, y); row < bottom; row++) {
+            this.fillSpan(row, x, right, value);
+        }
+    }
+
+    /**
+     * Set the pixels of a row from from (inclusive) to to (exclusive), clipped to the frame.
+     */
+    private void fillSpan(int row, int from, int to, int value) {
+        int start = row * this.width;
+        for (int column = Math.max(0, from); column < Math.min(this.width, to); column++) {
+            this.counts[this.pixels[start + column]]--;
+            this.pixels[start + column] = value;
+            this.counts[value]++;
+        }
+    }
+
+    /**
+     * @param value SET_ONE, SET_TWO or BACKGROUND.
+     * @return Number of pixels of the value in the last frame.
+     */
+    public int getCount(int value) {
+        return this.counts[value];
+    }
+
+    /**
+     * @return The pixels of the last frame, row by row. Must not be modified.
+     */
+    public int[] getPixels() {
+        return this.pixels;
+    }
+}
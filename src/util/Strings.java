@@ -31,6 +31,8 @@ public class Strings {
     public static final String YES_SP = "S";
     public static final String NO_SP = "No";
     
+    public static final String RESUME_MESSAGE_SP = "Continuar la sesion interrumpida de %s en el ensayo %d?";
+    
     public static final String ENTER_SUBJECT_ID_EN = "Enter your JHED ID";
     public static final String PICK_YOUR_GENDER_EN = "Pick your Gender";
     public static final String ENTER_AGE_EN = "Enter your age";
@@ -55,4 +57,6 @@ public class Strings {
     public static final String QUIT_MESSAGE_EN = "Quit the assessment?";
     public static final String YES_EN = "Yes";
     public static final String NO_EN = "No";
+    
+    public static final String RESUME_MESSAGE_EN = "Resume the interrupted session of %s at trial %d?";
 }
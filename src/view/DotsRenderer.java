@@ -0,0 +1,169 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import model.Coordinate;
+import model.Coordinate.Shape;
+import model.DotSet;
+import model.DotsPair;
+
+/**
+ * Paints DotsPairs onto the dots canvas and clears them again, touching only
+ * the pixels the last frame drew on.
+ *
+ * Classes Related To:
+ *  -DotsGameController.java
+ *      -Paints every pair with paint() and clears it with clear().
+ *  -GameGUI.java
+ *      -Owns the canvas this renderer draws on.
+ *
+ * Each DotSet is painted as one path holding all of its dots, filled once in
+ * the set's color, and the bounding box of the path is remembered as dirty.
+ * clear() fills only the dirty boxes with the background color; if the two
+ * boxes overlap so much that one fill of their union is cheaper, it fills the
+ * union instead. After invalidateAll() the next clear() fills the whole canvas.
+ *
+ * The time spent issuing the commands of the last paint() and clear() is kept so
+ * the controller can report it. JavaFX renders the commands on the next pulse,
+ * so this is the time the FX thread is busy, not the time until the dots appear.
+ */
+public class DotsRenderer {
+
+    /** Pixels added around every dirty box for antialiased edges. */
+    static final int DIRTY_MARGIN = 2;
+
+    private final GraphicsContext graphicsContext;
+    private final Color background;
+
+    /** Boxes drawn on since the last clear: {x, y, width, height}. */
+    private final ArrayList<double[]> dirty = new ArrayList<double[]>();
+
+    /** True if the whole canvas must be cleared. */
+    private boolean allDirty = true;
+
+    private long lastPaintNanos;
+    private long lastClearNanos;
+
+    /**
+     * @param graphicsContext Context of the dots canvas.
+     * @param background Color the canvas is cleared to.
+     */
+    public DotsRenderer(GraphicsContext graphicsContext, Color background) {
+        this.graphicsContext = graphicsContext;
+        this.background = background;
+    }
+
+    /**
+     * Paint both dot sets of a pair, each in its color, clearing the last
+     * frame first if it was not cleared.
+     */
+    public void paint(DotsPair dotsPair, Color colorOne, Color colorTwo) {
+        long start = System.nanoTime();
+        this.clearDirty();
+        this.paintDotSet(dotsPair.getDotSetOne(), colorOne);
+        this.paintDotSet(dotsPair.getDotSetTwo(), colorTwo);
+        this.lastPaintNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Clear what the last frame drew.
+     */
+    public void clear() {
+        long start = System.nanoTime();
+        this.clearDirty();
+        this.lastClearNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Make the next clear fill the whole canvas, e.g. after it was resized.
+     */
+    public void invalidateAll() {
+        this.allDirty = true;
+    }
+
+    private void clearDirty() {
+        this.graphicsContext.setFill(this.background);
+        if (this.allDirty) {
+            this.graphicsContext.fillRect(0, 0, this.graphicsContext.getCanvas().getWidth(),
+                    this.graphicsContext.getCanvas().getHeight());
+            this.allDirty = false;
+        } else if (this.dirty.size() == 2 && this.cheaperAsUnion(this.dirty.get(0), this.dirty.get(1))) {
+            double[] a = this.dirty.get(0);
+            double[] b = this.dirty.get(1);
+            double x = Math.min(a[0], b[0]);
+            double y = Math.min(a[1], b[1]);
+            this.graphicsContext.fillRect(x, y, Math.max(a[0] + a[2], b[0] + b[2]) - x,
+                    Math.max(a[1] + a[3], b[1] + b[3]) - y);
+        } else {
+            for (double[] box : this.dirty) {
+                this.graphicsContext.fillRect(box[0], box[1], box[2], box[3]);
+            }
+        }
+        this.dirty.clear();
+    }
+
+    /**
+     * @return true if the union of the boxes is no larger than their summed areas.
+     */
+    private boolean cheaperAsUnion(double[] a, double[] b) {
+        double width = Math.max(a[0] + a[2], b[0] + b[2]) - Math.min(a[0], b[0]);
+        double height = Math.max(a[1] + a[3], b[1] + b[3]) - Math.min(a[1], b[1]);
+        return width * height <= a[2] * a[3] + b[2] * b[3];
+    }
+
+    /**
+     * Add every dot of the set to one path, fill it, and mark its bounding box dirty.
+     */
+    private void paintDotSet(DotSet dotSet, Color color) {
+        if (dotSet.getTotalNumDots() == 0) {
+            return;
+        }
+        ArrayList<Coordinate> positions = dotSet.getPositions();
+        List<Double> diameters = dotSet.getDiameters();
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+
+        this.graphicsContext.beginPath();
+        for (int i = 0; i < dotSet.getTotalNumDots(); i++) {
+            Coordinate position = positions.get(i);
+            double diameter = diameters.get(i);
+            double radius = diameter / 2;
+            if (position.shape == Shape.CIRCLE) {
+                this.graphicsContext.moveTo(position.x + diameter, position.y + radius);
+                this.graphicsContext.arc(position.x + radius, position.y + radius, radius, radius, 0, 360);
+                this.graphicsContext.closePath();
+            } else if (position.shape == Shape.SQUARE) {
+                this.graphicsContext.rect(position.x, position.y, diameter, diameter);
+            }
+            minX = Math.min(minX, position.x);
+            minY = Math.min(minY, position.y);
+            maxX = Math.max(maxX, position.x + diameter);
+            maxY = Math.max(maxY, position.y + diameter);
+        }
+        this.graphicsContext.setFill(color);
+        this.graphicsContext.fill();
+
+        this.dirty.add(new double[] {minX - DIRTY_MARGIN, minY - DIRTY_MARGIN,
+                maxX - minX + 2 * DIRTY_MARGIN, maxY - minY + 2 * DIRTY_MARGIN});
+    }
+
+    /**
+     * @return Nanoseconds spent issuing the commands of the last paint(),
+     * including clearing the frame before it.
+     */
+    public long getLastPaintNanos() {
+        return this.lastPaintNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent issuing the commands of the last clear().
+     */
+    public long getLastClearNanos() {
+        return this.lastClearNanos;
+    }
+}
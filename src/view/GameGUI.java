@@ -47,6 +47,8 @@ public class GameGUI {
     private Scene scene;
     /** The pane of the game */
     private AnchorPane layout;
+    /** Node trees of the screens shown more than once. */
+    private final ScreenCache screenCache = new ScreenCache();
     
     /** Login Screen - start button. */
     private Button start;
@@ -111,7 +113,7 @@ public class GameGUI {
 
     /** 
      * Constructor for the user interface. Sets the stage
-     * and login screen.
+     * and login screen. Call finishStartup() once it is shown.
      * @param stage The user interface stage.
      * @throws IOException 
      */
@@ -131,12 +133,24 @@ public class GameGUI {
         SetUp.setExitPopup(this);
     }
     
+    /**
+     * Do what the login screen does not need, once it is shown: load the
+     * resources in the background, initialize the controller and offer to
+     * resume an interrupted session.
+     */
+    public void finishStartup() {
+        ResourceRegistry.preload();
+        this.DGC.initialize();
+        this.DGC.offerResume();
+    }
+    
     /**
      * Sets the login screen where user will input their informmation.
+     * Shown again for every subject in kiosk mode.
      * @param stage The user interface stage.
      * @throws IOException
      */
-    private void setLoginScreen() {
+    public void setLoginScreen() {
         SetUp.setUpLoginScreen(this);
         DGC.setLoginHandlers(); 
     }
@@ -164,6 +178,7 @@ public class GameGUI {
     
     /**
      * Sets the game screen where subject will be presented with two letters.
+     * The screen is built the first time and reused for every later block.
      * @param stage The user interface stage.
      * @param subjectID The subject's ID number.
      */
@@ -188,6 +203,13 @@ public class GameGUI {
         this.scene.setRoot(this.layout);
     }
     
+    /**
+     * Ask if the interrupted session of a subject should be resumed.
+     */
+    public void showResumePopup(String subjectId, int trial, Runnable onResume, Runnable onDiscard) {
+        SetUp.showResumePopup(this, subjectId, trial, onResume, onDiscard);
+    }
+    
     /**
      * Show the exit pop up asking if user wants to quit.
      */
@@ -195,6 +217,13 @@ public class GameGUI {
         SetUp.showExitPopup(this);     
     }
     
+    /**
+     * Quit, as the subject confirmed: exit, or go back to the login screen in kiosk mode.
+     */
+    public void quit() {
+        this.DGC.quit();
+    }
+    
     public Scene getScene() {
         return this.scene;
     }
@@ -203,6 +232,10 @@ public class GameGUI {
         this.scene = s;
     }
     
+    public ScreenCache getScreenCache() {
+        return this.screenCache;
+    }
+    
     public Canvas getDotsCanvas() {
         return this.dotsCanvas;
     }
@@ -0,0 +1,200 @@
+package view;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import javafx.scene.image.Image;
+import javafx.scene.media.AudioClip;
+import metrics.MetricsRegistry;
+
+/**
+ * The images and sounds of the game, decoded once in the background and shared
+ * after that.
+ *
+ * Classes Related To:
+ *  -GameGUI.java
+ *      -Starts loading while the login screen is shown.
+ *  -SetUp.java
+ *      -Shows the mask image on the game screen.
+ *  -DotsGameController.java
+ *      -Plays the feedback sounds after every response.
+ *
+ * preload() decodes every resource on a daemon thread into a registry that is
+ * never changed afterwards. get() returns the registry, waiting for it if it is
+ * not done yet; the subject needs several seconds on the login and
+ * instructions screens, so by the first block it always is, and nothing is
+ * decoded during a block. A wait is logged as a warning.
+ *
+ * The load time and size of every resource are logged, and the totals are
+ * published as the gauges resources.load.ms and resources.bytes. The size of
+ * an image is its decoded size, four bytes per pixel; the size of a sound is
+ * that of its file, since AudioClip does not tell how much it decoded.
+ *
+ * Only resources the game shows are registered; the other files in res/ are
+ * not used anywhere.
+ */
+public final class ResourceRegistry {
+
+    private static Logger logger = Logger.getLogger("mylog");
+
+    /** Mask shown after each pair of dot sets. */
+    public static final String MASK_IMAGE = "/res/images/mask2.png";
+    /** Sound played after a correct response. */
+    public static final String CORRECT_SOUND = "/res/sounds/Ping.aiff";
+    /** Sound played after an incorrect response. */
+    public static final String INCORRECT_SOUND = "/res/sounds/Basso.aiff";
+
+    static final String[] IMAGES = {MASK_IMAGE};
+    static final String[] SOUNDS = {CORRECT_SOUND, INCORRECT_SOUND};
+
+    private static FutureTask<ResourceRegistry> loading;
+
+    private final Map<String, Image> images;
+    private final Map<String, AudioClip> sounds;
+    private final long loadNanos;
+    private final long bytes;
+
+    private ResourceRegistry(Map<String, Image> images, Map<String, AudioClip> sounds, long loadNanos,
+            long bytes) {
+        this.images = Collections.unmodifiableMap(images);
+        this.sounds = Collections.unmodifiableMap(sounds);
+        this.loadNanos = loadNanos;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Start decoding the resources in the background, unless it was started already.
+     */
+    public static synchronized void preload() {
+        if (loading == null) {
+            loading = new FutureTask<ResourceRegistry>(ResourceRegistry::load);
+            Thread loader = new Thread(loading, "resource-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    /**
+     * @return The registry, once every resource has been decoded.
+     */
+    public static ResourceRegistry get() {
+        preload();
+        if (loading.isDone()) {
+            return getLoaded();
+        }
+        long start = System.nanoTime();
+        ResourceRegistry registry = getLoaded();
+        logger.warning(String.format("Waited %.1f ms for resources to load.",
+                (System.nanoTime() - start) / 1000000.0));
+        return registry;
+    }
+
+    private static ResourceRegistry getLoaded() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return loading.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not load resources", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Decode every resource, on the loader thread.
+     */
+    private static ResourceRegistry load() {
+        long start = System.nanoTime();
+        long bytes = 0;
+        HashMap<String, Image> images = new HashMap<String, Image>();
+        for (String path : IMAGES) {
+            long loadStart = System.nanoTime();
+            URL url = ResourceRegistry.class.getResource(path);
+            if (url == null) {
+                logger.severe("Missing image " + path);
+                continue;
+            }
+            Image image = new Image(url.toString());
+            if (image.isError()) {
+                logger.severe("Could not decode image " + path + ": " + image.getException());
+                continue;
+            }
+            long size = (long) image.getWidth() * (long) image.getHeight() * 4;
+            images.put(path, image);
+            bytes += size;
+            logLoaded(path, loadStart, size);
+        }
+        HashMap<String, AudioClip> sounds = new HashMap<String, AudioClip>();
+        for (String path : SOUNDS) {
+            long loadStart = System.nanoTime();
+            URL url = ResourceRegistry.class.getResource(path);
+            if (url == null) {
+                logger.severe("Missing sound " + path);
+                continue;
+            }
+            try {
+                sounds.put(path, new AudioClip(url.toString()));
+                long size = url.openConnection().getContentLengthLong();
+                bytes += Math.max(size, 0);
+                logLoaded(path, loadStart, size);
+            } catch (IOException | RuntimeException e) {
+                logger.severe("Could not load sound " + path + ": " + e);
+            }
+        }
+        ResourceRegistry registry = new ResourceRegistry(images, sounds, System.nanoTime() - start, bytes);
+        logger.info(String.format("Loaded %d images and %d sounds in %.1f ms, %d bytes.", images.size(),
+                sounds.size(), registry.loadNanos / 1000000.0, bytes));
+        MetricsRegistry.getDefault().gauge("resources.load.ms", "Time to decode the images and sounds",
+                () -> registry.loadNanos / 1000000.0);
+        MetricsRegistry.getDefault().gauge("resources.bytes", "Memory held by the images and sounds",
+                () -> registry.bytes);
+        return registry;
+    }
+
+    private static void logLoaded(String path, long start, long size) {
+        logger.info(String.format("Loaded %s in %.1f ms, %d bytes.", path,
+                (System.nanoTime() - start) / 1000000.0, size));
+    }
+
+    /**
+     * @return The image, or null if it could not be loaded.
+     */
+    public Image getImage(String path) {
+        return this.images.get(path);
+    }
+
+    /**
+     * @return The sound, or null if it could not be loaded.
+     */
+    public AudioClip getSound(String path) {
+        return this.sounds.get(path);
+    }
+
+    /**
+     * @return Nanoseconds it took to load every resource.
+     */
+    public long getLoadNanos() {
+        return this.loadNanos;
+    }
+
+    /**
+     * @return Bytes held by the resources.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+}
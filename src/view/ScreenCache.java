@@ -0,0 +1,61 @@
+package view;
+
+import java.util.EnumMap;
+
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.text.Font;
+
+/**
+ * The node trees of the screens that are shown more than once, and the
+ * resources they share, so that showing a screen again only swaps the
+ * children of the layout instead of building and decoding it anew.
+ *
+ * Classes Related To:
+ *  -SetUp.java
+ *      -Builds each screen the first time it is shown and registers its nodes
+ *      here; afterwards it only resets their content.
+ *  -GameGUI.java
+ *      -Owns the cache, one per window.
+ *  -ResourceRegistry.java
+ *      -Holds the mask image, decoded once per process.
+ *
+ * Every block ends on the block complete screen and goes back to the game
+ * screen, so both are built once per session instead of once per block.
+ */
+public class ScreenCache {
+
+    /** The screens that are cached. */
+    public enum Screen {
+        INSTRUCTIONS, CYCLE_COMPLETE, GAME
+    }
+
+    /** Fonts shared by every screen. */
+    static final Font TAHOMA_20 = new Font("Tahoma", 20);
+    static final Font TAHOMA_30 = new Font("Tahoma", 30);
+    static final Font TAHOMA_50 = new Font("Tahoma", 50);
+    static final Font CENTURY_GOTHIC_55 = new Font("Century Gothic", 55);
+
+    private final EnumMap<Screen, Node[]> screens = new EnumMap<Screen, Node[]>(Screen.class);
+
+    /**
+     * @return true if the nodes of the screen have been built.
+     */
+    public boolean isBuilt(Screen screen) {
+        return this.screens.containsKey(screen);
+    }
+
+    /**
+     * Keep the nodes of a screen, in the order they are laid out.
+     */
+    void put(Screen screen, Node... nodes) {
+        this.screens.put(screen, nodes);
+    }
+
+    /**
+     * Make the nodes of a built screen the only children of the layout.
+     */
+    void show(Screen screen, Pane layout) {
+        layout.getChildren().setAll(this.screens.get(screen));
+    }
+}
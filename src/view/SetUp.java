@@ -5,6 +5,7 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Cursor;
+import javafx.scene.Parent;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -12,7 +13,6 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
@@ -50,8 +50,10 @@ public final class SetUp {
     /** Positions of the choices the subject can pick. */
     static final int DOTS_CANVAS_X = (int) (SCREEN_WIDTH * .15);
     static final int DOTS_CANVAS_Y = (int) (SCREEN_HEIGHT * .15);
-    public static final int DOTS_CANVAS_WIDTH = (int) (SCREEN_WIDTH * .7);
-    public static final int DOTS_CANVAS_HEIGHT = (int) (SCREEN_HEIGHT * .7);
+    /** Fraction of the screen's width and height the dots canvas takes up. */
+    public static final double DOTS_CANVAS_FRACTION = .7;
+    public static final int DOTS_CANVAS_WIDTH = (int) (SCREEN_WIDTH * DOTS_CANVAS_FRACTION);
+    public static final int DOTS_CANVAS_HEIGHT = (int) (SCREEN_HEIGHT * DOTS_CANVAS_FRACTION);
    
   
     /** Disable constructing of an object. */
@@ -104,6 +106,7 @@ public final class SetUp {
                 labelAge, view.getEnterAge(), view.getFeedbackAge(), 
                 view.getStart());
         view.getLayout().getChildren().setAll(view.getLoginBox());
+        view.getScene().setCursor(Cursor.DEFAULT);
         view.getEnterId().requestFocus();
         view.getPrimaryStage().show(); 
         view.getLoginBox().setLayoutX((SetUp.SCREEN_WIDTH / 2) - (view.getLoginBox().getWidth() / 2));
@@ -117,36 +120,44 @@ public final class SetUp {
      * @return Scene the instructions scene
      */
     public static void setUpInstructionsScreen(GameGUI view) {
+        ScreenCache cache = view.getScreenCache();
+        if (!cache.isBuilt(ScreenCache.Screen.INSTRUCTIONS)) {
+            buildInstructionsScreen(view);
+        }
+        cache.show(ScreenCache.Screen.INSTRUCTIONS, view.getLayout());
+    }
+    
+    private static void buildInstructionsScreen(GameGUI view) {
         Text instructionsText = new Text();
         instructionsText.setText(Strings.PRESS_NEXT_EN);
         instructionsText.setTextAlignment(TextAlignment.CENTER);
         instructionsText.setLayoutX(SCREEN_WIDTH * .1);
         instructionsText.setLayoutY(SCREEN_HEIGHT * .4);
-        instructionsText.setFont(new Font("Century Gothic", 55));
+        instructionsText.setFont(ScreenCache.CENTURY_GOTHIC_55);
         instructionsText.setWrappingWidth(SCREEN_WIDTH * .8);
         
         view.setLeftKeyGuide(new Label());
         view.setRightKeyGuide(new Label());
         view.setNext(new Button(Strings.NEXT_EN));
-        view.getNext().setFont(new Font("Tahoma", 20));
+        view.getNext().setFont(ScreenCache.TAHOMA_20);
         view.getNext().setPrefHeight(SCREEN_HEIGHT * .06);
         view.getNext().setPrefWidth(SCREEN_WIDTH * .1);
         view.getNext().setLayoutX(SCREEN_WIDTH / 2 - view.getNext().getPrefWidth() / 2);        
         view.getNext().setLayoutY(SCREEN_HEIGHT * .6);
-        view.getLayout().getChildren().setAll(instructionsText, view.getNext(),
+        view.getScreenCache().put(ScreenCache.Screen.INSTRUCTIONS, instructionsText, view.getNext(),
                 view.getLeftKeyGuide(), view.getRightKeyGuide());
         configureKeyGuides(view);
     }
     
     private static void configureKeyGuides(GameGUI view) {
-        view.getLeftKeyGuide().setFont(new Font("Tahoma", 50));
+        view.getLeftKeyGuide().setFont(ScreenCache.TAHOMA_50);
         view.getLeftKeyGuide().setAlignment(Pos.CENTER);
         view.getLeftKeyGuide().setPrefWidth(SCREEN_WIDTH * .4);
         view.getLeftKeyGuide().setPrefHeight(SCREEN_HEIGHT * .1);
         view.getLeftKeyGuide().setLayoutX((SetUp.SCREEN_WIDTH / 3) - view.getLeftKeyGuide().getPrefWidth() / 2);
         view.getLeftKeyGuide().setLayoutY(SCREEN_HEIGHT * .7 - view.getLeftKeyGuide().getPrefHeight() / 2);
         
-        view.getRightKeyGuide().setFont(new Font("Tahoma", 50));
+        view.getRightKeyGuide().setFont(ScreenCache.TAHOMA_50);
         view.getRightKeyGuide().setAlignment(Pos.CENTER);
         view.getRightKeyGuide().setPrefWidth(SCREEN_WIDTH * .4);
         view.getRightKeyGuide().setPrefHeight(SCREEN_HEIGHT * .1);
@@ -186,11 +197,22 @@ public final class SetUp {
             firstOrNext = " next ";
             blockOrPracticeComplete = "Block Complete.";
         }
-        view.setPracticeComplete(new Text(blockOrPracticeComplete + "\n"
+        ScreenCache cache = view.getScreenCache();
+        if (!cache.isBuilt(ScreenCache.Screen.CYCLE_COMPLETE)) {
+            buildCycleCompleteScreen(view);
+        }
+        view.getPracticeComplete().setText(blockOrPracticeComplete + "\n"
                 + "In the" + firstOrNext + "block, the question you will be asked is: \n\n" +
-                question));
+                question);
+        cache.show(ScreenCache.Screen.CYCLE_COMPLETE, view.getLayout());
+        view.getScene().setCursor(Cursor.DEFAULT);
+        view.getPracticeComplete().requestFocus();
+    }
+    
+    private static void buildCycleCompleteScreen(GameGUI view) {
+        view.setPracticeComplete(new Text());
         view.getPracticeComplete().setTextAlignment(TextAlignment.CENTER);
-        view.getPracticeComplete().setFont(new Font("Tahoma", 50));
+        view.getPracticeComplete().setFont(ScreenCache.TAHOMA_50);
         view.getPracticeComplete().setWrappingWidth(SCREEN_WIDTH * .9);
         view.setStartAssessment(new Button(Strings.START_ASSESSMENT_EN));
         view.getPracticeComplete().setLayoutY(SetUp.SCREEN_HEIGHT * .3);
@@ -198,10 +220,8 @@ public final class SetUp {
         view.getStartAssessment().setPrefWidth(SCREEN_HEIGHT * .2);
         view.getStartAssessment().setLayoutY(SetUp.SCREEN_HEIGHT * .8);
         view.getStartAssessment().setLayoutX(SetUp.SCREEN_WIDTH / 2 - view.getStartAssessment().getPrefWidth() / 2);
-        view.getLayout().getChildren().setAll(view.getPracticeComplete(), view.getStartAssessment(),
+        view.getScreenCache().put(ScreenCache.Screen.CYCLE_COMPLETE, view.getPracticeComplete(), view.getStartAssessment(),
                 view.getLeftKeyGuide(), view.getRightKeyGuide());
-        view.getScene().setCursor(Cursor.DEFAULT);
-        view.getPracticeComplete().requestFocus();
     }
     
     /**
@@ -212,7 +232,21 @@ public final class SetUp {
      * @return The game scene.
      */
     public static void setUpGameScreen(GameGUI view) {
-        
+        ScreenCache cache = view.getScreenCache();
+        if (!cache.isBuilt(ScreenCache.Screen.GAME)) {
+            buildGameScreen(view);
+        }
+        view.getGetReadyBox().setVisible(true);
+        view.getPractice().setVisible(true);
+        view.getQuestion().setText("");
+        view.getPressSpaceText().setText("");
+        view.getMask().setVisible(false);
+        view.getDotsCanvas().setOpacity(0);
+        cache.show(ScreenCache.Screen.GAME, view.getLayout());
+        view.getScene().setCursor(Cursor.NONE);
+    }
+    
+    private static void buildGameScreen(GameGUI view) {
         setUpOptions(view);
         
         view.setGetReadyBar(new ProgressBar(0.0));
@@ -220,22 +254,22 @@ public final class SetUp {
         view.getGetReadyBar().setStyle("-fx-accent: green;");
         
         view.setGetReady(new Label(Strings.GET_READY_EN));
-        view.getGetReady().setFont(new Font("Tahoma", 50));
+        view.getGetReady().setFont(ScreenCache.TAHOMA_50);
         
         view.setGetReadyBox(new VBox(10));
         view.getGetReadyBox().setAlignment(Pos.CENTER);
         view.getGetReadyBox().getChildren().addAll(view.getGetReady(), view.getGetReadyBar());
         
         view.setPractice(new Label(Strings.PRACTICE_EN));
-        view.getPractice().setFont(new Font("Tahoma", 50));
+        view.getPractice().setFont(ScreenCache.TAHOMA_50);
 
         view.setQuestion(new Label());
-        view.getQuestion().setFont(new Font("Tahoma", 50));
+        view.getQuestion().setFont(ScreenCache.TAHOMA_50);
 
         view.setPressSpaceText(new Label());
-        view.setMask(new ImageView(new Image("/res/images/mask2.png")));
+        view.setMask(new ImageView(ResourceRegistry.get().getImage(ResourceRegistry.MASK_IMAGE)));
         
-        view.getLayout().getChildren().setAll(view.getGetReadyBox(),
+        view.getScreenCache().put(ScreenCache.Screen.GAME, view.getGetReadyBox(),
                 view.getDotsCanvas(), view.getPractice(), view.getQuestion(), view.getPressSpaceText(),
                 view.getMask());
         
@@ -261,7 +295,7 @@ public final class SetUp {
         view.getPressSpaceText().setAlignment(Pos.CENTER);
         view.getPressSpaceText().setLayoutX((SetUp.SCREEN_WIDTH / 2) - (view.getQuestion().getPrefWidth() / 2));
         view.getPressSpaceText().setLayoutY(SetUp.SCREEN_HEIGHT * .35);
-        view.getPressSpaceText().setFont(new Font("Tahoma", 30));
+        view.getPressSpaceText().setFont(ScreenCache.TAHOMA_30);
         
         view.getMask().setLayoutY(SCREEN_HEIGHT * .25);
         
@@ -269,8 +303,6 @@ public final class SetUp {
         view.getMask().setFitHeight(DOTS_CANVAS_HEIGHT);
         view.getMask().setLayoutX(DOTS_CANVAS_X);
         view.getMask().setLayoutY(DOTS_CANVAS_Y);
-        view.getMask().setVisible(false);
-        view.getScene().setCursor(Cursor.NONE);
     }
 
     /**
@@ -321,10 +353,10 @@ public final class SetUp {
         quitBox.setPadding(new Insets(30, 30, 30, 30));
         quitBox.setAlignment(Pos.CENTER);
         Label quitLabel = new Label(Strings.QUIT_MESSAGE_EN);
-        quitLabel.setFont(new Font("Tahoma", 20));
+        quitLabel.setFont(ScreenCache.TAHOMA_20);
         Button yesButton = new Button(Strings.YES_EN);
         yesButton.setOnAction(e -> {
-            System.exit(0);
+            view.quit();
         });
         Button noButton = new Button(Strings.NO_EN);
         noButton.setOnAction(e -> {
@@ -338,6 +370,50 @@ public final class SetUp {
         quitLabel.requestFocus();
     }
     
+    /**
+     * Show a pop up asking if an interrupted session should be resumed. The
+     * screen behind it is disabled until one of the answers is picked, so that
+     * no one can log in past it.
+     * @param view
+     * @param subjectId Subject of the interrupted session.
+     * @param trial Trial the session would resume at.
+     * @param onResume Run if the session should be resumed.
+     * @param onDiscard Run if it should not.
+     */
+    public static void showResumePopup(GameGUI view, String subjectId, int trial, 
+            Runnable onResume, Runnable onDiscard) {
+        Popup resumePopup = new Popup();
+        Parent screen = view.getScene().getRoot();
+        screen.setDisable(true);
+        VBox resumeBox = new VBox(8);
+        resumeBox.setStyle("-fx-background-color: rgba(238, 238, 255, 1);"
+                + "-fx-border-style: solid;"
+                + "-fx-border-width: 3px;");
+        resumeBox.setPadding(new Insets(30, 30, 30, 30));
+        resumeBox.setAlignment(Pos.CENTER);
+        Label resumeLabel = new Label(String.format(Strings.RESUME_MESSAGE_EN, subjectId, trial));
+        resumeLabel.setFont(ScreenCache.TAHOMA_20);
+        Button yesButton = new Button(Strings.YES_EN);
+        yesButton.setOnAction(e -> {
+            resumePopup.hide();
+            screen.setDisable(false);
+            onResume.run();
+        });
+        Button noButton = new Button(Strings.NO_EN);
+        noButton.setOnAction(e -> {
+            resumePopup.hide();
+            screen.setDisable(false);
+            onDiscard.run();
+        });
+        resumePopup.setHideOnEscape(false);
+        resumeBox.getChildren().addAll(resumeLabel, yesButton, noButton);
+        resumePopup.getContent().addAll(resumeBox);
+        resumePopup.centerOnScreen();
+        view.getScene().setCursor(Cursor.DEFAULT);
+        resumePopup.show(view.getPrimaryStage());
+        yesButton.requestFocus();
+    }
+    
     /**
      * Show the popup asking if user wants to quit.
      * @param view